@@ -21,6 +21,12 @@ under the License.
 
 package org.apache.milagro.amcl.ANSSI;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.milagro.amcl.HMAC;
+
 public final class ECP {
 
 	public static final int WEIERSTRASS=0;
@@ -45,6 +51,7 @@ public final class ECP {
 
 	public static final int HASH_TYPE=32;
 	public static final int AESKEY=16;
+	public static final int MULN_PARALLEL_THRESHOLD=256;  /* multi-scalar multiplications with no more points than this run serially */
 
 	private FP x;
 	private FP y;
@@ -255,7 +262,7 @@ public final class ECP {
 
 		if (CURVETYPE==MONTGOMERY)
 		{
-			if (rhs.jacobi()!=1) inf();
+			if (rhs.qr()!=1) inf();
 			//if (rhs.jacobi()==1) INF=false;
 			//else inf();
 		}
@@ -268,15 +275,23 @@ public final class ECP {
 			//else inf();
 		}
 	}
+/* true if ny is a square root of a non-zero rhs - one sqrt checked by squaring is cheaper than a Legendre symbol and then the root */
+	private static boolean isroot(FP ny,FP rhs)
+	{
+		FP t=new FP(ny);
+		t.sqr();
+		return t.equals(rhs) && !rhs.iszilch();
+	}
+
 /* set (x,y) from BIG and a bit */
 	public ECP(BIG ix,int s) {
 		x=new FP(ix);
 		FP rhs=RHS(x);
 		y=new FP(0);
 		z=new FP(1);
-		if (rhs.jacobi()==1)
+		FP ny=rhs.sqrt();
+		if (isroot(ny,rhs))
 		{
-			FP ny=rhs.sqrt();
 			if (ny.redc().parity()!=s) ny.neg();
 			y.copy(ny);
 			//INF=false;
@@ -290,12 +305,16 @@ public final class ECP {
 		FP rhs=RHS(x);
 		y=new FP(0);
 		z=new FP(1);
-		if (rhs.jacobi()==1)
+		if (CURVETYPE==MONTGOMERY)
 		{
-			if (CURVETYPE!=MONTGOMERY) y.copy(rhs.sqrt());
-			//INF=false;
+			if (rhs.qr()!=1) inf();
+		}
+		else
+		{
+			FP ny=rhs.sqrt();
+			if (isroot(ny,rhs)) y.copy(ny);
+			else inf(); //INF=true;
 		}
-		else inf(); //INF=true;
 	}
 
 /* set to affine - from (x,y,z) to (x,y) */
@@ -311,6 +330,44 @@ public final class ECP {
 		}
 		z.copy(one);
 	}
+
+/* convert all of P[] to affine coordinates, with one inversion shared by the whole array */
+/* Montgomery's simultaneous inversion - 3(n-1) extra multiplications. The entries must be distinct objects */
+	public static void affineAll(ECP[] P)
+	{
+		int i,n=P.length;
+		if (n==0) return;
+		FP one=new FP(1);
+		FP[] acc=new FP[n];
+		boolean[] inf=new boolean[n];
+		FP t=new FP(one);
+		FP zi=new FP(0);
+
+		for (i=0;i<n;i++)
+		{
+			inf[i]=P[i].is_infinity();
+			if (!inf[i]) t.mul(P[i].z);
+			acc[i]=new FP(t);
+		}
+		t.inverse();
+
+/* t=1/(z0...zi) - peel off one z at a time from the top */
+		for (i=n-1;i>=0;i--)
+		{
+			if (inf[i]) continue;
+			if (i>0) zi.copy(acc[i-1]);
+			else zi.copy(one);
+			zi.mul(t);
+			t.mul(P[i].z);
+			P[i].x.mul(zi); P[i].x.reduce();
+			if (CURVETYPE!=MONTGOMERY)
+			{
+				P[i].y.mul(zi); P[i].y.reduce();
+			}
+			P[i].z.copy(one);
+		}
+	}
+
 /* extract x as a BIG */
 	public BIG getX()
 	{
@@ -367,7 +424,7 @@ public final class ECP {
 		if (compress)
 		{
 			b[0]=0x02;
-			if (y.redc().parity()==1) b[0]=0x03;
+			if (W.y.redc().parity()==1) b[0]=0x03;
 			return;
 		}
 
@@ -405,6 +462,15 @@ public final class ECP {
 		}
 		return new ECP();
 	}
+
+/* convert from byte array to point as fromBytes, but return the point at infinity unless it is in the prime order subgroup */
+/* use this for points received from outside, such as public keys and signatures */
+	public static ECP fromBytesChecked(byte[] b)
+	{
+		ECP P=fromBytes(b);
+		if (!P.inSubgroup()) P.inf();
+		return P;
+	}
 /* convert to hex string */
 	public String toString() {
 		ECP W=new ECP(this);	
@@ -853,6 +919,14 @@ public final class ECP {
 /* return e.this */
 
 	public ECP mul(BIG e) {
+		ECP P=mulProjective(e);
+		P.affine();
+		return P;
+	}
+
+/* return e.this, leaving the result in projective coordinates */
+
+	public ECP mulProjective(BIG e) {
 		if (e.iszilch() || is_infinity()) return new ECP();
 		ECP P=new ECP();
 		if (CURVETYPE==MONTGOMERY)
@@ -939,13 +1013,20 @@ public final class ECP {
 			}
 			P.sub(C); /* apply correction */
 		}
-		P.affine();
 		return P;
 	}
 
 /* Return e.this+f.Q */
 
 	public ECP mul2(BIG e,ECP Q,BIG f) {
+		ECP S=mul2Projective(e,Q,f);
+		S.affine();
+		return S;
+	}
+
+/* Return e.this+f.Q, leaving the result in projective coordinates */
+
+	public ECP mul2Projective(BIG e,ECP Q,BIG f) {
 		BIG te=new BIG();
 		BIG tf=new BIG();
 		BIG mt=new BIG();
@@ -1014,10 +1095,97 @@ public final class ECP {
 			S.add(T);
 		}
 		S.sub(C); /* apply correction */
-		S.affine();
 		return S;
 	}
 
+/* window width of the variable time multiplications */
+	private static final int VTW=5;
+
+/* width-w NAF of e, least significant digit first - digits are zero or odd and less than 2^(w-1) in size, and any w in a row hold at most one non-zero */
+	private static byte[] wnaf(BIG e,int w)
+	{
+		BIG t=new BIG(e);
+		t.norm();
+		byte[] naf=new byte[t.nbits()+1];
+		int m=1<<w;
+		for (int i=0;!t.iszilch();i++)
+		{
+			if (t.parity()==1)
+			{
+				int d=t.lastbits(w);
+				if (d>=m/2) d-=m;
+				if (d>0) t.dec(d);
+				else t.inc(-d);
+				t.norm();
+				naf[i]=(byte)d;
+			}
+			t.fshr(1);
+		}
+		return naf;
+	}
+
+/* odd multiples P,3P,5P,..,(2^(w-1)-1).P for a width-w NAF */
+	private static ECP[] wnaf_table(ECP P,int w)
+	{
+		ECP[] T=new ECP[1<<(w-2)];
+		ECP P2=new ECP(P);
+		P2.dbl();
+		T[0]=new ECP(P);
+		for (int i=1;i<T.length;i++)
+		{
+			T[i]=new ECP(T[i-1]);
+			T[i].add(P2);
+		}
+		return T;
+	}
+
+/* P+=d.T for a NAF digit d */
+	private static void wnaf_add(ECP P,ECP[] T,int d)
+	{
+		if (d>0) P.add(T[d/2]);
+		if (d<0) P.sub(T[(-d)/2]);
+	}
+
+/* Return e.this for a public e - width-5 NAF, skipping the zero digits */
+/* NOT constant time - use only when e is public, as when verifying signatures */
+	public ECP mulVartime(BIG e) {
+		if (CURVETYPE==MONTGOMERY) return mul(e);
+		byte[] n=wnaf(e,VTW);
+		ECP[] T=wnaf_table(this,VTW);
+		ECP P=new ECP();
+		int i=n.length-1;
+		while (i>0 && n[i]==0) i--;
+		wnaf_add(P,T,n[i]);
+		for (i--;i>=0;i--)
+		{
+			P.dbl();
+			wnaf_add(P,T,n[i]);
+		}
+		P.affine();
+		return P;
+	}
+
+/* Return e.this+f.Q for public e and f - interleaved width-5 NAFs, sharing the doublings */
+/* NOT constant time - use only when e and f are public, as when verifying signatures */
+	public ECP mul2Vartime(BIG e,ECP Q,BIG f) {
+		if (CURVETYPE==MONTGOMERY) return mul2(e,Q,f);
+		byte[] ne=wnaf(e,VTW);
+		byte[] nf=wnaf(f,VTW);
+		ECP[] TE=wnaf_table(this,VTW);
+		ECP[] TF=wnaf_table(Q,VTW);
+		ECP P=new ECP();
+		int i=Math.max(ne.length,nf.length)-1;
+		while (i>0 && (i>=ne.length || ne[i]==0) && (i>=nf.length || nf[i]==0)) i--;
+		for (;i>=0;i--)
+		{
+			if (i<ne.length) wnaf_add(P,TE,ne[i]);
+			if (i<nf.length) wnaf_add(P,TF,nf[i]);
+			if (i>0) P.dbl();
+		}
+		P.affine();
+		return P;
+	}
+
 // multiply a point by the curves cofactor
 	public void cfp()
 	{
@@ -1039,6 +1207,14 @@ public final class ECP {
 		copy(mul(c));
 	}
 
+/* test for membership of the prime order subgroup - every point on a curve of cofactor 1 is in it */
+	public boolean inSubgroup()
+	{
+		if (ROM.CURVE_Cof_I==1 || is_infinity()) return true;
+		BIG r=new BIG(ROM.CURVE_Order);
+		return mul(r).is_infinity();
+	}
+
 /* Map byte string to curve point */
 	public static ECP mapit(byte[] h)
 	{
@@ -1064,6 +1240,348 @@ public final class ECP {
 		return P;
 	}
 
+/* Hash to curve - RFC 9380, with expand_message_xmd and the simplified SWU map */
+/* Unlike mapit every step takes a fixed number of field operations, so the time taken does not depend on the input */
+
+/* sqrt(-Z), a constant of sqrt_ratio */
+	private static final FP HTC_C2=htc_c2();
+
+/* small signed integer as a field element */
+	static FP htc_int(int a)
+	{
+		FP t;
+		if (a<0)
+		{
+			t=new FP(-a);
+			t.neg(); t.norm();
+		}
+		else t=new FP(a);
+		return t;
+	}
+
+	private static FP htc_c2()
+	{
+		FP t=htc_int(-ROM.HTC_Z);
+		return t.sqrt();
+	}
+
+/* reduce the L big-endian bytes of h at offset off mod p */
+	static FP htc_fp(byte[] h,int off,int L)
+	{
+		DBIG d=new DBIG(0);
+		for (int i=0;i<L;i++)
+		{
+			d.shl(8); d.w[0]+=(h[off+i]&0xff);
+		}
+		return new FP(d.mod(new BIG(ROM.Modulus)));
+	}
+
+/* bytes of expanded message per field element, ceil((ceil(log2(p))+k)/8) for k=4*HASH_TYPE bits of security */
+	static int htc_len()
+	{
+		return (FP.MODBITS+4*HASH_TYPE+7)/8;
+	}
+
+/* hash_to_field of RFC 9380 - hash message M with domain separation tag DST to count field elements */
+	public static FP[] hashToField(byte[] DST,byte[] M,int count)
+	{
+		int L=htc_len();
+		byte[] OKM=HMAC.XMD_Expand(HASH_TYPE,L*count,DST,M);
+		FP[] u=new FP[count];
+		for (int i=0;i<count;i++)
+			u[i]=htc_fp(OKM,i*L,L);
+		return u;
+	}
+
+/* sqrt_ratio of RFC 9380 for p=3 mod 4 - set y=sqrt(u/v) and return 1 if u/v is square, else set y=sqrt(Z.u/v) and return 0 */
+	private static int sqrt_ratio(FP u,FP v,FP y)
+	{
+		BIG e=new BIG(ROM.Modulus);
+		e.dec(3); e.norm(); e.shr(2);
+
+		FP tv1=new FP(v); tv1.sqr();
+		FP tv2=new FP(u); tv2.mul(v);
+		tv1.mul(tv2);                         // u.v^3
+		FP y1=tv1.pow(e); y1.mul(tv2);        // u.v.(u.v^3)^((p-3)/4)
+		FP y2=new FP(y1); y2.mul(HTC_C2);
+		FP tv3=new FP(y1); tv3.sqr(); tv3.mul(v);
+
+		int qr=0;
+		if (tv3.equals(u)) qr=1;
+		y2.cmove(y1,qr);
+		y.copy(y2);
+		return qr;
+	}
+
+/* simplified SWU map of u to a point (xn/xd,y) on y^2=x^3+A.x+B, with A.B!=0 - RFC 9380 F.2 */
+/* x is left as a fraction, so the map needs no inversion, only the one exponentiation in sqrt_ratio */
+	private static void sswu(FP u,FP A,FP B,FP xn,FP xd,FP y)
+	{
+		FP Z=htc_int(ROM.HTC_Z);
+		FP tv1=new FP(u); tv1.sqr(); tv1.mul(Z);                     // Z.u^2
+		FP tv2=new FP(tv1); tv2.sqr(); tv2.add(tv1); tv2.norm();     // Z^2.u^4+Z.u^2
+		FP tv3=new FP(tv2); tv3.add(new FP(1)); tv3.norm();
+		tv3.mul(B);                                                 // x1 numerator, B.(tv2+1)
+
+		int d=1;
+		if (tv2.iszilch()) d=0;
+		FP tv4=new FP(Z);
+		tv2.neg(); tv2.norm();
+		tv4.cmove(tv2,d);
+		tv4.mul(A);                                                 // x denominator, A.(Z or -tv2)
+
+		FP tv6=new FP(tv4); tv6.sqr();
+		FP tv5=new FP(tv6); tv5.mul(A);
+		tv2.copy(tv3); tv2.sqr(); tv2.add(tv5); tv2.norm();
+		tv2.mul(tv3);
+		tv6.mul(tv4);                                               // xd^3
+		tv5.copy(tv6); tv5.mul(B);
+		tv2.add(tv5); tv2.norm();                                   // g(x1).xd^3
+
+		FP x=new FP(tv1); x.mul(tv3);                               // x2 numerator, Z.u^2.x1
+		FP y1=new FP(0);
+		int qr=sqrt_ratio(tv2,tv6,y1);
+		FP y2=new FP(tv1); y2.mul(u); y2.mul(y1);                    // sqrt(g(x2))=Z.u^3.sqrt(Z.g(x1))
+
+		x.cmove(tv3,qr);
+		y2.cmove(y1,qr);
+		FP ny=new FP(y2); ny.neg(); ny.norm();
+		y2.cmove(ny,u.sign()^y2.sign());
+
+		xn.copy(x);
+		xd.copy(tv4);
+		y.copy(y2);
+	}
+
+/* map_to_curve of RFC 9380 - map field element u to a point, without clearing the cofactor */
+	public static ECP map2point(FP u)
+	{
+		FP xn=new FP(0);
+		FP xd=new FP(0);
+		FP y=new FP(0);
+		sswu(u,htc_int(ROM.CURVE_A),new FP(new BIG(ROM.CURVE_B)),xn,xd,y);
+
+		ECP P=new ECP();
+		y.mul(xd);
+		P.x.copy(xn);
+		P.y.copy(y);
+		P.z.copy(xd);
+		return P;
+	}
+
+/* hash_to_curve of RFC 9380 - hash message M with domain separation tag DST to a point, usable as a random oracle */
+	public static ECP hashToCurve(byte[] DST,byte[] M)
+	{
+		FP[] u=hashToField(DST,M,2);
+		ECP P=map2point(u[0]);
+		P.add(map2point(u[1]));
+		P.cfp();
+		P.affine();
+		return P;
+	}
+
+/* encode_to_curve of RFC 9380 - cheaper nonuniform encoding using a single map */
+	public static ECP encodeToCurve(byte[] DST,byte[] M)
+	{
+		FP[] u=hashToField(DST,M,1);
+		ECP P=map2point(u[0]);
+		P.cfp();
+		P.affine();
+		return P;
+	}
+
+/* Multi-scalar multiplication - return k[0].P[0]+k[1].P[1]+...+k[n-1].P[n-1] */
+/* Pippenger's bucket method. NOT constant time - use only with public scalars */
+/* Returns null if P and k differ in length, or on a Montgomery curve for more than one point */
+	public static ECP muln(ECP[] P,BIG[] k)
+	{
+		int i,j,w,d,n=P.length;
+		if (k.length!=n) return null;
+/* no general point addition on Montgomery curves, so only a single product can be formed */
+		if (CURVETYPE==MONTGOMERY)
+		{
+			if (n==1) return P[0].mul(k[0]);
+			if (n>1) return null;
+		}
+		ECP R=new ECP();
+		if (n==0) return R;
+
+/* window size grows with the number of points - each window costs n additions and 2^(c+1) to sum the buckets */
+		int c=2;
+		while (c<16 && (1<<(c+c/3+2))<=n) c++;
+		int nb=0;
+		for (i=0;i<n;i++)
+		{
+			j=k[i].nbits();
+			if (j>nb) nb=j;
+		}
+		int nw=(nb+c-1)/c;
+
+/* split scalars into c-bit digits */
+		int[][] dig=new int[n][nw];
+		BIG t=new BIG(0);
+		for (i=0;i<n;i++)
+		{
+			t.copy(k[i]); t.norm();
+			for (w=0;w<nw;w++)
+			{
+				dig[i][w]=t.lastbits(c);
+				t.fshr(c);
+			}
+		}
+
+		int m=(1<<c)-1;
+		ECP[] B=new ECP[m];
+		boolean[] used=new boolean[m];
+		for (j=0;j<m;j++) B[j]=new ECP();
+		ECP S=new ECP();
+		ECP W=new ECP();
+
+		for (w=nw-1;w>=0;w--)
+		{
+			for (j=0;j<c;j++) R.dbl();
+			for (j=0;j<m;j++) used[j]=false;
+
+/* drop each point into the bucket of its digit */
+			for (i=0;i<n;i++)
+			{
+				d=dig[i][w];
+				if (d==0) continue;
+				if (used[d-1]) B[d-1].add(P[i]);
+				else
+				{
+					B[d-1].copy(P[i]);
+					used[d-1]=true;
+				}
+			}
+
+/* sum of j.B[j-1] by running sums, from the top bucket down */
+			S.inf(); W.inf();
+			boolean start=false;
+			for (j=m-1;j>=0;j--)
+			{
+				if (used[j])
+				{
+					S.add(B[j]);
+					start=true;
+				}
+				if (start) W.add(S);
+			}
+			R.add(W);
+		}
+		R.affine();
+		return R;
+	}
+
+/* muln with the points partitioned across the threads of ex, or of the common ForkJoinPool if ex is null */
+	public static ECP muln(ECP[] P,BIG[] k,Executor ex)
+	{
+		int n=P.length;
+		if (k.length!=n) return null;
+		if (CURVETYPE==MONTGOMERY) return muln(P,k);
+		if (ex==null) ex=ForkJoinPool.commonPool();
+		int t=1;
+		if (n>MULN_PARALLEL_THRESHOLD)
+		{
+			if (ex instanceof ForkJoinPool)
+				t=((ForkJoinPool)ex).getParallelism();
+			else
+				t=Runtime.getRuntime().availableProcessors();
+			t=Math.max(1,Math.min(t,2*n/MULN_PARALLEL_THRESHOLD));
+		}
+		if (t<2) return muln(P,k);
+
+		final ECP[] R=new ECP[t];
+		CompletableFuture<?>[] part=new CompletableFuture<?>[t];
+		for (int i=0;i<t;i++)
+		{
+			final int j=i;
+			final ECP[] Pi=Arrays.copyOfRange(P,i*n/t,(i+1)*n/t);
+			final BIG[] ki=Arrays.copyOfRange(k,i*n/t,(i+1)*n/t);
+			part[i]=CompletableFuture.runAsync(new Runnable() {
+				public void run() { R[j]=muln(Pi,ki); }
+			},ex);
+		}
+		CompletableFuture.allOf(part).join();
+		for (int i=1;i<t;i++)
+			R[0].add(R[i]);
+		R[0].affine();
+		return R[0];
+	}
+
+/* Fixed base comb for the generator - W[i][j]=(2j+1).16^i.G for each signed 4-bit window i */
+/* Built on first use. e.G then costs one constant time select and one addition per window, and no doublings */
+	private static final class GTable {
+		static final ECP[][] W=gtable();
+	}
+
+	private static ECP[][] gtable()
+	{
+		int i,j;
+		BIG r=new BIG(ROM.CURVE_Order);
+		int nb=1+(r.nbits()+3)/4;
+		ECP[][] W=new ECP[nb+1][8];
+		ECP B=generator();
+		ECP D=new ECP();
+
+		for (i=0;i<=nb;i++)
+		{
+			D.copy(B); D.dbl();
+			W[i][0]=new ECP(); W[i][0].copy(B);
+			for (j=1;j<8;j++)
+			{
+				W[i][j]=new ECP();
+				W[i][j].copy(W[i][j-1]);
+				W[i][j].add(D);
+			}
+			B.dbl(); B.dbl(); B.dbl(); B.dbl();
+		}
+		return W;
+	}
+
+/* return e.G for the fixed generator G, in constant time */
+	public static ECP mulGenerator(BIG e)
+	{
+		if (CURVETYPE==MONTGOMERY) return generator().mul(e);
+		int i,s,ns;
+		ECP[][] W=GTable.W;
+		int nb=W.length-1;
+		BIG t=new BIG(e);
+		BIG mt=new BIG(0);
+		ECP P=new ECP();
+		ECP Q=new ECP();
+		ECP C=new ECP();
+		byte[] w=new byte[nb+1];
+
+		t.mod(new BIG(ROM.CURVE_Order));
+
+/* make exponent odd - add 2G if even, G if odd */
+		s=t.parity();
+		t.inc(1); t.norm(); ns=t.parity(); mt.copy(t); mt.inc(1); mt.norm();
+		t.cmove(mt,s);
+		C.copy(W[0][0]); C.dbl();
+		C.cmove(W[0][0],ns);
+
+/* convert exponent to signed 4-bit window - the top digit is always 1 as t<2r */
+		for (i=0;i<nb;i++)
+		{
+			w[i]=(byte)(t.lastbits(5)-16);
+			t.dec(w[i]); t.norm();
+			t.fshr(4);
+		}
+		w[nb]=(byte)t.lastbits(5);
+
+		P.copy(W[nb][(w[nb]-1)/2]);
+		for (i=0;i<nb;i++)
+		{
+			Q.select(W[i],w[i]);
+			P.add(Q);
+		}
+		P.sub(C);
+		P.affine();
+		return P;
+	}
+
 	public static ECP generator()
 	{
 		ECP G;
@@ -39,5 +39,8 @@ public class ROM
 	public static final long[] CURVE_Gx= {0xC97A2DD98F5CFFL,0xD2DCAF98B70164L,0x4749D423958C27L,0x56C139EB31183DL,0xB6B3D4C3L};
 	public static final long[] CURVE_Gy= {0x115A1554062CFBL,0xC307E8E4C9E183L,0xF0F3ECEF8C2701L,0xC8B204911F9271L,0x6142E0F7L};
 
+	// Hash to curve - simplified SWU constant of RFC 9380
+	public static final int HTC_Z= -5;
+
 }
 
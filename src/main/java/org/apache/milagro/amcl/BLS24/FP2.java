@@ -258,15 +258,15 @@ public final class FP2 {
 		FP w1=new FP(b);
 		FP w2=new FP(a);
 		w1.sqr(); w2.sqr(); w1.add(w2);
-		if (w1.jacobi()!=1) { zero(); return false; }
+		if (w1.qr()!=1) { zero(); return false; }
 		w1=w1.sqrt();
 		w2.copy(a); w2.add(w1); 
 		w2.norm(); w2.div2();
-		if (w2.jacobi()!=1)
+		if (w2.qr()!=1)
 		{
 			w2.copy(a); w2.sub(w1); 
 			w2.norm(); w2.div2();
-			if (w2.jacobi()!=1) { zero(); return false; }
+			if (w2.qr()!=1) { zero(); return false; }
 		}
 		w2=w2.sqrt();
 		a.copy(w2);
@@ -27,6 +27,7 @@ import org.apache.milagro.amcl.RAND;
 import org.apache.milagro.amcl.HASH256;
 import org.apache.milagro.amcl.HASH384;
 import org.apache.milagro.amcl.HASH512;
+import org.apache.milagro.amcl.HMAC;
 import org.apache.milagro.amcl.AES;
 
 public class MPIN192
@@ -58,44 +59,9 @@ public class MPIN192
 
 	public static byte[] hashit(int sha,int n,byte[] B,int len)
 	{
-		byte[] R=null;
-
-		if (sha==ECP.SHA256)
-		{
-			HASH256 H=new HASH256();
-			if (n>0) H.process_num(n);
-
-			H.process_array(B);
-			R=H.hash();
-		}
-		if (sha==ECP.SHA384)
-		{
-			HASH384 H=new HASH384();
-			if (n>0) H.process_num(n);
-			H.process_array(B);
-			R=H.hash();
-		}
-		if (sha==ECP.SHA512)
-		{
-			HASH512 H=new HASH512();
-			if (n>0) H.process_num(n);
-			H.process_array(B);
-			R=H.hash();
-		}
-		if (R==null) return null;
-		byte[] W=new byte[len];
-
-		if (sha>=len)
-			for (int i=0;i<len;i++) W[i]=R[i];
-		else
-		{
-			for (int i=0;i<sha;i++) W[i+len-sha]=R[i];
-            for (int i=0;i<len-sha;i++) W[i]=0;
-
-			//for (int i=0;i<sha;i++) W[i]=R[i];
-			//for (int i=sha;i<len;i++) W[i]=0;
-		}
-		return W;
+		byte[] R=HMAC.GPhashit(sha,len,null,n,B);
+		if (R!=null && len==0) return new byte[0];	/* len of 0 gives no output, not the whole digest */
+		return R;
 	}
 
 	/* return time in slots since epoch */
@@ -21,6 +21,8 @@ under the License.
 
 package org.apache.milagro.amcl.BLS381;
 import org.apache.milagro.amcl.RAND;
+import org.apache.milagro.amcl.SAFEGCD;
+import org.apache.milagro.amcl.LIMB;
 
 public class BIG {
 
@@ -188,59 +190,18 @@ public class BIG {
 
 	public static long[] muladd(long a,long b,long c,long r)
 	{
-		long x0,x1,y0,y1;
-		long[] tb=new long[2];
-		x0=a&HMASK;
-		x1=(a>>HBITS);
-		y0=b&HMASK;
-		y1=(b>>HBITS);
-		long bot=x0*y0;
-		long top=x1*y1;
-		long mid=x0*y1+x1*y0;
-		x0=mid&HMASK;
-		x1=(mid>>HBITS);
-		bot+=x0<<HBITS; bot+=c; bot+=r;
-		top+=x1;
-		long carry=bot>>BASEBITS;
-		bot&=BMASK;
-		top+=carry;
-		tb[0]=top;
-		tb[1]=bot;
-		return tb;
+		return LIMB.muladd(a,b,c,r,BASEBITS);
 	}
 	
 	public static void muladd(long a,long b,long c,long r, long[] cr)
 	{
-		long x0,x1,y0,y1;
-		x0=a&HMASK;
-		x1=(a>>HBITS);
-		y0=b&HMASK;
-		y1=(b>>HBITS);
-		long bot=x0*y0;
-		long top=x1*y1;
-		long mid=x0*y1+x1*y0;
-		x0=mid&HMASK;
-		x1=(mid>>HBITS);
-		bot+=x0<<HBITS; bot+= (c+r);
-		cr[0]=top+x1+(bot>>BASEBITS);
-		cr[1]=(bot&BMASK);
+		cr[1]=r;
+		cr[0]=LIMB.muladd(a,b,c,cr,1,BASEBITS);
 	}
 	
 	public static long muladd(long a, long b, long c, long[] r, int o)
 	{
-		long x0,x1,y0,y1;
-		x0=a&HMASK;
-		x1=(a>>HBITS);
-		y0=b&HMASK;
-		y1=(b>>HBITS);
-		long bot=x0*y0;
-		long top=x1*y1;
-		long mid=x0*y1+x1*y0;
-		x0=mid&HMASK;
-		x1=(mid>>HBITS);
-		bot+=x0<<HBITS; bot+= (c+r[o]);
-		r[o] = (bot&BMASK);
-		return top+x1+(bot>>BASEBITS);
+		return LIMB.muladd(a,b,c,r,o,BASEBITS);
 	}
 
 
@@ -919,66 +880,12 @@ public class BIG {
 		else return -1;
 	}
 
-/* this=1/this mod p. Binary method */
+/* this=1/this mod p, in constant time. p must be odd */
 	public void invmodp(BIG p)
 	{
-		mod(p);
-		BIG u=new BIG(this);
-		BIG v=new BIG(p);
-		BIG x1=new BIG(1);
-		BIG x2=new BIG(0);
-		BIG t=BIG.createFast();
-
-		while (comp(u,BIG.ONE)!=0 && comp(v,BIG.ONE)!=0)
-		{
-			while (u.parity()==0)
-			{
-				u.fshr(1);
-				if (x1.parity()!=0)
-				{
-					x1.add(p);
-					x1.norm();
-				}
-				x1.fshr(1);
-			}
-			while (v.parity()==0)
-			{
-				v.fshr(1);
-				if (x2.parity()!=0)
-				{
-					x2.add(p);
-					x2.norm();
-				}
-				x2.fshr(1);
-			}
-			if (comp(u,v)>=0)
-			{
-				u.sub(v);
-				u.norm();
-				if (comp(x1,x2)>=0) x1.sub(x2);
-				else
-				{
-					t.copy(p);
-					t.sub(x2);
-					x1.add(t);
-				}
-				x1.norm();
-			}
-			else
-			{
-				v.sub(u);
-				v.norm();
-				if (comp(x2,x1)>=0) x2.sub(x1);
-				else
-				{
-					t.copy(p);
-					t.sub(x1);
-					x2.add(t);
-				}
-				x2.norm();
-			}
-		}
-		if (comp(u,BIG.ONE)==0) copy(x1);
-		else copy(x2);
+		BIG m=new BIG(p);
+		m.norm();
+		mod(m);
+		SAFEGCD.inverse(w,m.w,BASEBITS);
 	}
 }
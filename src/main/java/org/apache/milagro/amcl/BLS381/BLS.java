@@ -0,0 +1,312 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* Boneh-Lynn-Shacham signature API Functions */
+/* Signatures are in G1, public keys are in G2, both compressed in the ZCash/IETF format */
+
+package org.apache.milagro.amcl.BLS381;
+
+import org.apache.milagro.amcl.RAND;
+import org.apache.milagro.amcl.KEYCACHE;
+
+public class BLS
+{
+	public static final int BFS=BIG.MODBYTES;
+	public static final int BGS=BIG.MODBYTES;
+	public static final int G1S=BFS;     /* Signature Size */
+	public static final int G2S=2*BFS;   /* Public Key Size */
+	public static final int BLS_OK=0;
+	public static final int BLS_FAIL=-1;
+	public static final int INVALID_POINT=-14;
+
+/* G2 generator with its Miller loop lines precomputed, shared by every verification */
+	static final PreparedG2 G2_TAB=new PreparedG2(ECP2.generator());
+
+/* domain separation tag for hashing messages, as in the IETF BLS signature ciphersuite for signatures in G1 */
+	static final byte[] DST="BLS_SIG_BLS12381G1_XMD:SHA-256_SSWU_RO_NUL_".getBytes();
+
+/* decode a signature, which must be in G1 - anything else becomes the point at infinity */
+	static ECP sig_decode(byte[] SIG)
+	{
+		ECP D=ECP.fromBytesZcash(SIG);
+		if (!D.inSubgroup()) D.inf();
+		return D;
+	}
+
+/* decode a public key, which must be in G2 - anything else becomes the point at infinity */
+	static ECP2 pk_decode(byte[] W)
+	{
+		ECP2 PK=ECP2.fromBytesZcash(W);
+		if (!PK.inSubgroup()) PK.inf();
+		return PK;
+	}
+
+/* hash a message to an ECP point, using the constant time hash to curve of RFC 9380 */
+	static ECP bls_hashit(byte[] m)
+	{
+		return ECP.hashToCurve(DST,m);
+	}
+
+/* generate key pair, private key S, public key W */
+/* if RNG is null then the private key S is passed in, and BLS_FAIL is returned if it is zero mod r */
+	public static int KEY_PAIR_GENERATE(RAND RNG,byte[] S,byte[] W)
+	{
+		BIG r=new BIG(ROM.CURVE_Order);
+		BIG s;
+		if (RNG==null)
+		{
+			s=BIG.fromBytes(S);
+			s.mod(r);
+		}
+		else
+		{
+			s=BIG.randomnum(r,RNG);
+		}
+/* a zero key would give the point at infinity, which verifies any signature */
+		if (s.iszilch()) return BLS_FAIL;
+		s.toBytes(S);
+
+		ECP2 G=ECP2.mulGenerator(s);
+		G.toBytesZcash(W,true);
+		return BLS_OK;
+	}
+
+/* Sign message M using private key S to produce signature SIG */
+	public static int SIGN(byte[] SIG,byte[] M,byte[] S)
+	{
+		ECP D=bls_hashit(M);
+		BIG s=BIG.fromBytes(S);
+		D=PAIR.G1mul(D,s);
+		D.toBytesZcash(SIG,true);
+		return BLS_OK;
+	}
+
+/* opt-in cache of public keys, decoded, checked and prepared for pairing, keyed by their encoding - null when disabled */
+	private static volatile KEYCACHE<PreparedG2> KEYS=null;
+
+/* cache up to size prepared public keys, for signers whose keys are seen again and again - size 0 disables the cache */
+	public static void KEY_CACHE(int size)
+	{
+		if (size>0) KEYS=new KEYCACHE<PreparedG2>(size);
+		else KEYS=null;
+	}
+
+/* the public key cache, with its hit and miss counters - null when disabled */
+	public static KEYCACHE<PreparedG2> KEY_CACHE()
+	{
+		return KEYS;
+	}
+
+/* Decode public key W and precompute its Miller loop lines, for keys that verify many signatures */
+/* Goes through the key cache if it is enabled. Invalid keys return null, and are not cached */
+	public static PreparedG2 PREPARE_PK(byte[] W)
+	{
+		KEYCACHE<PreparedG2> C=KEYS;
+		PreparedG2 P=null;
+		if (C!=null) P=C.get(W);
+		if (P!=null) return P;
+
+		ECP2 PK=pk_decode(W);
+		if (PK.is_infinity()) return null;
+		P=new PreparedG2(PK);
+		if (C!=null) C.put(W,P);
+		return P;
+	}
+
+/* Verify signature SIG on message M against public key W */
+	public static int VERIFY(byte[] SIG,byte[] M,byte[] W)
+	{
+		PreparedG2 PK=PREPARE_PK(W);
+		if (PK==null) return INVALID_POINT;
+		return VERIFY(SIG,M,PK);
+	}
+
+/* Verify signature SIG on message M against prepared public key PK */
+/* checks e(-SIG,G2).e(H(M),PK)==1 using one double pairing and one final exponentiation */
+	public static int VERIFY(byte[] SIG,byte[] M,PreparedG2 PK)
+	{
+		ECP D=sig_decode(SIG);
+		if (D.is_infinity()) return INVALID_POINT;
+
+		ECP HM=bls_hashit(M);
+		D.neg();
+
+		FP12 v=PAIR.ate2(G2_TAB,D,PK,HM);
+		v=PAIR.fexp(v);
+		if (v.isunity())
+			return BLS_OK;
+		return BLS_FAIL;
+	}
+
+/* Aggregate signatures SIGS[0..n-1] into a single signature SIG */
+	public static int AGGREGATE_SIG(byte[] SIG,byte[][] SIGS)
+	{
+		ECP S=new ECP();
+		for (int i=0;i<SIGS.length;i++)
+		{
+			ECP D=sig_decode(SIGS[i]);
+			if (D.is_infinity()) return INVALID_POINT;
+			S.add(D);
+		}
+		S.affine();
+		S.toBytesZcash(SIG,true);
+		return BLS_OK;
+	}
+
+/* Aggregate public keys WS[0..n-1] into a single public key W */
+	public static int AGGREGATE_PK(byte[] W,byte[][] WS)
+	{
+		ECP2 P=new ECP2();
+		for (int i=0;i<WS.length;i++)
+		{
+			ECP2 PK=pk_decode(WS[i]);
+			if (PK.is_infinity()) return INVALID_POINT;
+			P.add(PK);
+		}
+		P.toBytesZcash(W,true);
+		return BLS_OK;
+	}
+
+/* Verify an aggregate signature SIG where every signer in WS signed the same message M */
+	public static int FAST_AGGREGATE_VERIFY(byte[] SIG,byte[] M,byte[][] WS)
+	{
+		if (WS.length==0) return BLS_FAIL;
+		byte[] W=new byte[G2S];
+		int res=AGGREGATE_PK(W,WS);
+		if (res!=BLS_OK) return res;
+		return VERIFY(SIG,M,W);
+	}
+
+/* Verify an aggregate signature SIG where signer WS[i] signed message MS[i] */
+/* checks e(-SIG,G2).e(H(MS[0]),WS[0])...e(H(MS[n-1]),WS[n-1])==1 with one multi-pairing */
+	public static int AGGREGATE_VERIFY(byte[] SIG,byte[][] MS,byte[][] WS)
+	{
+		int n=WS.length;
+		if (n==0 || MS.length!=n) return BLS_FAIL;
+
+		PreparedG2[] P=new PreparedG2[n+1];
+		ECP[] Q=new ECP[n+1];
+
+		Q[0]=sig_decode(SIG);
+		if (Q[0].is_infinity()) return INVALID_POINT;
+		Q[0].neg();
+		P[0]=G2_TAB;
+
+		for (int i=0;i<n;i++)
+		{
+			P[i+1]=PREPARE_PK(WS[i]);
+			if (P[i+1]==null) return INVALID_POINT;
+			Q[i+1]=bls_hashit(MS[i]);
+		}
+
+		FP12 v=PAIR.multiAte(P,Q);
+		v=PAIR.fexp(v);
+		if (v.isunity())
+			return BLS_OK;
+		return BLS_FAIL;
+	}
+
+/* random non-zero 64-bit coefficient for batch verification */
+	static BIG batch_coefficient(RAND rng)
+	{
+		BIG c=new BIG(0);
+		for (int i=0;i<8;i++)
+		{
+			c.fshl(8);
+			c.inc(rng.getByte()&0xff);
+		}
+		c.norm();
+		if (c.iszilch()) c.one();
+		return c;
+	}
+
+/* check e(-sum c_i.SIG_i,G2).prod e(c_i.H(M_i),W_i)==1 for the entries idx[lo..hi-1] */
+/* sum c_i.SIG_i is one multi-scalar multiplication - the signatures are public, so variable time is fine */
+	static boolean batch_check(RAND rng,ECP[] D,ECP[] HM,PreparedG2[] PK,int[] idx,int lo,int hi)
+	{
+		int n=hi-lo;
+		PreparedG2[] P=new PreparedG2[n+1];
+		ECP[] Q=new ECP[n+1];
+		ECP[] DS=new ECP[n];
+		BIG[] c=new BIG[n];
+
+		for (int i=0;i<n;i++)
+		{
+			int j=idx[lo+i];
+			c[i]=batch_coefficient(rng);
+			DS[i]=D[j];
+			P[i+1]=PK[j];
+			Q[i+1]=HM[j].mulVartime(c[i]);
+		}
+		ECP S=ECP.muln(DS,c);
+		S.neg();
+		P[0]=G2_TAB;
+		Q[0]=S;
+
+		FP12 v=PAIR.multiAte(P,Q);
+		v=PAIR.fexp(v);
+		return v.isunity();
+	}
+
+/* check a range of the batch, splitting it in half on failure to isolate bad entries */
+	static void batch_bisect(RAND rng,ECP[] D,ECP[] HM,PreparedG2[] PK,int[] idx,int lo,int hi,boolean[] OK)
+	{
+		if (lo>=hi) return;
+		if (batch_check(rng,D,HM,PK,idx,lo,hi))
+		{
+			for (int i=lo;i<hi;i++) OK[idx[i]]=true;
+			return;
+		}
+		if (hi-lo==1) return;
+		int mid=(lo+hi)/2;
+		batch_bisect(rng,D,HM,PK,idx,lo,mid,OK);
+		batch_bisect(rng,D,HM,PK,idx,mid,hi,OK);
+	}
+
+/* Verify n independent signatures, SIG[i] on message M[i] under public key W[i] */
+/* The triples are folded together with random 64-bit coefficients from rng into one multi-pairing and one fexp */
+/* Public keys are prepared once, so re-checking halves of a failed batch costs no further G2 arithmetic */
+/* If the batch fails it is bisected, and OK[i] is set false for each bad entry */
+	public static int BATCH_VERIFY(RAND rng,byte[][] SIG,byte[][] M,byte[][] W,boolean[] OK)
+	{
+		int i,m,n=SIG.length;
+		ECP[] D=new ECP[n];
+		ECP[] HM=new ECP[n];
+		PreparedG2[] PK=new PreparedG2[n];
+		int[] idx=new int[n];
+
+		m=0;
+		for (i=0;i<n;i++)
+		{
+			OK[i]=false;
+			D[i]=sig_decode(SIG[i]);
+			if (D[i].is_infinity()) continue;
+			PK[i]=PREPARE_PK(W[i]);
+			if (PK[i]==null) continue;
+			HM[i]=bls_hashit(M[i]);
+			idx[m++]=i;
+		}
+
+		batch_bisect(rng,D,HM,PK,idx,0,m,OK);
+
+		for (i=0;i<n;i++)
+			if (!OK[i]) return BLS_FAIL;
+		return BLS_OK;
+	}
+}
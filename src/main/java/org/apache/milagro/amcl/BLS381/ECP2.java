@@ -21,7 +21,15 @@ under the License.
 
 package org.apache.milagro.amcl.BLS381;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.milagro.amcl.HMAC;
+
 public final class ECP2 {
+	public static final int MULN_PARALLEL_THRESHOLD=256;  /* multi-scalar multiplications with no more points than this run serially */
+
 	private FP2 x;
 	private FP2 y;
 	private FP2 z;
@@ -147,6 +155,41 @@ public final class ECP2 {
 		y.mul(z); y.reduce();
 		z.copy(FP2.ONE);
 	}
+
+/* convert all of P[] to affine coordinates, with one inversion shared by the whole array */
+/* Montgomery's simultaneous inversion - 3(n-1) extra multiplications. The entries must be distinct objects */
+	public static void affineAll(ECP2[] P)
+	{
+		int i,n=P.length;
+		if (n==0) return;
+		FP2 one=new FP2(1);
+		FP2[] acc=new FP2[n];
+		boolean[] inf=new boolean[n];
+		FP2 t=new FP2(one);
+		FP2 zi=new FP2(0);
+
+		for (i=0;i<n;i++)
+		{
+			inf[i]=P[i].is_infinity();
+			if (!inf[i]) t.mul(P[i].z);
+			acc[i]=new FP2(t);
+		}
+		t.inverse();
+
+/* t=1/(z0...zi) - peel off one z at a time from the top */
+		for (i=n-1;i>=0;i--)
+		{
+			if (inf[i]) continue;
+			if (i>0) zi.copy(acc[i-1]);
+			else zi.copy(one);
+			zi.mul(t);
+			t.mul(P[i].z);
+			P[i].x.mul(zi); P[i].x.reduce();
+			P[i].y.mul(zi); P[i].y.reduce();
+			P[i].z.copy(one);
+		}
+	}
+
 /* extract affine x as FP2 */
 	public FP2 getX()
 	{
@@ -196,13 +239,48 @@ public final class ECP2 {
 		for (int i=0;i<BIG.MODBYTES;i++)
 			b[i+3*BIG.MODBYTES]=t[i];
 	}
-/* convert from byte array to point */
+
+/* convert to byte array - compressed, 0x02 or 0x03 (the sign of y) followed by x, in 2*MODBYTES+1 bytes */
+/* or uncompressed as toBytes(b), x followed by y in 4*MODBYTES bytes */
+	public void toBytes(byte[] b,boolean compress)
+	{
+		if (!compress)
+		{
+			toBytes(b);
+			return;
+		}
+		byte[] t=new byte[BIG.MODBYTES];
+		ECP2 W=new ECP2(this);
+		W.affine();
+		W.x.getA().toBytes(t);
+		for (int i=0;i<BIG.MODBYTES;i++)
+			b[i+1]=t[i];
+		W.x.getB().toBytes(t);
+		for (int i=0;i<BIG.MODBYTES;i++)
+			b[i+BIG.MODBYTES+1]=t[i];
+		b[0]=0x02;
+		if (W.y.sign()==1) b[0]=0x03;
+	}
+/* convert from byte array to point - compressed if b is 2*MODBYTES+1 bytes starting 0x02 or 0x03 */
 	public static ECP2 fromBytes(byte[] b)
 	{
 		byte[] t=new byte[BIG.MODBYTES];
 		BIG ra;
 		BIG rb;
 
+		if (b.length==2*BIG.MODBYTES+1 && (b[0]==0x02 || b[0]==0x03))
+		{ /* compressed - recover y with FP2.sqrt, then fix its sign */
+			BIG p=new BIG(ROM.Modulus);
+			for (int i=0;i<BIG.MODBYTES;i++) t[i]=b[i+1];
+			ra=BIG.fromBytes(t);
+			for (int i=0;i<BIG.MODBYTES;i++) t[i]=b[i+BIG.MODBYTES+1];
+			rb=BIG.fromBytes(t);
+			if (BIG.comp(ra,p)>=0 || BIG.comp(rb,p)>=0) return new ECP2();
+			ECP2 P=new ECP2(new FP2(ra,rb));
+			if (!P.is_infinity() && P.y.sign()!=(b[0]&1)) P.neg();
+			return P;
+		}
+
 		for (int i=0;i<BIG.MODBYTES;i++) t[i]=b[i];
 		ra=BIG.fromBytes(t);
 		for (int i=0;i<BIG.MODBYTES;i++) t[i]=b[i+BIG.MODBYTES];
@@ -217,6 +295,89 @@ public final class ECP2 {
 
 		return new ECP2(rx,ry);
 	}
+
+/* convert from byte array to point as fromBytes, but return the point at infinity unless it is in the prime order subgroup */
+/* use this for points received from outside, such as public keys and signatures */
+	public static ECP2 fromBytesChecked(byte[] b)
+	{
+		ECP2 P=fromBytes(b);
+		if (!P.inSubgroup()) P.inf();
+		return P;
+	}
+
+/* ZCash sign of y=a+ib, decided by b unless b is zero */
+	static int zsign(FP2 y)
+	{
+		FP2 t=new FP2(y);
+		t.reduce();
+		BIG b=t.getB();
+		if (!b.iszilch()) return ECP.zsign(b);
+		return ECP.zsign(t.getA());
+	}
+
+/* convert to ZCash format - 2*MODBYTES bytes of x if compressed, else 4*MODBYTES of x then y */
+/* each coordinate a+ib is written with b first */
+	public void toBytesZcash(byte[] b,boolean compress)
+	{
+		int n=BIG.MODBYTES;
+		int len=compress?2*n:4*n;
+		byte[] t=new byte[n];
+		ECP2 W=new ECP2(this);
+		W.affine();
+		for (int i=0;i<len;i++) b[i]=0;
+		if (W.is_infinity())
+		{
+			b[0]=(byte)ECP.ZC_INFINITY;
+			if (compress) b[0]|=(byte)ECP.ZC_COMPRESSED;
+			return;
+		}
+		W.x.getB().toBytes(t);
+		for (int i=0;i<n;i++) b[i]=t[i];
+		W.x.getA().toBytes(t);
+		for (int i=0;i<n;i++) b[i+n]=t[i];
+		if (compress)
+		{
+			b[0]|=(byte)ECP.ZC_COMPRESSED;
+			if (zsign(W.y)==1) b[0]|=(byte)ECP.ZC_SIGN;
+			return;
+		}
+		W.y.getB().toBytes(t);
+		for (int i=0;i<n;i++) b[i+2*n]=t[i];
+		W.y.getA().toBytes(t);
+		for (int i=0;i<n;i++) b[i+3*n]=t[i];
+	}
+
+/* convert from ZCash format to point - malformed encodings return the point at infinity */
+	public static ECP2 fromBytesZcash(byte[] b)
+	{
+		int n=BIG.MODBYTES;
+		if (!ECP.zc_wellformed(b,2*n)) return new ECP2();
+		int flags=b[0]&0xe0;
+		byte[] t=new byte[n];
+		BIG p=new BIG(ROM.Modulus);
+		boolean compress=(flags&ECP.ZC_COMPRESSED)!=0;
+
+		if ((flags&ECP.ZC_INFINITY)!=0) return new ECP2();
+		for (int i=0;i<n;i++) t[i]=b[i];
+		t[0]&=0x1f;
+		BIG xb=BIG.fromBytes(t);
+		for (int i=0;i<n;i++) t[i]=b[i+n];
+		BIG xa=BIG.fromBytes(t);
+		if (BIG.comp(xa,p)>=0 || BIG.comp(xb,p)>=0) return new ECP2();
+		FP2 rx=new FP2(xa,xb);
+		if (compress)
+		{
+			ECP2 P=new ECP2(rx);
+			if (!P.is_infinity() && zsign(P.y)!=((flags&ECP.ZC_SIGN)!=0?1:0)) P.neg();
+			return P;
+		}
+		for (int i=0;i<n;i++) t[i]=b[i+2*n];
+		BIG yb=BIG.fromBytes(t);
+		for (int i=0;i<n;i++) t[i]=b[i+3*n];
+		BIG ya=BIG.fromBytes(t);
+		if (BIG.comp(ya,p)>=0 || BIG.comp(yb,p)>=0) return new ECP2();
+		return new ECP2(rx,new FP2(ya,yb));
+	}
 /* convert this to hex string */
 	public String toString() {
 		ECP2 W=new ECP2(this);	
@@ -445,6 +606,14 @@ public final class ECP2 {
 
 /* P*=e */
 	public ECP2 mul(BIG e)
+	{
+		ECP2 P=mulProjective(e);
+		P.affine();
+		return P;
+	}
+
+/* P*=e, leaving the result in projective coordinates */
+	public ECP2 mulProjective(BIG e)
 	{
 /* fixed size windows */
 		int i,b,nb,m,s,ns;
@@ -501,7 +670,6 @@ public final class ECP2 {
 			P.add(Q);
 		}
 		P.sub(C);
-		P.affine();
 		return P;
 	}
 
@@ -674,26 +842,23 @@ public final class ECP2 {
 	}
 */
 
-/* needed for SOK */
-	public static ECP2 mapit(byte[] h)
+/* multiply this by |x| for the curve parameter x - x is public, so plain double and add is fine */
+	private ECP2 mulx()
 	{
-		BIG q=BIG.BIGROMMOD;
-		BIG x=BIG.fromBytes(h);
-		BIG one=new BIG(1);
-		FP2 X;
-		ECP2 Q;
-		x.mod(q);
-		while (true)
+		BIG x=new BIG(ROM.CURVE_Bnx);
+		ECP2 R=new ECP2(this);
+		for (int i=x.nbits()-2;i>=0;i--)
 		{
-			X=new FP2(one,x);
-			Q=new ECP2(X);
-			if (!Q.is_infinity()) break;
-			x.inc(1); x.norm();
+			R.dbl();
+			if (x.bit(i)==1) R.add(this);
 		}
+		return R;
+	}
 
-		BIG Fra=new BIG(ROM.Fra);
-		BIG Frb=new BIG(ROM.Frb);
-		X=new FP2(Fra,Frb);
+/* multiply this by the cofactor of G2, mapping a point on the twist into G2 */
+	public void cfp()
+	{
+		FP2 X=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
 
 		if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
 		{
@@ -701,30 +866,25 @@ public final class ECP2 {
 			X.norm();
 		}
 
-		x=new BIG(ROM.CURVE_Bnx);
-
 /* Fast Hashing to G2 - Fuentes-Castaneda, Knapp and Rodriguez-Henriquez */
 
 		if (ECP.CURVE_PAIRING_TYPE==ECP.BN)
 		{
 			ECP2 T,K;
 
-			T=new ECP2(Q);
-			T=T.mul(x); 
-			
+			T=mulx();
 			if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
 			{
 				T.neg();
 			}	
 			K=new ECP2(T);
-			K.dbl(); K.add(T); //K.affine();
+			K.dbl(); K.add(T);
 
 			K.frob(X);
-			Q.frob(X); Q.frob(X); Q.frob(X);
-			Q.add(T); Q.add(K);
+			frob(X); frob(X); frob(X);
+			add(T); add(K);
 			T.frob(X); T.frob(X);
-			Q.add(T);
-
+			add(T);
 		}
 
 /* Efficient hash maps to G2 on BLS curves - Budroni, Pintore */
@@ -732,12 +892,8 @@ public final class ECP2 {
 
 		if (ECP.CURVE_PAIRING_TYPE==ECP.BLS)
 		{
-		//	ECP2 xQ,x2Q;
-		//	xQ=new ECP2();
-		//	x2Q=new ECP2();
-
-			ECP2 xQ=Q.mul(x);
-			ECP2 x2Q=xQ.mul(x);
+			ECP2 xQ=mulx();
+			ECP2 x2Q=xQ.mulx();
 
 			if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
 			{
@@ -745,22 +901,414 @@ public final class ECP2 {
 			}	
 
 			x2Q.sub(xQ);
-			x2Q.sub(Q);
+			x2Q.sub(this);
 
-			xQ.sub(Q);
+			xQ.sub(this);
 			xQ.frob(X);
 
-			Q.dbl();
-			Q.frob(X);
-			Q.frob(X);
+			dbl();
+			frob(X);
+			frob(X);
 
-			Q.add(x2Q);
-			Q.add(xQ);
+			add(x2Q);
+			add(xQ);
+		}
+	}
+
+/* test for membership of the prime order subgroup G2, at a fraction of the cost of a multiplication by the group order */
+/* Q is in G2 iff psi(Q)=x.Q, where psi is the Frobenius endomorphism acting as multiplication by p - Scott, "A note on group membership tests for G1, G2 and GT on BLS pairing-friendly curves" */
+	public boolean inSubgroup()
+	{
+		if (is_infinity()) return true;
+		FP2 X=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
+		if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
+		{
+			X.inverse();
+			X.norm();
+		}
+		ECP2 T=mulx();
+		if (ECP.SIGN_OF_X==ECP.NEGATIVEX) T.neg();
+		ECP2 W=new ECP2(this);
+		W.frob(X);
+		return W.equals(T);
+	}
+
+/* needed for SOK */
+	public static ECP2 mapit(byte[] h)
+	{
+		BIG q=BIG.BIGROMMOD;
+		BIG x=BIG.fromBytes(h);
+		BIG one=new BIG(1);
+		FP2 X;
+		ECP2 Q;
+		x.mod(q);
+		while (true)
+		{
+			X=new FP2(one,x);
+			Q=new ECP2(X);
+			if (!Q.is_infinity()) break;
+			x.inc(1); x.norm();
 		}
+		Q.cfp();
 		Q.affine();
 		return Q;
 	}
 
+/* Hash to G2 - RFC 9380, with expand_message_xmd, the simplified SWU map to a 3-isogenous curve, and cfp() */
+/* Unlike mapit every step takes a fixed number of field operations, so the time taken does not depend on the input */
+
+/* FP2 constant from the ROM */
+	private static FP2 htc_fp2(long[][] c)
+	{
+		return new FP2(new BIG(c[0]),new BIG(c[1]));
+	}
+
+	private static FP2 htc_fp2(int[] c)
+	{
+		return new FP2(ECP.htc_int(c[0]),ECP.htc_int(c[1]));
+	}
+
+/* hash_to_field of RFC 9380 - hash message M with domain separation tag DST to count FP2 elements */
+	public static FP2[] hashToField(byte[] DST,byte[] M,int count)
+	{
+		int L=ECP.htc_len();
+		byte[] OKM=HMAC.XMD_Expand(ECP.HASH_TYPE,2*L*count,DST,M);
+		FP2[] u=new FP2[count];
+		for (int i=0;i<count;i++)
+			u[i]=new FP2(ECP.htc_fp(OKM,2*i*L,L),ECP.htc_fp(OKM,(2*i+1)*L,L));
+		return u;
+	}
+
+/* sqrt_ratio of RFC 9380 for q=p^2=9 mod 16 - set y=sqrt(u/v) and return 1 if u/v is square, else set y=sqrt(Z.u/v) and return 0 */
+	private static int sqrt_ratio(FP2 u,FP2 v,FP2 y)
+	{
+		FP2 tv1=htc_fp2(ROM.HTC_C67[0]);        // Z^((q-1)/8)
+		FP2 tv2=new FP2(v); tv2.sqr(); tv2.mul(v);
+		FP2 tv3=new FP2(tv2); tv3.sqr();
+		tv2.mul(tv3); tv2.mul(v);                // v^7
+		tv3.copy(tv2); tv3.sqr(); tv3.mul(v);    // v^15
+		FP2 tv5=new FP2(u); tv5.mul(tv3);
+		tv5=tv5.pow(new BIG(ROM.HTC_E0),new BIG(ROM.HTC_E1));
+		tv5.mul(tv2);
+		tv2.copy(tv5); tv2.mul(v);
+		tv3.copy(tv5); tv3.mul(u);
+		FP2 tv4=new FP2(tv3); tv4.mul(tv2);
+		tv5.copy(tv4); tv5.sqr(); tv5.sqr();
+
+		int qr=0;
+		if (tv5.isunity()) qr=1;
+		tv2.copy(tv3); tv2.mul(htc_fp2(ROM.HTC_C67[1]));
+		tv5.copy(tv4); tv5.mul(tv1);
+		tv3.cmove(tv2,1-qr);
+		tv4.cmove(tv5,1-qr);
+
+/* fix up the remaining 2^3-th roots of unity */
+		for (int k=3;k>=2;k--)
+		{
+			tv5.copy(tv4);
+			if (k==3) tv5.sqr();
+			int e=0;
+			if (tv5.isunity()) e=1;
+			tv2.copy(tv3); tv2.mul(tv1);
+			tv1.sqr();
+			tv5.copy(tv4); tv5.mul(tv1);
+			tv3.cmove(tv2,1-e);
+			tv4.cmove(tv5,1-e);
+		}
+		y.copy(tv3);
+		return qr;
+	}
+
+/* simplified SWU map of u to a point (xn/xd,y) on the isogenous curve - RFC 9380 F.2 */
+	private static void sswu(FP2 u,FP2 xn,FP2 xd,FP2 y)
+	{
+		FP2 A=htc_fp2(ROM.HTC_Ad2);
+		FP2 B=htc_fp2(ROM.HTC_Bd2);
+		FP2 Z=htc_fp2(ROM.HTC_Z2);
+		FP2 tv1=new FP2(u); tv1.sqr(); tv1.mul(Z);                   // Z.u^2
+		FP2 tv2=new FP2(tv1); tv2.sqr(); tv2.add(tv1); tv2.norm();   // Z^2.u^4+Z.u^2
+		FP2 tv3=new FP2(tv2); tv3.add(new FP2(1)); tv3.norm();
+		tv3.mul(B);                                                 // x1 numerator, B.(tv2+1)
+
+		int d=1;
+		if (tv2.iszilch()) d=0;
+		FP2 tv4=new FP2(Z);
+		tv2.neg(); tv2.norm();
+		tv4.cmove(tv2,d);
+		tv4.mul(A);                                                 // x denominator, A.(Z or -tv2)
+
+		FP2 tv6=new FP2(tv4); tv6.sqr();
+		FP2 tv5=new FP2(tv6); tv5.mul(A);
+		tv2.copy(tv3); tv2.sqr(); tv2.add(tv5); tv2.norm();
+		tv2.mul(tv3);
+		tv6.mul(tv4);                                               // xd^3
+		tv5.copy(tv6); tv5.mul(B);
+		tv2.add(tv5); tv2.norm();                                   // g(x1).xd^3
+
+		FP2 x=new FP2(tv1); x.mul(tv3);                             // x2 numerator, Z.u^2.x1
+		FP2 y1=new FP2(0);
+		int qr=sqrt_ratio(tv2,tv6,y1);
+		FP2 y2=new FP2(tv1); y2.mul(u); y2.mul(y1);                  // sqrt(g(x2))=Z.u^3.sqrt(Z.g(x1))
+
+		x.cmove(tv3,qr);
+		y2.cmove(y1,qr);
+		FP2 ny=new FP2(y2); ny.neg(); ny.norm();
+		y2.cmove(ny,u.sign()^y2.sign());
+
+		xn.copy(x);
+		xd.copy(tv4);
+		y.copy(y2);
+	}
+
+/* evaluate K[0]+K[1].x+..+K[n].x^n at x=xn/xd, scaled by xd^n so that no division is needed. xdp[i]=xd^i */
+	private static FP2 iso_eval(long[][][] K,FP2 xn,FP2[] xdp)
+	{
+		int n=K.length-1;
+		FP2 r=htc_fp2(K[n]);
+		for (int i=n-1;i>=0;i--)
+		{
+			r.mul(xn);
+			FP2 t=htc_fp2(K[i]);
+			t.mul(xdp[n-i]);
+			r.add(t); r.norm();
+		}
+		return r;
+	}
+
+/* map_to_curve of RFC 9380 - map u to a point on the twist, without clearing the cofactor */
+	public static ECP2 map2point(FP2 u)
+	{
+		FP2 xn=new FP2(0);
+		FP2 xd=new FP2(0);
+		FP2 y=new FP2(0);
+		sswu(u,xn,xd,y);
+
+		int n=ROM.HTC_YN2.length;
+		FP2[] xdp=new FP2[n];
+		xdp[0]=new FP2(1);
+		for (int i=1;i<n;i++)
+		{
+			xdp[i]=new FP2(xdp[i-1]);
+			xdp[i].mul(xd);
+		}
+/* x=xnum/xden, y=y.ynum/yden, where xden has one degree less than xnum and yden the same degree as ynum */
+		FP2 nx=iso_eval(ROM.HTC_XN2,xn,xdp);
+		FP2 dx=iso_eval(ROM.HTC_XD2,xn,xdp);
+		FP2 ny=iso_eval(ROM.HTC_YN2,xn,xdp);
+		FP2 dy=iso_eval(ROM.HTC_YD2,xn,xdp);
+		dx.mul(xd);
+
+		ECP2 P=new ECP2();
+		P.x.copy(nx); P.x.mul(dy);
+		P.y.copy(y); P.y.mul(ny); P.y.mul(dx);
+		P.z.copy(dx); P.z.mul(dy);
+		if (P.z.iszilch()) P.inf();  // exceptional case, the isogeny kernel
+		return P;
+	}
+
+/* hash_to_curve of RFC 9380 - hash message M with domain separation tag DST to a point in G2, usable as a random oracle */
+	public static ECP2 hashToCurve(byte[] DST,byte[] M)
+	{
+		FP2[] u=hashToField(DST,M,2);
+		ECP2 P=map2point(u[0]);
+		P.add(map2point(u[1]));
+		P.cfp();
+		P.affine();
+		return P;
+	}
+
+/* encode_to_curve of RFC 9380 - cheaper nonuniform encoding using a single map */
+	public static ECP2 encodeToCurve(byte[] DST,byte[] M)
+	{
+		FP2[] u=hashToField(DST,M,1);
+		ECP2 P=map2point(u[0]);
+		P.cfp();
+		P.affine();
+		return P;
+	}
+
+/* Multi-scalar multiplication - return k[0].P[0]+k[1].P[1]+...+k[n-1].P[n-1] */
+/* Pippenger's bucket method. NOT constant time - use only with public scalars */
+/* Returns null if P and k differ in length */
+	public static ECP2 muln(ECP2[] P,BIG[] k)
+	{
+		int i,j,w,d,n=P.length;
+		if (k.length!=n) return null;
+		ECP2 R=new ECP2();
+		if (n==0) return R;
+
+/* window size grows with the number of points - each window costs n additions and 2^(c+1) to sum the buckets */
+		int c=2;
+		while (c<16 && (1<<(c+c/3+2))<=n) c++;
+		int nb=0;
+		for (i=0;i<n;i++)
+		{
+			j=k[i].nbits();
+			if (j>nb) nb=j;
+		}
+		int nw=(nb+c-1)/c;
+
+/* split scalars into c-bit digits */
+		int[][] dig=new int[n][nw];
+		BIG t=new BIG(0);
+		for (i=0;i<n;i++)
+		{
+			t.copy(k[i]); t.norm();
+			for (w=0;w<nw;w++)
+			{
+				dig[i][w]=t.lastbits(c);
+				t.fshr(c);
+			}
+		}
+
+		int m=(1<<c)-1;
+		ECP2[] B=new ECP2[m];
+		boolean[] used=new boolean[m];
+		for (j=0;j<m;j++) B[j]=new ECP2();
+		ECP2 S=new ECP2();
+		ECP2 W=new ECP2();
+
+		for (w=nw-1;w>=0;w--)
+		{
+			for (j=0;j<c;j++) R.dbl();
+			for (j=0;j<m;j++) used[j]=false;
+
+/* drop each point into the bucket of its digit */
+			for (i=0;i<n;i++)
+			{
+				d=dig[i][w];
+				if (d==0) continue;
+				if (used[d-1]) B[d-1].add(P[i]);
+				else
+				{
+					B[d-1].copy(P[i]);
+					used[d-1]=true;
+				}
+			}
+
+/* sum of j.B[j-1] by running sums, from the top bucket down */
+			S.inf(); W.inf();
+			boolean start=false;
+			for (j=m-1;j>=0;j--)
+			{
+				if (used[j])
+				{
+					S.add(B[j]);
+					start=true;
+				}
+				if (start) W.add(S);
+			}
+			R.add(W);
+		}
+		R.affine();
+		return R;
+	}
+
+/* muln with the points partitioned across the threads of ex, or of the common ForkJoinPool if ex is null */
+	public static ECP2 muln(ECP2[] P,BIG[] k,Executor ex)
+	{
+		int n=P.length;
+		if (k.length!=n) return null;
+		if (ex==null) ex=ForkJoinPool.commonPool();
+		int t=1;
+		if (n>MULN_PARALLEL_THRESHOLD)
+		{
+			if (ex instanceof ForkJoinPool)
+				t=((ForkJoinPool)ex).getParallelism();
+			else
+				t=Runtime.getRuntime().availableProcessors();
+			t=Math.max(1,Math.min(t,2*n/MULN_PARALLEL_THRESHOLD));
+		}
+		if (t<2) return muln(P,k);
+
+		final ECP2[] R=new ECP2[t];
+		CompletableFuture<?>[] part=new CompletableFuture<?>[t];
+		for (int i=0;i<t;i++)
+		{
+			final int j=i;
+			final ECP2[] Pi=Arrays.copyOfRange(P,i*n/t,(i+1)*n/t);
+			final BIG[] ki=Arrays.copyOfRange(k,i*n/t,(i+1)*n/t);
+			part[i]=CompletableFuture.runAsync(new Runnable() {
+				public void run() { R[j]=muln(Pi,ki); }
+			},ex);
+		}
+		CompletableFuture.allOf(part).join();
+		for (int i=1;i<t;i++)
+			R[0].add(R[i]);
+		R[0].affine();
+		return R[0];
+	}
+
+/* Fixed base comb for the generator - W[i][j]=(2j+1).16^i.G for each signed 4-bit window i */
+/* Built on first use. e.G then costs one constant time select and one addition per window, and no doublings */
+	private static final class GTable {
+		static final ECP2[][] W=gtable();
+	}
+
+	private static ECP2[][] gtable()
+	{
+		int i,j;
+		BIG r=new BIG(ROM.CURVE_Order);
+		int nb=1+(r.nbits()+3)/4;
+		ECP2[][] W=new ECP2[nb+1][8];
+		ECP2 B=generator();
+		ECP2 D=new ECP2();
+
+		for (i=0;i<=nb;i++)
+		{
+			D.copy(B); D.dbl();
+			W[i][0]=new ECP2(B);
+			for (j=1;j<8;j++)
+			{
+				W[i][j]=new ECP2(W[i][j-1]);
+				W[i][j].add(D);
+			}
+			B.dbl(); B.dbl(); B.dbl(); B.dbl();
+		}
+		return W;
+	}
+
+/* return e.G for the fixed generator G, in constant time */
+	public static ECP2 mulGenerator(BIG e)
+	{
+		int i,s,ns;
+		ECP2[][] W=GTable.W;
+		int nb=W.length-1;
+		BIG t=new BIG(e);
+		BIG mt=new BIG(0);
+		ECP2 P,C;
+		ECP2 Q=new ECP2();
+		byte[] w=new byte[nb+1];
+
+		t.mod(new BIG(ROM.CURVE_Order));
+
+/* make exponent odd - add 2G if even, G if odd */
+		s=t.parity();
+		t.inc(1); t.norm(); ns=t.parity(); mt.copy(t); mt.inc(1); mt.norm();
+		t.cmove(mt,s);
+		C=new ECP2(W[0][0]); C.dbl();
+		C.cmove(W[0][0],ns);
+
+/* convert exponent to signed 4-bit window - the top digit is always 1 as t<2r */
+		for (i=0;i<nb;i++)
+		{
+			w[i]=(byte)(t.lastbits(5)-16);
+			t.dec(w[i]); t.norm();
+			t.fshr(4);
+		}
+		w[nb]=(byte)t.lastbits(5);
+
+		P=new ECP2(W[nb][(w[nb]-1)/2]);
+		for (i=0;i<nb;i++)
+		{
+			Q.select(W[i],w[i]);
+			P.add(Q);
+		}
+		P.sub(C);
+		P.affine();
+		return P;
+	}
+
 	public static ECP2 generator()
 	{
 		return new ECP2(new FP2(new BIG(ROM.CURVE_Pxa),new BIG(ROM.CURVE_Pxb)),new FP2(new BIG(ROM.CURVE_Pya),new BIG(ROM.CURVE_Pyb)));
@@ -262,6 +262,7 @@ public final class FP {
 			DBIG d=BIG.mul(x,b.x);
 			x.copy(mod(d));
 		}
+		else x.zero();
 
 		XES=2;
 	}
@@ -394,19 +395,14 @@ public final class FP {
 		}
 	}
 
-/* this=1/this mod Modulus */
+/* this=1/this mod Modulus, in constant time */
 	public void inverse()
 	{
-/*
+		reduce();
 		BIG r=redc();
-		r.invmodp(p);
+		r.invmodp(new BIG(ROM.Modulus));
 		x.copy(r);
 		nres();
-*/
-		BIG m2=new BIG(ROM.Modulus);
-		m2.dec(2); m2.norm();
-		copy(pow(m2));
-
 	}
 
 /* return TRUE if this==a */
@@ -486,16 +482,51 @@ public final class FP {
 		return r;
 	} */
 
+/* this=this^(2^n), squaring in place */
+	private void nsqr(int n)
+	{
+		for (int i=0;i<n;i++) sqr();
+	}
+
+/* sliding window recoding of (p-3)/4 - table entries a^(2i+1) and the squarings before each multiplication */
+	private static final int[] FPOW_W={6,8,7,2,3,11,15,12,2,6,4,1,13,2,7,13,0,6,11,5,6,14,4,14,
+		6,11,9,12,1,2,4,11,14,9,9,6,10,7,6,1,7,1,4,7,10,15,15,15,
+		6,1,10,15,15,15,7,3,15,14,15,15,15,15,15,15,6,10,2};
+	private static final int[] FPOW_S={0,13,7,4,6,7,5,5,3,6,6,3,8,3,6,6,3,8,7,5,6,6,4,8,
+		4,7,9,5,2,7,7,6,5,5,5,8,7,9,5,3,8,3,7,9,6,6,5,5,
+		4,3,8,7,5,5,4,4,7,5,5,5,5,5,5,5,4,6,4};
+	private static final int FPOW_TAIL=1;
+
+/* return this^((p-3)/4) by a fixed sliding window chain over the 16 odd powers of this */
+	private FP fpow()
+	{
+		FP[] t=new FP[16];
+		FP a2=new FP(this); a2.sqr();
+		t[0]=new FP(this);
+		for (int i=1;i<16;i++)
+		{
+			t[i]=new FP(t[i-1]);
+			t[i].mul(a2);
+		}
+		FP r=new FP(t[FPOW_W[0]]);
+		for (int i=1;i<FPOW_W.length;i++)
+		{
+			r.nsqr(FPOW_S[i]);
+			r.mul(t[FPOW_W[i]]);
+		}
+		r.nsqr(FPOW_TAIL);
+		r.reduce();
+		return r;
+	}
+
 /* return sqrt(this) mod Modulus */
 	public FP sqrt()
 	{
 		reduce();
-		BIG b=new BIG(ROM.Modulus);
 		if (MOD8==5)
 		{
-			b.dec(5); b.norm(); b.shr(3);
 			FP i=new FP(this); i.x.shl(1);
-			FP v=i.pow(b);
+			FP v=i.fpow();
 			i.mul(v); i.mul(v);
 			i.x.dec(1);
 			FP r=new FP(this);
@@ -505,8 +536,10 @@ public final class FP {
 		}
 		else
 		{
-			b.inc(1); b.norm(); b.shr(2);
-			return pow(b);
+			FP r=fpow();
+			r.mul(this);
+			r.reduce();
+			return r;
 		}
 	}
 
@@ -516,6 +549,34 @@ public final class FP {
 		BIG w=redc();
 		return w.jacobi(BIG.BIGROMMOD);
 	}
+
+/* return 1 if this is a non-zero quadratic residue, else 0 - Euler's criterion, without computing the root */
+	public int qr()
+	{
+		FP r=new FP(this);
+		r.reduce();
+		FP t=r.fpow();
+		if (MOD8==5)
+		{ /* this^((p-1)/2)=t^4.this^2 */
+			t.sqr(); t.sqr();
+			t.mul(r); t.mul(r);
+		}
+		else
+		{ /* this^((p-1)/2)=t^2.this */
+			t.sqr();
+			t.mul(r);
+		}
+		if (t.equals(new FP(1))) return 1;
+		return 0;
+	}
+
+/* return sgn0(this) as defined in RFC 9380 - the parity of the fully reduced value */
+	public int sign()
+	{
+		FP t=new FP(this);
+		t.reduce();
+		return t.redc().parity();
+	}
 /*
 	public static void main(String[] args) {
 		BIG m=new BIG(ROM.Modulus);
@@ -273,15 +273,15 @@ public final class FP2
 		FP w1=new FP(b);
 		FP w2=new FP(a);
 		w1.sqr(); w2.sqr(); w1.add(w2);
-		if (w1.jacobi()!=1) { zero(); return false; }
+		if (w1.qr()!=1) { zero(); return false; }
 		w1=w1.sqrt();
 		w2.copy(a); w2.add(w1); 
 		w2.norm(); w2.div2();
-		if (w2.jacobi()!=1)
+		if (w2.qr()!=1)
 		{
 			w2.copy(a); w2.sub(w1); 
 			w2.norm(); w2.div2();
-			if (w2.jacobi()!=1) { zero(); return false; }
+			if (w2.qr()!=1) { zero(); return false; }
 		}
 		w2=w2.sqrt();
 		a.copy(w2);
@@ -291,6 +291,54 @@ public final class FP2
 		return true;
 	}
 
+/* return sgn0(this) as defined in RFC 9380 */
+	public int sign()
+	{
+		int p1=a.sign();
+		int p2=b.sign();
+		int u=0;
+		if (a.iszilch()) u=1;
+		return p1|(u&p2);
+	}
+
+/* return this^(e0+p.e1) for public exponents e0, e1 - since this^p=conj(this) an exponent up to p^2 is handled as two BIGs */
+	public FP2 pow(BIG e0,BIG e1)
+	{
+		int i,j,k;
+		FP2[] T=new FP2[16];
+		FP2 c=new FP2(this);
+		norm(); c.conj();
+
+/* T[4j+i]=this^i.conj(this)^j */
+		T[0]=new FP2(1);
+		for (j=0;j<4;j++)
+		{
+			if (j>0)
+			{
+				T[4*j]=new FP2(T[4*j-4]);
+				T[4*j].mul(c);
+			}
+			for (i=1;i<4;i++)
+			{
+				T[4*j+i]=new FP2(T[4*j+i-1]);
+				T[4*j+i].mul(this);
+			}
+		}
+
+		int nb=e0.nbits();
+		if (e1.nbits()>nb) nb=e1.nbits();
+		FP2 r=new FP2(1);
+		for (k=(nb+1)/2-1;k>=0;k--)
+		{
+			r.sqr(); r.sqr();
+			i=2*e0.bit(2*k+1)+e0.bit(2*k);
+			j=2*e1.bit(2*k+1)+e1.bit(2*k);
+			if (i+j!=0) r.mul(T[4*j+i]);
+		}
+		r.reduce();
+		return r;
+	}
+
 /* output to hex string */
 	public String toString() 
 	{
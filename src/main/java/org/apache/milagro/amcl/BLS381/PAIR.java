@@ -21,31 +21,71 @@ under the License.
 
 package org.apache.milagro.amcl.BLS381;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
 public final class PAIR {
 
 	public static final boolean USE_GLV =true;
 	public static final boolean USE_GS_G2 =true;
 	public static final boolean USE_GS_GT =true;	
 	public static final boolean GT_STRONG=false;
+	public static final int PARALLEL_THRESHOLD=32;  /* multi-pairings with no more pairs than this run serially */
+
 
+/* scratch for FP12.smul, made once per Miller loop */
+	private static FP4[] scratch()
+	{
+		FP4[] t=new FP4[6];
+		for (int i=0;i<6;i++) t[i]=new FP4(0);
+		return t;
+	}
 
 /* Line function */
 	public static FP12 line(ECP2 A,ECP2 B,FP Qx,FP Qy)
 	{
-//System.out.println("Into line");
-		FP4 a,b,c;                            // Edits here
-//		c=new FP4(0);
+		FP12 lv=new FP12(0);
+		line(lv,A,B,Qx,Qy);
+		return lv;
+	}
+
+/* Line function, written in place into the sparse element lv so the Miller loop can reuse it for every step */
+	public static void line(FP12 lv,ECP2 A,ECP2 B,FP Qx,FP Qy)
+	{
+		FP2 YZ=lv.geta().geta();   // L(0,1) - term in Ys
+		FP2 ZZ=lv.geta().getb();   // L(0,0) - constant term
+		FP2 XX,YY;                 // L(1,0) - term in Xs, and an unused slot as scratch
+		if (ECP.SEXTIC_TWIST==ECP.D_TYPE)
+		{
+			XX=lv.getb().geta();
+			YY=lv.getc().geta();
+			lv.getb().getb().zero();
+			lv.getc().getb().zero();
+		}
+		else
+		{
+			XX=lv.getc().getb();
+			YY=lv.getb().geta();
+			lv.getb().getb().zero();
+			lv.getc().geta().zero();
+		}
+
 		if (A==B)
 		{ // Doubling
-			FP2 XX=new FP2(A.getx());  //X
-			FP2 YY=new FP2(A.gety());  //Y
-			FP2 ZZ=new FP2(A.getz());  //Z
-			FP2 YZ=new FP2(YY);        //Y 
-			YZ.mul(ZZ);                //YZ
+			YZ.copy(A.gety());         //Y
+			YZ.mul(A.getz());          //YZ
+			XX.copy(A.getx());
 			XX.sqr();	               //X^2
+			YY.copy(A.gety());
 			YY.sqr();	               //Y^2
+			ZZ.copy(A.getz());
 			ZZ.sqr();			       //Z^2
-			
+
 			YZ.imul(4);
 			YZ.neg(); YZ.norm();       //-2YZ
 			YZ.pmul(Qy);               //-2YZ.Ys
@@ -54,8 +94,8 @@ public final class PAIR {
 			XX.pmul(Qx);               //3X^2.Xs
 
 			int sb=3*ROM.CURVE_B_I;
-			ZZ.imul(sb); 	
-			
+			ZZ.imul(sb);
+
 			if (ECP.SEXTIC_TWIST==ECP.D_TYPE)
 			{
 				ZZ.div_ip2();
@@ -67,37 +107,29 @@ public final class PAIR {
 				YZ.mul_ip();
 				YZ.norm();
 			}
-			
-			ZZ.norm(); // 3b.Z^2 
+
+			ZZ.norm(); // 3b.Z^2
 
 			YY.add(YY);
 			ZZ.sub(YY); ZZ.norm();     // 3b.Z^2-Y^2
 
-			a=new FP4(YZ,ZZ);          // -2YZ.Ys | 3b.Z^2-Y^2 | 3X^2.Xs 
-			if (ECP.SEXTIC_TWIST==ECP.D_TYPE)
-			{			
-				b=new FP4(XX);             // L(0,1) | L(0,0) | L(1,0)
-				c=FP4.ZERO;
-			}
-			if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
-			{
-				b=FP4.ZERO;
-				c=new FP4(XX); c.times_i();
-			}
 			A.dbl();
 		}
 		else
 		{ // Addition - assume B is affine
-
-			FP2 X1=new FP2(A.getx());    // X1
-			FP2 Y1=new FP2(A.gety());    // Y1
-			FP2 T1=new FP2(A.getz());    // Z1
-			FP2 T2=new FP2(A.getz());    // Z1
-			
-			T1.mul(B.gety());    // T1=Z1.Y2 
+			FP2 X1=YZ;
+			FP2 Y1=XX;
+			FP2 T1=YY;
+			FP2 T2=ZZ;
+
+			T1.copy(A.getz());
+			T1.mul(B.gety());    // T1=Z1.Y2
+			T2.copy(A.getz());
 			T2.mul(B.getx());    // T2=Z1.X2
 
+			X1.copy(A.getx());
 			X1.sub(T2); X1.norm();  // X1=X1-Z1.X2
+			Y1.copy(A.gety());
 			Y1.sub(T1); Y1.norm();  // Y1=Y1-Z1.Y2
 
 			T1.copy(X1);            // T1=X1-Z1.X2
@@ -116,21 +148,9 @@ public final class PAIR {
 			T2.sub(T1); T2.norm();          // T2=(Y1-Z1.Y2).X2 - (X1-Z1.X2).Y2
 			Y1.pmul(Qx);  Y1.neg(); Y1.norm(); // Y1=-(Y1-Z1.Y2).Xs
 
-			a=new FP4(X1,T2);       // (X1-Z1.X2).Ys  |  (Y1-Z1.Y2).X2 - (X1-Z1.X2).Y2  | - (Y1-Z1.Y2).Xs
-			if (ECP.SEXTIC_TWIST==ECP.D_TYPE)
-			{
-				b=new FP4(Y1);
-				c=FP4.ZERO;
-			}
-			if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
-			{
-				b=FP4.ZERO;
-				c=new FP4(Y1); c.times_i();
-			}
 			A.add(B);
 		}
-//System.out.println("Out of line");
-		return new FP12(a,b,c);
+		YY.zero();
 	}
 
 /* Optimal R-ate pairing */
@@ -140,7 +160,8 @@ public final class PAIR {
 		BIG x=new BIG(ROM.CURVE_Bnx);
 		BIG n=new BIG(x);
 		ECP2 K;
-		FP12 lv;
+		FP12 lv=new FP12(0);
+		FP4[] st=scratch();
 		int bt;
 
 // P is needed in affine form for line function, Q for (Qx,Qy) extraction
@@ -186,20 +207,20 @@ public final class PAIR {
 		for (int i=nb-2;i>=1;i--)
 		{
 			r.sqr();
-			lv=line(A,A,Qx,Qy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,A,A,Qx,Qy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
 
 			bt=n3.bit(i)-n.bit(i); // bt=n.bit(i);
 			if (bt==1)
 			{
-				lv=line(A,P,Qx,Qy);
-				r.smul(lv,ECP.SEXTIC_TWIST);
+				line(lv,A,P,Qx,Qy);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
 			}
 			if (bt==-1)
 			{
 				//P.neg();
-				lv=line(A,MP,Qx,Qy);
-				r.smul(lv,ECP.SEXTIC_TWIST);
+				line(lv,A,MP,Qx,Qy);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
 				//P.neg();
 			}
 		}
@@ -219,12 +240,12 @@ public final class PAIR {
 			}
 			K.copy(P);
 			K.frob(f);
-			lv=line(A,K,Qx,Qy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,A,K,Qx,Qy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
 			K.frob(f);
 			K.neg();
-			lv=line(A,K,Qx,Qy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,A,K,Qx,Qy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
 		} 
 		return r;
 	}
@@ -236,7 +257,8 @@ public final class PAIR {
 		BIG x=new BIG(ROM.CURVE_Bnx);
 		BIG n=new BIG(x);
 		ECP2 K;
-		FP12 lv;
+		FP12 lv=new FP12(0);
+		FP4[] st=scratch();
 		int bt;
 
 		ECP2 P=new ECP2(P1);
@@ -293,29 +315,29 @@ public final class PAIR {
 		for (int i=nb-2;i>=1;i--)
 		{
 			r.sqr();
-			lv=line(A,A,Qx,Qy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,A,A,Qx,Qy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
 
-			lv=line(B,B,Sx,Sy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,B,B,Sx,Sy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
 
 			bt=n3.bit(i)-n.bit(i); // bt=n.bit(i);
 			if (bt==1)
 			{
-				lv=line(A,P,Qx,Qy);
-				r.smul(lv,ECP.SEXTIC_TWIST);
-				lv=line(B,R,Sx,Sy);
-				r.smul(lv,ECP.SEXTIC_TWIST);
+				line(lv,A,P,Qx,Qy);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
+				line(lv,B,R,Sx,Sy);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
 			}
 			if (bt==-1)
 			{
 				//P.neg(); 
-				lv=line(A,MP,Qx,Qy);
-				r.smul(lv,ECP.SEXTIC_TWIST);
+				line(lv,A,MP,Qx,Qy);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
 				//P.neg(); 
 				//R.neg();
-				lv=line(B,MR,Sx,Sy);
-				r.smul(lv,ECP.SEXTIC_TWIST);
+				line(lv,B,MR,Sx,Sy);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
 				//R.neg();
 			}
 		}
@@ -338,20 +360,299 @@ public final class PAIR {
 			K.copy(P);
 			K.frob(f);
 
-			lv=line(A,K,Qx,Qy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,A,K,Qx,Qy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
 			K.frob(f);
 			K.neg();
-			lv=line(A,K,Qx,Qy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,A,K,Qx,Qy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
 			K.copy(R);
 			K.frob(f);
-			lv=line(B,K,Sx,Sy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,B,K,Sx,Sy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
 			K.frob(f);
 			K.neg();
-			lv=line(B,K,Sx,Sy);
-			r.smul(lv,ECP.SEXTIC_TWIST);
+			line(lv,B,K,Sx,Sy);
+			r.smul(lv,ECP.SEXTIC_TWIST,st);
+		}
+		return r;
+	}
+
+/* Optimal R-ate multi-pairing e(P[0],Q[0]).e(P[1],Q[1])...e(P[n-1],Q[n-1]) */
+/* All pairs share one Miller loop, so there is a single FP12 squaring per bit */
+/* Returns null if P1 and Q1 differ in length */
+	public static FP12 multiAte(ECP2[] P1,ECP[] Q1)
+	{
+		if (P1.length!=Q1.length) return null;
+		FP2 f;
+		BIG x=new BIG(ROM.CURVE_Bnx);
+		BIG n=new BIG(x);
+		ECP2 K=new ECP2();
+		FP12 lv=new FP12(0);
+		FP4[] st=scratch();
+		int i,j,m,bt;
+
+		ECP2[] P=new ECP2[P1.length];
+		ECP2[] A=new ECP2[P1.length];
+		ECP2[] MP=new ECP2[P1.length];
+		FP[] Qx=new FP[P1.length];
+		FP[] Qy=new FP[P1.length];
+
+// Pairs involving the point at infinity contribute 1, so drop them
+		m=0;
+		for (j=0;j<P1.length;j++)
+		{
+			if (P1[j].is_infinity() || Q1[j].is_infinity()) continue;
+			ECP Q=new ECP(Q1[j]);
+			Q.affine();
+			P[m]=new ECP2(P1[j]);
+			P[m].affine();
+			Qx[m]=new FP(Q.getx());
+			Qy[m]=new FP(Q.gety());
+			A[m]=new ECP2(P[m]);
+			MP[m]=new ECP2(P[m]); MP[m].neg();
+			m++;
+		}
+
+		if (ECP.CURVE_PAIRING_TYPE==ECP.BN)
+		{
+			f=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
+			if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
+			{
+				f.inverse();
+				f.norm();
+			}
+			n.pmul(6);
+			if (ECP.SIGN_OF_X==ECP.POSITIVEX)
+			{
+				n.inc(2);
+			} else {
+				n.dec(2);
+			}
+		}
+		else
+			n.copy(x);
+		n.norm();
+
+		BIG n3=new BIG(n);
+		n3.pmul(3);
+		n3.norm();
+
+		FP12 r=new FP12(1);
+		if (m==0) return r;
+
+		int nb=n3.nbits();
+
+		for (i=nb-2;i>=1;i--)
+		{
+			r.sqr();
+			bt=n3.bit(i)-n.bit(i); // bt=n.bit(i);
+			for (j=0;j<m;j++)
+			{
+				line(lv,A[j],A[j],Qx[j],Qy[j]);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
+				if (bt==1)
+				{
+					line(lv,A[j],P[j],Qx[j],Qy[j]);
+					r.smul(lv,ECP.SEXTIC_TWIST,st);
+				}
+				if (bt==-1)
+				{
+					line(lv,A[j],MP[j],Qx[j],Qy[j]);
+					r.smul(lv,ECP.SEXTIC_TWIST,st);
+				}
+			}
+		}
+
+		if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
+		{
+			r.conj();
+		}
+
+/* R-ate fixup required for BN curves */
+		if (ECP.CURVE_PAIRING_TYPE==ECP.BN)
+		{
+			for (j=0;j<m;j++)
+			{
+				if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
+				{
+					A[j].neg();
+				}
+				K.copy(P[j]);
+				K.frob(f);
+				line(lv,A[j],K,Qx[j],Qy[j]);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
+				K.frob(f);
+				K.neg();
+				line(lv,A[j],K,Qx[j],Qy[j]);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
+			}
+		}
+		return r;
+	}
+
+/* number of tasks to split n pairs into for ex - one per thread, each with at least half the threshold */
+	private static int tasks(int n,Executor ex)
+	{
+		if (n<=PARALLEL_THRESHOLD) return 1;
+		int t;
+		if (ex instanceof ForkJoinPool)
+			t=((ForkJoinPool)ex).getParallelism();
+		else
+			t=Runtime.getRuntime().availableProcessors();
+		return Math.max(1,Math.min(t,2*n/PARALLEL_THRESHOLD));
+	}
+
+/* product of the partial Miller loops */
+	private static FP12 product(List<CompletableFuture<FP12>> part)
+	{
+		FP12 r=part.get(0).join();
+		for (int i=1;i<part.size();i++)
+			r.mul(part.get(i).join());
+		return r;
+	}
+
+/* multiAte with the pairs partitioned across the threads of ex, or of the common ForkJoinPool if ex is null */
+/* Each task runs the Miller loop over its share and the partial products are multiplied - fexp is still applied once by the caller */
+	public static FP12 multiAte(ECP2[] P,ECP[] Q,Executor ex)
+	{
+		int n=P.length;
+		if (Q.length!=n) return null;
+		if (ex==null) ex=ForkJoinPool.commonPool();
+		int t=tasks(n,ex);
+		if (t<2) return multiAte(P,Q);
+
+		List<CompletableFuture<FP12>> part=new ArrayList<CompletableFuture<FP12>>(t);
+		for (int i=0;i<t;i++)
+		{
+			final ECP2[] Pi=Arrays.copyOfRange(P,i*n/t,(i+1)*n/t);
+			final ECP[] Qi=Arrays.copyOfRange(Q,i*n/t,(i+1)*n/t);
+			part.add(CompletableFuture.supplyAsync(new Supplier<FP12>() {
+				public FP12 get() { return multiAte(Pi,Qi); }
+			},ex));
+		}
+		return product(part);
+	}
+
+/* multiAte with precomputed G2 lines, with the pairs partitioned across the threads of ex (or the common ForkJoinPool) */
+	public static FP12 multiAte(PreparedG2[] P,ECP[] Q,Executor ex)
+	{
+		int n=P.length;
+		if (Q.length!=n) return null;
+		if (ex==null) ex=ForkJoinPool.commonPool();
+		int t=tasks(n,ex);
+		if (t<2) return multiAte(P,Q);
+
+		List<CompletableFuture<FP12>> part=new ArrayList<CompletableFuture<FP12>>(t);
+		for (int i=0;i<t;i++)
+		{
+			final PreparedG2[] Pi=Arrays.copyOfRange(P,i*n/t,(i+1)*n/t);
+			final ECP[] Qi=Arrays.copyOfRange(Q,i*n/t,(i+1)*n/t);
+			part.add(CompletableFuture.supplyAsync(new Supplier<FP12>() {
+				public FP12 get() { return multiAte(Pi,Qi); }
+			},ex));
+		}
+		return product(part);
+	}
+
+/* prepare ate parameter, n=6u+2 (BN) or n=u (BLS), n3=3*n. Returns number of bits in n3 */
+	static int lbits(BIG n3,BIG n)
+	{
+		n.copy(new BIG(ROM.CURVE_Bnx));
+		if (ECP.CURVE_PAIRING_TYPE==ECP.BN)
+		{
+			n.pmul(6);
+			if (ECP.SIGN_OF_X==ECP.POSITIVEX)
+			{
+				n.inc(2);
+			} else {
+				n.dec(2);
+			}
+		}
+		n.norm();
+		n3.copy(n);
+		n3.pmul(3);
+		n3.norm();
+		return n3.nbits();
+	}
+
+/* Optimal R-ate pairing with precomputed G2 lines */
+	public static FP12 ate(PreparedG2 P,ECP Q)
+	{
+		return multiAte(new PreparedG2[] {P},new ECP[] {Q});
+	}
+
+/* Optimal R-ate double pairing e(P,Q).e(R,S) with precomputed G2 lines */
+	public static FP12 ate2(PreparedG2 P,ECP Q,PreparedG2 R,ECP S)
+	{
+		return multiAte(new PreparedG2[] {P,R},new ECP[] {Q,S});
+	}
+
+/* Optimal R-ate multi-pairing with precomputed G2 lines - only the G1 points are touched in the Miller loop */
+/* Returns null if P1 and Q1 differ in length */
+	public static FP12 multiAte(PreparedG2[] P1,ECP[] Q1)
+	{
+		if (P1.length!=Q1.length) return null;
+		BIG n=new BIG(0);
+		BIG n3=new BIG(0);
+		int i,j,k,m,bt;
+
+		FP12 lv=new FP12(0);
+		FP4[] st=scratch();
+		PreparedG2[] P=new PreparedG2[P1.length];
+		FP[] Qx=new FP[P1.length];
+		FP[] Qy=new FP[P1.length];
+
+		m=0;
+		for (j=0;j<P1.length;j++)
+		{
+			if (P1[j].is_infinity() || Q1[j].is_infinity()) continue;
+			ECP Q=new ECP(Q1[j]);
+			Q.affine();
+			P[m]=P1[j];
+			Qx[m]=new FP(Q.getx());
+			Qy[m]=new FP(Q.gety());
+			m++;
+		}
+
+		FP12 r=new FP12(1);
+		if (m==0) return r;
+
+		int nb=lbits(n3,n);
+
+		k=0;
+		for (i=nb-2;i>=1;i--)
+		{
+			r.sqr();
+			bt=n3.bit(i)-n.bit(i);
+			for (j=0;j<m;j++)
+			{
+				P[j].line(lv,k,Qx[j],Qy[j]);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
+				if (bt!=0)
+				{
+					P[j].line(lv,k+1,Qx[j],Qy[j]);
+					r.smul(lv,ECP.SEXTIC_TWIST,st);
+				}
+			}
+			k+=(bt!=0)?2:1;
+		}
+
+		if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
+		{
+			r.conj();
+		}
+
+/* R-ate fixup required for BN curves */
+		if (ECP.CURVE_PAIRING_TYPE==ECP.BN)
+		{
+			for (j=0;j<m;j++)
+			{
+				P[j].line(lv,k,Qx[j],Qy[j]);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
+				P[j].line(lv,k+1,Qx[j],Qy[j]);
+				r.smul(lv,ECP.SEXTIC_TWIST,st);
+			}
 		}
 		return r;
 	}
@@ -360,7 +661,6 @@ public final class PAIR {
 	public static FP12 fexp(FP12 m)
 	{
 		FP2 f=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
-		BIG x=new BIG(ROM.CURVE_Bnx);
 		FP12 r=new FP12(m);
 
 /* Easy part of final exp */
@@ -386,7 +686,7 @@ public final class PAIR {
 			x0.frob(f);
 			x1=new FP12(r);
 			x1.conj();
-			x4=r.pow(x);
+			x4=r.cyclotomicPowX();
 			if (ECP.SIGN_OF_X==ECP.POSITIVEX)
 			{
 				x4.conj();
@@ -395,13 +695,13 @@ public final class PAIR {
 			x3=new FP12(x4);
 			x3.frob(f);
 
-			x2=x4.pow(x);
+			x2=x4.cyclotomicPowX();
 			if (ECP.SIGN_OF_X==ECP.POSITIVEX)
 			{
 				x2.conj();
 			}
 			x5=new FP12(x2); x5.conj();
-			lv=x2.pow(x);
+			lv=x2.cyclotomicPowX();
 			if (ECP.SIGN_OF_X==ECP.POSITIVEX)
 			{
 				lv.conj();
@@ -439,30 +739,30 @@ public final class PAIR {
 			FP12 y0,y1,y2,y3;
 // Ghamman & Fouotsa Method
 			y0=new FP12(r); y0.usqr();
-			y1=y0.pow(x);
+			y1=r.cyclotomicPowX();
 			if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
 			{
 				y1.conj();
 			}
-			x.fshr(1); y2=y1.pow(x); 
+			y2=y1.cyclotomicPowX();     // (r^x)^x rather than (r^2x)^(x/2)
 			if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
 			{
 				y2.conj();
-			}			
-			
-			x.fshl(1);
+			}
+			y1.usqr();
+
 			y3=new FP12(r); y3.conj();
 			y1.mul(y3);
 
 			y1.conj();
 			y1.mul(y2);
 
-			y2=y1.pow(x);
+			y2=y1.cyclotomicPowX();
 			if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
 			{
 				y2.conj();
 			}
-			y3=y2.pow(x);
+			y3=y2.cyclotomicPowX();
 			if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
 			{
 				y3.conj();
@@ -475,7 +775,7 @@ public final class PAIR {
 			y2.frob(f); y2.frob(f);
 			y1.mul(y2);
 
-			y2=y3.pow(x);
+			y2=y3.cyclotomicPowX();
 			if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
 			{
 				y2.conj();
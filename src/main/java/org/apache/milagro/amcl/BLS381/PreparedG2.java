@@ -0,0 +1,197 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* G2 point with precomputed Miller loop line function coefficients */
+/* Each line is stored as (cy,cz,cx) so that l(Qx,Qy) = cy.Qy | cz | cx.Qx, which is all that depends on the G1 point */
+
+package org.apache.milagro.amcl.BLS381;
+
+public final class PreparedG2 {
+	private final FP2[] cy;
+	private final FP2[] cz;
+	private final FP2[] cx;
+	private final boolean inf;
+
+/* Constructor - walk the Miller loop once for P, recording every doubling and addition line */
+	public PreparedG2(ECP2 P1)
+	{
+		FP2 f;
+		BIG n=new BIG(0);
+		BIG n3=new BIG(0);
+		int i,k,bt;
+
+		inf=P1.is_infinity();
+
+		int nb=PAIR.lbits(n3,n);
+		int nl=0;
+		for (i=nb-2;i>=1;i--)
+		{
+			nl++;
+			if (n3.bit(i)!=n.bit(i)) nl++;
+		}
+		if (ECP.CURVE_PAIRING_TYPE==ECP.BN) nl+=2;
+
+		cy=new FP2[nl];
+		cz=new FP2[nl];
+		cx=new FP2[nl];
+		if (inf) return;
+
+		ECP2 P=new ECP2(P1);
+		P.affine();
+		ECP2 A=new ECP2(P);
+		ECP2 MP=new ECP2(P); MP.neg();
+
+		k=0;
+		for (i=nb-2;i>=1;i--)
+		{
+			coeffs(A,A,k++);
+			bt=n3.bit(i)-n.bit(i);
+			if (bt==1) coeffs(A,P,k++);
+			if (bt==-1) coeffs(A,MP,k++);
+		}
+
+/* R-ate fixup required for BN curves */
+		if (ECP.CURVE_PAIRING_TYPE==ECP.BN)
+		{
+			f=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
+			if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
+			{
+				f.inverse();
+				f.norm();
+			}
+			if (ECP.SIGN_OF_X==ECP.NEGATIVEX)
+			{
+				A.neg();
+			}
+			ECP2 K=new ECP2(P);
+			K.frob(f);
+			coeffs(A,K,k++);
+			K.frob(f);
+			K.neg();
+			coeffs(A,K,k++);
+		}
+	}
+
+/* Test this=O? */
+	public boolean is_infinity()
+	{
+		return inf;
+	}
+
+/* line function coefficients for A+B (or 2A if A==B) - as PAIR.line, but without the G1 point */
+	private void coeffs(ECP2 A,ECP2 B,int k)
+	{
+		if (A==B)
+		{ // Doubling
+			FP2 XX=new FP2(A.getx());  //X
+			FP2 YY=new FP2(A.gety());  //Y
+			FP2 ZZ=new FP2(A.getz());  //Z
+			FP2 YZ=new FP2(YY);        //Y
+			YZ.mul(ZZ);                //YZ
+			XX.sqr();	               //X^2
+			YY.sqr();	               //Y^2
+			ZZ.sqr();			       //Z^2
+
+			YZ.imul(4);
+			YZ.neg(); YZ.norm();       //-2YZ
+
+			XX.imul(6);                //3X^2
+
+			int sb=3*ROM.CURVE_B_I;
+			ZZ.imul(sb);
+
+			if (ECP.SEXTIC_TWIST==ECP.D_TYPE)
+			{
+				ZZ.div_ip2();
+			}
+			if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
+			{
+				ZZ.mul_ip();
+				ZZ.add(ZZ);
+				YZ.mul_ip();
+				YZ.norm();
+			}
+
+			ZZ.norm(); // 3b.Z^2
+
+			YY.add(YY);
+			ZZ.sub(YY); ZZ.norm();     // 3b.Z^2-Y^2
+
+			cy[k]=YZ; cz[k]=ZZ; cx[k]=XX;
+			A.dbl();
+		}
+		else
+		{ // Addition - assume B is affine
+			FP2 X1=new FP2(A.getx());    // X1
+			FP2 Y1=new FP2(A.gety());    // Y1
+			FP2 T1=new FP2(A.getz());    // Z1
+			FP2 T2=new FP2(A.getz());    // Z1
+
+			T1.mul(B.gety());    // T1=Z1.Y2
+			T2.mul(B.getx());    // T2=Z1.X2
+
+			X1.sub(T2); X1.norm();  // X1=X1-Z1.X2
+			Y1.sub(T1); Y1.norm();  // Y1=Y1-Z1.Y2
+
+			T1.copy(X1);            // T1=X1-Z1.X2
+
+			if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
+			{
+				X1.mul_ip();
+				X1.norm();
+			}
+
+			T1.mul(B.gety());       // T1=(X1-Z1.X2).Y2
+
+			T2.copy(Y1);            // T2=Y1-Z1.Y2
+			T2.mul(B.getx());       // T2=(Y1-Z1.Y2).X2
+			T2.sub(T1); T2.norm();          // T2=(Y1-Z1.Y2).X2 - (X1-Z1.X2).Y2
+			Y1.neg(); Y1.norm();    // Y1=-(Y1-Z1.Y2)
+
+			cy[k]=X1; cz[k]=T2; cx[k]=Y1;
+			A.add(B);
+		}
+		cy[k].reduce();
+		cz[k].reduce();
+		cx[k].reduce();
+	}
+
+/* evaluate the k-th line function at the G1 point (Qx,Qy), written in place into lv */
+	void line(FP12 lv,int k,FP Qx,FP Qy)
+	{
+		FP2 t;
+		lv.geta().geta().copy(cy[k]);
+		lv.geta().geta().pmul(Qy);
+		lv.geta().getb().copy(cz[k]);
+		if (ECP.SEXTIC_TWIST==ECP.D_TYPE)
+		{
+			t=lv.getb().geta();
+			lv.getb().getb().zero();
+			lv.getc().zero();
+		}
+		else
+		{
+			t=lv.getc().getb();
+			lv.getb().zero();
+			lv.getc().geta().zero();
+		}
+		t.copy(cx[k]);
+		t.pmul(Qx);
+	}
+}
@@ -21,11 +21,11 @@ under the License.
 
 package org.apache.milagro.amcl.BLS461;
 
+import java.util.concurrent.Executor;
 import org.apache.milagro.amcl.RAND;
-import org.apache.milagro.amcl.HASH256;
-import org.apache.milagro.amcl.HASH384;
-import org.apache.milagro.amcl.HASH512;
+import org.apache.milagro.amcl.HMAC;
 import org.apache.milagro.amcl.AES;
+import org.apache.milagro.amcl.KEYCACHE;
 
 public final class ECDH {
 	public static final int INVALID_PUBLIC_KEY=-2;
@@ -63,47 +63,7 @@ public final class ECDH {
 
 	public static byte[] hashit(int sha,byte[] A,int n,byte[] B,int pad)
 	{
-		byte[] R=null;
-
-		if (sha==ECP.SHA256)
-		{
-			HASH256 H=new HASH256();
-			H.process_array(A); if (n>0) H.process_num(n);
-			if (B!=null) H.process_array(B);
-			R=H.hash();
-		}
-		if (sha==ECP.SHA384)
-		{
-			HASH384 H=new HASH384();
-			H.process_array(A); if (n>0) H.process_num(n);
-			if (B!=null) H.process_array(B);
-			R=H.hash();
-		}
-		if (sha==ECP.SHA512)
-		{
-			HASH512 H=new HASH512();
-			H.process_array(A); if (n>0) H.process_num(n);
-			if (B!=null) H.process_array(B);
-			R=H.hash();
-		}
-		if (R==null) return null;
-
-		if (pad==0) return R;
-/* If pad>0 output is truncated or padded to pad bytes */
-		byte[] W=new byte[pad];
-		if (pad<=sha) 
-		{
-			for (int i=0;i<pad;i++) W[i]=R[i];
-		}
-		else
-		{
-			for (int i=0;i<sha;i++) W[i+pad-sha]=R[i];
-            for (int i=0;i<pad-sha;i++) W[i]=0;
- 
-			//for (int i=0;i<sha;i++) W[i]=R[i];
-			//for (int i=sha;i<pad;i++) W[i]=0;
-		}
-		return W;
+		return HMAC.GPhashit(sha,pad,A,n,B);
 	}
 
 /* Key Derivation Functions */
@@ -132,24 +92,7 @@ public final class ECDH {
 
 	public static byte[] KDF2(int sha,byte[] Z,byte[] P,int olen)
 	{
-/* NOTE: the parameter olen is the length of the output k in bytes */
-		int hlen=sha;
-		byte[] K=new byte[olen];
-		byte[] B;
-		int counter,cthreshold,k=0;
-    
-		for (int i=0;i<K.length;i++) K[i]=0;
-
-		cthreshold=olen/hlen; if (olen%hlen!=0) cthreshold++;
-
-		for (counter=1;counter<=cthreshold;counter++)
-		{
-			B=hashit(sha,Z,counter,P,0);
-			if (k+hlen>olen) for (int i=0;i<olen%hlen;i++) K[k++]=B[i];
-			else for (int i=0;i<hlen;i++) K[k++]=B[i];
-		}
-
-		return K;
+		return HMAC.KDF2(sha,Z,P,olen);
 	}
 
 /* Password based Key Derivation Function */
@@ -157,70 +100,19 @@ public final class ECDH {
 /* Output key of length olen */
 	public static byte[] PBKDF2(int sha,byte[] Pass,byte[] Salt,int rep,int olen)
 	{
-		int i,j,k,len,d,opt;
-		d=olen/sha; if (olen%sha!=0) d++;
-		byte[] F=new byte[sha];
-		byte[] U=new byte[sha];
-		byte[] S=new byte[Salt.length+4];
-
-		byte[] K=new byte[d*sha];
-		opt=0;
-
-		for (i=1;i<=d;i++)
-		{
-			for (j=0;j<Salt.length;j++) S[j]=Salt[j];
-			byte[] N=inttoBytes(i,4);
-			for (j=0;j<4;j++) S[Salt.length+j]=N[j];
-
-			HMAC(sha,S,Pass,F);
+		return HMAC.PBKDF2(sha,Pass,Salt,rep,olen);
+	}
 
-			for (j=0;j<sha;j++) U[j]=F[j];
-			for (j=2;j<=rep;j++)
-			{
-				HMAC(sha,U,Pass,U);
-				for (k=0;k<sha;k++) F[k]^=U[k];
-			}
-			for (j=0;j<sha;j++) K[opt++]=F[j];
-		}
-		byte[] key=new byte[olen];
-		for (i=0;i<olen;i++) key[i]=K[i];
-		return key;
+/* PBKDF2 with the output blocks derived in parallel on ex, or on the common ForkJoinPool if ex is null */
+	public static byte[] PBKDF2(int sha,byte[] Pass,byte[] Salt,int rep,int olen,Executor ex)
+	{
+		return HMAC.PBKDF2(sha,Pass,Salt,rep,olen,ex);
 	}
 
 /* Calculate HMAC of m using key k. HMAC is tag of length olen */
 	public static int HMAC(int sha,byte[] M,byte[] K,byte[] tag)
 	{
-	/* Input is from an octet m        *
-	* olen is requested output length in bytes. k is the key  *
-	* The output is the calculated tag */
-		int b=64;
-		if (sha>32) b=128;
-		byte[] B;
-		byte[] K0=new byte[b];
-		int olen=tag.length;
-
-		//b=K0.length;
-		if (olen<4 /*|| olen>sha*/) return 0;
-
-		for (int i=0;i<b;i++) K0[i]=0;
-
-		if (K.length > b) 
-		{
-			B=hashit(sha,K,0,null,0);
-			for (int i=0;i<sha;i++) K0[i]=B[i];
-		}
-		else
-			for (int i=0;i<K.length;i++ ) K0[i]=K[i];
-		
-		for (int i=0;i<b;i++) K0[i]^=0x36;
-		B=hashit(sha,K0,0,M,0);
-
-		for (int i=0;i<b;i++) K0[i]^=0x6a;
-		B=hashit(sha,K0,0,B,olen);
-
-		for (int i=0;i<olen;i++) tag[i]=B[i];
-
-		return 1;
+		return new HMAC(sha,K).mac(M,tag);
 	}
 
 /* AES encryption/decryption. Encrypt byte array M using key K and returns ciphertext */
@@ -325,12 +217,10 @@ public final class ECDH {
 	public static int KEY_PAIR_GENERATE(RAND RNG,byte[] S,byte[] W)
 	{
 		BIG r,s;
-		ECP G,WP;
+		ECP WP;
 		int res=0;
 	//	byte[] T=new byte[EFS];
 
-		G=ECP.generator();
-
 		r=new BIG(ROM.CURVE_Order);
 
 		if (RNG==null)
@@ -349,56 +239,93 @@ public final class ECDH {
 		//}
 		s.toBytes(S);
 
-		WP=G.mul(s);
+		WP=ECP.mulGenerator(s);
 		WP.toBytes(W,false);  // To use point compression on public keys, change to true 
 
 		return res;
 	}
 
+/* opt-in cache of decoded public keys, keyed by their encoding - null when disabled */
+	private static volatile KEYCACHE<ECP> KEYS=null;
+
+/* cache up to size decoded public keys, for peers whose keys are seen again and again - size 0 disables the cache */
+	public static void KEY_CACHE(int size)
+	{
+		if (size>0) KEYS=new KEYCACHE<ECP>(size);
+		else KEYS=null;
+	}
+
+/* the public key cache, with its hit and miss counters - null when disabled */
+	public static KEYCACHE<ECP> KEY_CACHE()
+	{
+		return KEYS;
+	}
+
+/* decode public key W and check it, through the cache if it is enabled. Returns null if W is invalid */
+/* Only keys that pass are cached, and in affine form, so a hit needs no further checks. The caller gets its own copy */
+	static ECP valid_key(byte[] W)
+	{
+		KEYCACHE<ECP> C=KEYS;
+		ECP P=null;
+		if (C!=null) P=C.get(W);
+		if (P!=null) return new ECP(P);
+		P=ECP.fromBytes(W);
+		if (check_key(new ECP(P))!=0) return null;
+		if (C!=null)
+		{
+			P.affine();
+			C.put(W,new ECP(P));
+		}
+		return P;
+	}
+
+/* decode public key W, through the cache if it is enabled. Keys that fail validation are decoded afresh each time */
+	static ECP decode_key(byte[] W)
+	{
+		if (KEYS==null) return ECP.fromBytes(W);
+		ECP P=valid_key(W);
+		if (P==null) return ECP.fromBytes(W);
+		return P;
+	}
+
 /* validate public key. */
 	public static int PUBLIC_KEY_VALIDATE(byte[] W)
 	{
-		BIG r,q,k;
-		ECP WP=ECP.fromBytes(W);
-		int nb,res=0;
+		if (valid_key(W)==null) return INVALID_PUBLIC_KEY;
+		return 0;
+	}
 
-		r=new BIG(ROM.CURVE_Order);
+/* check a decoded public key, which it may change */
+/* the large cofactor of this curve makes a small subgroup check too weak, so check for membership of the prime order subgroup */
+	static int check_key(ECP WP)
+	{
+		int res=0;
 
 		if (WP.is_infinity()) res=INVALID_PUBLIC_KEY;
 
 		if (res==0)
 		{
-
-			q=new BIG(ROM.Modulus);
-			nb=q.nbits();
-			k=new BIG(1); k.shl((nb+4)/2);
-			k.add(q);
-			k.div(r);
-
-			while (k.parity()==0)
-			{
-				k.shr(1);
-				WP.dbl();
-			}
-
-			if (!k.isunity()) WP=WP.mul(k);
-			if (WP.is_infinity()) res=INVALID_PUBLIC_KEY; 
+			if (!WP.inSubgroup()) res=INVALID_PUBLIC_KEY;
 		}
 		return res;
 	}
 
 /* IEEE-1363 Diffie-Hellman online calculation Z=S.WD */
 	public static int SVDP_DH(byte[] S,byte[] WD,byte[] Z)    
+	{
+		return SVDP_DH(S,decode_key(WD),Z);
+	}
+
+/* Z=S.W for a decoded public key W */
+	static int SVDP_DH(byte[] S,ECP W,byte[] Z)
 	{
 		BIG r,s,wx,wy,z;
 		int valid;
-		ECP W;
 		int res=0;
 		byte[] T=new byte[EFS];
 
 		s=BIG.fromBytes(S);
 
-		W=ECP.fromBytes(WD);
 		if (W.is_infinity()) res=ERROR;
 
 		if (res==0)
@@ -422,10 +349,9 @@ public final class ECDH {
 	{
 		byte[] T=new byte[EFS];
 		BIG r,s,f,c,d,u,vx,w;
-		ECP G,V;
+		ECP V;
 		byte[] B=hashit(sha,F,0,null,BIG.MODBYTES);
 
-		G=ECP.generator();
 		r=new BIG(ROM.CURVE_Order);
 
 		s=BIG.fromBytes(S);
@@ -442,8 +368,7 @@ public final class ECDH {
 			//{
 			//	u.mod2m(2*ROM.AES_S);
 			//}			
-			V.copy(G);
-			V=V.mul(u);   		
+			V=ECP.mulGenerator(u);
 			vx=V.getX();
 			c.copy(vx);
 			c.mod(r);
@@ -493,13 +418,13 @@ public final class ECDH {
 			f.copy(BIG.modmul(f,d,r));
 			h2=BIG.modmul(c,d,r);
 
-			WP=ECP.fromBytes(W);
+			WP=decode_key(W);
 			if (WP.is_infinity()) res=ERROR;
 			else
 			{
 				P=new ECP();
 				P.copy(WP);
-				P=P.mul2(h2,G,f);
+				P=P.mul2Vartime(h2,G,f);
 				if (P.is_infinity()) res=INVALID;
 				else
 				{
@@ -561,7 +486,7 @@ public final class ECDH {
 		byte[] K2=new byte[ECP.AESKEY];
 		byte[] TAG=new byte[T.length];
 
-		if (SVDP_DH(U,V,Z)!=0) return new byte[0];  
+		if (SVDP_DH(U,ECP.fromBytes(V),Z)!=0) return new byte[0];  
 
 		for (i=0;i<2*EFS+1;i++) VZ[i]=V[i];
 		for (i=0;i<EFS;i++) VZ[2*EFS+1+i]=Z[i];
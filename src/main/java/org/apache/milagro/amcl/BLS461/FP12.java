@@ -313,16 +313,24 @@ t1.norm();
 
 /* Special case of multiplication arises from special form of ATE pairing line function */
 	public void smul(FP12 y,int type)
+	{
+		FP4[] t=new FP4[6];
+		for (int i=0;i<6;i++) t[i]=new FP4(0);
+		smul(y,type,t);
+	}
+
+/* smul using scratch t[0..5], so a Miller loop can reuse one set across all its steps */
+	public void smul(FP12 y,int type,FP4[] t)
 	{
 //System.out.println("Into smul");
 
 		if (type==ECP.D_TYPE)
 		{
-			FP4 z0=new FP4(a);
-			FP4 z2=new FP4(b);
-			FP4 z3=new FP4(b);
-			FP4 t0=new FP4(0);
-			FP4 t1=new FP4(y.a);
+			FP4 z0=t[0]; z0.copy(a);
+			FP4 z2=t[1]; z2.copy(b);
+			FP4 z3=t[2]; z3.copy(b);
+			FP4 t0=t[3];
+			FP4 t1=t[4]; t1.copy(y.a);
 			z0.mul(y.a);
 			z2.pmul(y.b.real());
 			b.add(a);
@@ -355,12 +363,12 @@ t1.norm();
 		}
 		if (type==ECP.M_TYPE)
 		{
-			FP4 z0=new FP4(a);
-			FP4 z1=new FP4(0);
-			FP4 z2=new FP4(0);
-			FP4 z3=new FP4(0);
-			FP4 t0=new FP4(a);
-			FP4 t1=new FP4(0);
+			FP4 z0=t[0]; z0.copy(a);
+			FP4 z1=t[1];
+			FP4 z2=t[2];
+			FP4 z3=t[3];
+			FP4 t0=t[4]; t0.copy(a);
+			FP4 t1=t[5];
 		
 			z0.mul(y.a);
 			t0.add(b);
@@ -569,6 +577,151 @@ t1.norm();
 		return ("["+a.toString()+","+b.toString()+","+c.toString()+"]");
 	}
 
+/* Karabina compressed squaring of a cyclotomic element, in place, using scratch t[0..6] */
+/* In the basis 1,z,..,z^5 (z^6=1+sqrt(-1)) only g1=c.a (z^2), g2=b.b (z^4), g3=b.a (z), g5=c.b (z^5) are kept */
+	private void csqr(FP2[] t)
+	{
+		FP2 g1=c.geta();
+		FP2 g2=b.getb();
+		FP2 g3=b.geta();
+		FP2 g5=c.getb();
+
+		t[0].copy(g1); t[0].sqr();               // g1^2
+		t[1].copy(g5); t[1].sqr();               // g5^2
+		t[5].copy(g1); t[5].add(g5); t[5].norm();
+		t[2].copy(t[5]); t[2].sqr();             // (g1+g5)^2
+		t[3].copy(t[0]); t[3].add(t[1]);
+		t[5].copy(t[2]); t[5].sub(t[3]); t[5].norm();   // 2.g1.g5
+		t[6].copy(g3); t[6].add(g2); t[6].norm();
+		t[3].copy(t[6]); t[3].sqr();             // (g3+g2)^2
+		t[2].copy(g3); t[2].sqr();               // g3^2
+		t[6].copy(t[5]); t[6].mul_ip(); t[6].norm();    // 2.nr.g1.g5
+		t[5].copy(t[6]); t[5].add(g3); t[5].norm(); t[5].add(t[5]);
+		g3.copy(t[5]); g3.add(t[6]); g3.norm();  // g3=6.nr.g1.g5+2.g3
+
+		t[4].copy(t[1]); t[4].mul_ip();          // nr.g5^2
+		t[5].copy(t[0]); t[5].add(t[4]); t[5].norm();   // g1^2+nr.g5^2
+		t[6].copy(t[5]); t[6].sub(g2); t[6].norm();
+		t[1].copy(g2); t[1].sqr();               // g2^2
+		t[6].add(t[6]);
+		g2.copy(t[6]); g2.add(t[5]); g2.norm();  // g2=3(g1^2+nr.g5^2)-2.g2
+
+		t[4].copy(t[1]); t[4].mul_ip();          // nr.g2^2
+		t[5].copy(t[2]); t[5].add(t[4]); t[5].norm();   // g3^2+nr.g2^2
+		t[6].copy(t[5]); t[6].sub(g1); t[6].norm();
+		t[6].add(t[6]);
+		g1.copy(t[6]); g1.add(t[5]); g1.norm();  // g1=3(g3^2+nr.g2^2)-2.g1
+
+		t[0].copy(t[2]); t[0].add(t[1]);
+		t[5].copy(t[3]); t[5].sub(t[0]); t[5].norm();   // 2.g2.g3
+		t[6].copy(t[5]); t[6].add(g5); t[6].norm();
+		t[6].add(t[6]);
+		g5.copy(t[5]); g5.add(t[6]); g5.norm();  // g5=6.g2.g3+2.g5
+
+		g1.reduce(); g2.reduce(); g3.reduce(); g5.reduce();
+	}
+
+/* recover a.b (z^3) and a.a (z^0) of the compressed elements T[lo..hi-1], sharing one FP2 inversion */
+	private static void decompress(FP12[] T,int lo,int hi)
+	{
+		int j,n=hi-lo;
+		if (n<=0) return;
+		FP2[] num=new FP2[n];
+		FP2[] den=new FP2[n];
+		FP2[] acc=new FP2[n];
+		FP2 t=new FP2(1);
+		FP2 u;
+
+		for (j=0;j<n;j++)
+		{
+			FP12 w=T[lo+j];
+			FP2 g1=w.c.geta(),g2=w.b.getb(),g3=w.b.geta(),g5=w.c.getb();
+			if (g3.iszilch())
+			{ // g4=2.g1.g5/g2
+				num[j]=new FP2(g1); num[j].mul(g5); num[j].add(num[j]);
+				den[j]=new FP2(g2);
+			}
+			else
+			{ // g4=(nr.g5^2+3.g1^2-2.g2)/4.g3
+				u=new FP2(g1); u.sqr();
+				num[j]=new FP2(u); num[j].sub(g2); num[j].norm(); num[j].add(num[j]); num[j].add(u);
+				u.copy(g5); u.sqr(); u.mul_ip();
+				num[j].add(u);
+				den[j]=new FP2(g3); den[j].add(den[j]); den[j].add(den[j]);
+			}
+			num[j].norm();
+			den[j].norm();
+			if (den[j].iszilch())
+			{ // only for the identity, where g4=0
+				num[j].zero();
+				den[j].one();
+			}
+			acc[j]=new FP2(t);
+			t.mul(den[j]);
+		}
+		t.inverse();
+		for (j=n-1;j>=0;j--)
+		{
+			u=new FP2(t); u.mul(acc[j]);         // 1/den[j]
+			t.mul(den[j]);
+			u.mul(num[j]);
+
+			FP12 w=T[lo+j];
+			FP2 g1=w.c.geta(),g2=w.b.getb(),g3=w.b.geta(),g5=w.c.getb();
+			w.a.getb().copy(u);                  // g4
+			FP2 t1=new FP2(g2); t1.mul(g1);      // g1.g2
+			FP2 t2=new FP2(u); t2.sqr();         // g4^2
+			t2.sub(t1); t2.norm(); t2.add(t2); t2.sub(t1);
+			t1.copy(g3); t1.mul(g5);             // g3.g5
+			t2.add(t1); t2.norm();
+			t2.mul_ip();
+			t2.add(new FP2(1)); t2.norm();       // g0=nr(2.g4^2+g3.g5-3.g1.g2)+1
+			w.a.geta().copy(t2);
+		}
+	}
+
+/* this^|x| for the curve parameter x, where this is in the cyclotomic subgroup */
+/* Follows the signed-digit form of x used by pow(), but squares in compressed form, decompressing only the terms that are multiplied in */
+	public FP12 cyclotomicPowX()
+	{
+		BIG e=new BIG(ROM.CURVE_Bnx);
+		BIG e3=new BIG(e);
+		e3.pmul(3);
+		e3.norm();
+		int i,m,bt,nb=e3.nbits();
+
+		FP12[] T=new FP12[nb];
+		int[] sg=new int[nb];
+		FP2[] t=new FP2[7];
+		for (i=0;i<7;i++) t[i]=new FP2(0);
+		norm();
+		FP12 g=new FP12(this);
+
+		m=0;
+		for (i=1;i<nb;i++)
+		{
+			bt=e3.bit(i)-e.bit(i);
+			if (bt!=0)
+			{
+				T[m]=new FP12(g);
+				sg[m++]=bt;
+			}
+			if (i<nb-1) g.csqr(t);
+		}
+
+		i=(e3.bit(1)!=e.bit(1))?1:0;  // a term taken before any squaring is already complete
+		decompress(T,i,m);
+
+		FP12 w=T[m-1];
+		for (i=m-2;i>=0;i--)
+		{
+			if (sg[i]<0) T[i].conj();
+			w.mul(T[i]);
+		}
+		w.reduce();
+		return w;
+	}
+
 /* this=this^e */ 
 /* Note this is simple square and multiply, so not side-channel safe */
 	public FP12 pow(BIG e)
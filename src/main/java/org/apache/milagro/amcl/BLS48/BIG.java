@@ -21,6 +21,8 @@ under the License.
 
 package org.apache.milagro.amcl.BLS48;
 import org.apache.milagro.amcl.RAND;
+import org.apache.milagro.amcl.SAFEGCD;
+import org.apache.milagro.amcl.LIMB;
 
 public class BIG {
 
@@ -177,25 +179,13 @@ public class BIG {
 
 	public static long[] muladd(long a,long b,long c,long r)
 	{
-		long x0,x1,y0,y1;
-		long[] tb=new long[2];
-		x0=a&HMASK;
-		x1=(a>>HBITS);
-		y0=b&HMASK;
-		y1=(b>>HBITS);
-		long bot=x0*y0;
-		long top=x1*y1;
-		long mid=x0*y1+x1*y0;
-		x0=mid&HMASK;
-		x1=(mid>>HBITS);
-		bot+=x0<<HBITS; bot+=c; bot+=r;
-		top+=x1;
-		long carry=bot>>BASEBITS;
-		bot&=BMASK;
-		top+=carry;
-		tb[0]=top;
-		tb[1]=bot;
-		return tb;
+		return LIMB.muladd(a,b,c,r,BASEBITS);
+	}
+
+/* set r[o]+=a*b+c, and return high part */
+	public static long muladd(long a,long b,long c,long[] r,int o)
+	{
+		return LIMB.muladd(a,b,c,r,o,BASEBITS);
 	}
 
 /* this*=x, where x is >NEXCESS */
@@ -274,17 +264,12 @@ public class BIG {
 	{
 		DBIG c=new DBIG(0);
 		long carry;
-		long[] cr=new long[2];
 
 		for (int i=0;i<NLEN;i++)
 		{
 			carry=0;
 			for (int j=0;j<NLEN;j++)
-			{
-				cr=muladd(a.w[i],b.w[j],carry,c.w[i+j]);
-				carry=cr[0];
-				c.w[i+j]=cr[1];
-			}
+				carry=muladd(a.w[i],b.w[j],carry,c.w,i+j);
 			c.w[NLEN+i]=carry;
 		}
 
@@ -297,26 +282,17 @@ public class BIG {
 	{
 		DBIG c=new DBIG(0);
 		long carry;
-		long[] cr=new long[2];
 
 		for (int i=0;i<NLEN;i++)
 		{
 			carry=0;
 			for (int j=i+1;j<NLEN;j++)
-			{
-				cr=muladd(2*a.w[i],a.w[j],carry,c.w[i+j]);
-				carry=cr[0];
-				c.w[i+j]=cr[1];
-			}
+				carry=muladd(2*a.w[i],a.w[j],carry,c.w,i+j);
 			c.w[NLEN+i]=carry;
 		}
 
 		for (int i=0;i<NLEN;i++)
-		{
-			cr=muladd(a.w[i],a.w[i],0,c.w[2*i]);
-			c.w[2*i+1]+=cr[0];
-			c.w[2*i]=cr[1];
-		}
+			c.w[2*i+1]+=muladd(a.w[i],a.w[i],0,c.w,2*i);
 		c.norm(); 
 		return c;
 	}
@@ -325,7 +301,6 @@ public class BIG {
 	{
 		BIG b;
 		long m,carry;
-		long[] cr=new long[2];
 		for (int i=0;i<NLEN;i++) 
 		{
 			if (MC==-1) m=(-d.w[i])&BMASK;
@@ -337,11 +312,7 @@ public class BIG {
 
 			carry=0;
 			for (int j=0;j<NLEN;j++)
-			{
-				cr=muladd(m,md.w[j],carry,d.w[i+j]);
-				carry=cr[0];
-				d.w[i+j]=cr[1];
-			}
+				carry=muladd(m,md.w[j],carry,d.w,i+j);
 			d.w[NLEN+i]+=carry;
 		}
 
@@ -851,67 +822,12 @@ public class BIG {
 		else return -1;
 	}
 
-/* this=1/this mod p. Binary method */
+/* this=1/this mod p, in constant time. p must be odd */
 	public void invmodp(BIG p)
 	{
-		mod(p);
-		BIG u=new BIG(this);
-		BIG v=new BIG(p);
-		BIG x1=new BIG(1);
-		BIG x2=new BIG(0);
-		BIG t=new BIG(0);
-		BIG one=new BIG(1);
-
-		while (comp(u,one)!=0 && comp(v,one)!=0)
-		{
-			while (u.parity()==0)
-			{
-				u.fshr(1);
-				if (x1.parity()!=0)
-				{
-					x1.add(p);
-					x1.norm();
-				}
-				x1.fshr(1);
-			}
-			while (v.parity()==0)
-			{
-				v.fshr(1);
-				if (x2.parity()!=0)
-				{
-					x2.add(p);
-					x2.norm();
-				}
-				x2.fshr(1);
-			}
-			if (comp(u,v)>=0)
-			{
-				u.sub(v);
-				u.norm();
-				if (comp(x1,x2)>=0) x1.sub(x2);
-				else
-				{
-					t.copy(p);
-					t.sub(x2);
-					x1.add(t);
-				}
-				x1.norm();
-			}
-			else
-			{
-				v.sub(u);
-				v.norm();
-				if (comp(x2,x1)>=0) x2.sub(x1);
-				else
-				{
-					t.copy(p);
-					t.sub(x1);
-					x2.add(t);
-				}
-				x2.norm();
-			}
-		}
-		if (comp(u,one)==0) copy(x1);
-		else copy(x2);
+		BIG m=new BIG(p);
+		m.norm();
+		mod(m);
+		SAFEGCD.inverse(w,m.w,BASEBITS);
 	}
 }
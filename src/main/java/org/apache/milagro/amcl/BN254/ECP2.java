@@ -21,7 +21,14 @@ under the License.
 
 package org.apache.milagro.amcl.BN254;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 public final class ECP2 {
+	public static final int MULN_PARALLEL_THRESHOLD=256;  /* multi-scalar multiplications with no more points than this run serially */
+
 	private FP2 x;
 	private FP2 y;
 	private FP2 z;
@@ -147,6 +154,41 @@ public final class ECP2 {
 		y.mul(z); y.reduce();
 		z.copy(one);
 	}
+
+/* convert all of P[] to affine coordinates, with one inversion shared by the whole array */
+/* Montgomery's simultaneous inversion - 3(n-1) extra multiplications. The entries must be distinct objects */
+	public static void affineAll(ECP2[] P)
+	{
+		int i,n=P.length;
+		if (n==0) return;
+		FP2 one=new FP2(1);
+		FP2[] acc=new FP2[n];
+		boolean[] inf=new boolean[n];
+		FP2 t=new FP2(one);
+		FP2 zi=new FP2(0);
+
+		for (i=0;i<n;i++)
+		{
+			inf[i]=P[i].is_infinity();
+			if (!inf[i]) t.mul(P[i].z);
+			acc[i]=new FP2(t);
+		}
+		t.inverse();
+
+/* t=1/(z0...zi) - peel off one z at a time from the top */
+		for (i=n-1;i>=0;i--)
+		{
+			if (inf[i]) continue;
+			if (i>0) zi.copy(acc[i-1]);
+			else zi.copy(one);
+			zi.mul(t);
+			t.mul(P[i].z);
+			P[i].x.mul(zi); P[i].x.reduce();
+			P[i].y.mul(zi); P[i].y.reduce();
+			P[i].z.copy(one);
+		}
+	}
+
 /* extract affine x as FP2 */
 	public FP2 getX()
 	{
@@ -196,13 +238,48 @@ public final class ECP2 {
 		for (int i=0;i<BIG.MODBYTES;i++)
 			b[i+3*BIG.MODBYTES]=t[i];
 	}
-/* convert from byte array to point */
+
+/* convert to byte array - compressed, 0x02 or 0x03 (the sign of y) followed by x, in 2*MODBYTES+1 bytes */
+/* or uncompressed as toBytes(b), x followed by y in 4*MODBYTES bytes */
+	public void toBytes(byte[] b,boolean compress)
+	{
+		if (!compress)
+		{
+			toBytes(b);
+			return;
+		}
+		byte[] t=new byte[BIG.MODBYTES];
+		ECP2 W=new ECP2(this);
+		W.affine();
+		W.x.getA().toBytes(t);
+		for (int i=0;i<BIG.MODBYTES;i++)
+			b[i+1]=t[i];
+		W.x.getB().toBytes(t);
+		for (int i=0;i<BIG.MODBYTES;i++)
+			b[i+BIG.MODBYTES+1]=t[i];
+		b[0]=0x02;
+		if (W.y.sign()==1) b[0]=0x03;
+	}
+/* convert from byte array to point - compressed if b is 2*MODBYTES+1 bytes starting 0x02 or 0x03 */
 	public static ECP2 fromBytes(byte[] b)
 	{
 		byte[] t=new byte[BIG.MODBYTES];
 		BIG ra;
 		BIG rb;
 
+		if (b.length==2*BIG.MODBYTES+1 && (b[0]==0x02 || b[0]==0x03))
+		{ /* compressed - recover y with FP2.sqrt, then fix its sign */
+			BIG p=new BIG(ROM.Modulus);
+			for (int i=0;i<BIG.MODBYTES;i++) t[i]=b[i+1];
+			ra=BIG.fromBytes(t);
+			for (int i=0;i<BIG.MODBYTES;i++) t[i]=b[i+BIG.MODBYTES+1];
+			rb=BIG.fromBytes(t);
+			if (BIG.comp(ra,p)>=0 || BIG.comp(rb,p)>=0) return new ECP2();
+			ECP2 P=new ECP2(new FP2(ra,rb));
+			if (!P.is_infinity() && P.y.sign()!=(b[0]&1)) P.neg();
+			return P;
+		}
+
 		for (int i=0;i<BIG.MODBYTES;i++) t[i]=b[i];
 		ra=BIG.fromBytes(t);
 		for (int i=0;i<BIG.MODBYTES;i++) t[i]=b[i+BIG.MODBYTES];
@@ -217,6 +294,15 @@ public final class ECP2 {
 
 		return new ECP2(rx,ry);
 	}
+
+/* convert from byte array to point as fromBytes, but return the point at infinity unless it is in the prime order subgroup */
+/* use this for points received from outside, such as public keys and signatures */
+	public static ECP2 fromBytesChecked(byte[] b)
+	{
+		ECP2 P=fromBytes(b);
+		if (!P.inSubgroup()) P.inf();
+		return P;
+	}
 /* convert this to hex string */
 	public String toString() {
 		ECP2 W=new ECP2(this);	
@@ -441,6 +527,14 @@ public final class ECP2 {
 
 /* P*=e */
 	public ECP2 mul(BIG e)
+	{
+		ECP2 P=mulProjective(e);
+		P.affine();
+		return P;
+	}
+
+/* P*=e, leaving the result in projective coordinates */
+	public ECP2 mulProjective(BIG e)
 	{
 /* fixed size windows */
 		int i,b,nb,m,s,ns;
@@ -498,7 +592,6 @@ public final class ECP2 {
 			P.add(Q);
 		}
 		P.sub(C);
-		P.affine();
 		return P;
 	}
 
@@ -671,6 +764,27 @@ public final class ECP2 {
 	}
 */
 
+/* test for membership of the prime order subgroup G2, at a fraction of the cost of a multiplication by the group order */
+/* Q is in G2 iff psi(Q)=6x^2.Q, where psi is the Frobenius endomorphism acting as multiplication by p - Scott, "A note on group membership tests for G1, G2 and GT on BLS pairing-friendly curves" */
+	public boolean inSubgroup()
+	{
+		if (is_infinity()) return true;
+		FP2 X=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
+		if (ECP.SEXTIC_TWIST==ECP.M_TYPE)
+		{
+			X.inverse();
+			X.norm();
+		}
+		BIG x=new BIG(ROM.CURVE_Bnx);
+		ECP2 T=mulProjective(x);
+		T=T.mulProjective(x);
+		ECP2 K=new ECP2(T);
+		K.dbl(); K.add(T); K.dbl();
+		ECP2 W=new ECP2(this);
+		W.frob(X);
+		return W.equals(K);
+	}
+
 /* needed for SOK */
 	public static ECP2 mapit(byte[] h)
 	{
@@ -758,6 +872,188 @@ public final class ECP2 {
 		return Q;
 	}
 
+/* Multi-scalar multiplication - return k[0].P[0]+k[1].P[1]+...+k[n-1].P[n-1] */
+/* Pippenger's bucket method. NOT constant time - use only with public scalars */
+/* Returns null if P and k differ in length */
+	public static ECP2 muln(ECP2[] P,BIG[] k)
+	{
+		int i,j,w,d,n=P.length;
+		if (k.length!=n) return null;
+		ECP2 R=new ECP2();
+		if (n==0) return R;
+
+/* window size grows with the number of points - each window costs n additions and 2^(c+1) to sum the buckets */
+		int c=2;
+		while (c<16 && (1<<(c+c/3+2))<=n) c++;
+		int nb=0;
+		for (i=0;i<n;i++)
+		{
+			j=k[i].nbits();
+			if (j>nb) nb=j;
+		}
+		int nw=(nb+c-1)/c;
+
+/* split scalars into c-bit digits */
+		int[][] dig=new int[n][nw];
+		BIG t=new BIG(0);
+		for (i=0;i<n;i++)
+		{
+			t.copy(k[i]); t.norm();
+			for (w=0;w<nw;w++)
+			{
+				dig[i][w]=t.lastbits(c);
+				t.fshr(c);
+			}
+		}
+
+		int m=(1<<c)-1;
+		ECP2[] B=new ECP2[m];
+		boolean[] used=new boolean[m];
+		for (j=0;j<m;j++) B[j]=new ECP2();
+		ECP2 S=new ECP2();
+		ECP2 W=new ECP2();
+
+		for (w=nw-1;w>=0;w--)
+		{
+			for (j=0;j<c;j++) R.dbl();
+			for (j=0;j<m;j++) used[j]=false;
+
+/* drop each point into the bucket of its digit */
+			for (i=0;i<n;i++)
+			{
+				d=dig[i][w];
+				if (d==0) continue;
+				if (used[d-1]) B[d-1].add(P[i]);
+				else
+				{
+					B[d-1].copy(P[i]);
+					used[d-1]=true;
+				}
+			}
+
+/* sum of j.B[j-1] by running sums, from the top bucket down */
+			S.inf(); W.inf();
+			boolean start=false;
+			for (j=m-1;j>=0;j--)
+			{
+				if (used[j])
+				{
+					S.add(B[j]);
+					start=true;
+				}
+				if (start) W.add(S);
+			}
+			R.add(W);
+		}
+		R.affine();
+		return R;
+	}
+
+/* muln with the points partitioned across the threads of ex, or of the common ForkJoinPool if ex is null */
+	public static ECP2 muln(ECP2[] P,BIG[] k,Executor ex)
+	{
+		int n=P.length;
+		if (k.length!=n) return null;
+		if (ex==null) ex=ForkJoinPool.commonPool();
+		int t=1;
+		if (n>MULN_PARALLEL_THRESHOLD)
+		{
+			if (ex instanceof ForkJoinPool)
+				t=((ForkJoinPool)ex).getParallelism();
+			else
+				t=Runtime.getRuntime().availableProcessors();
+			t=Math.max(1,Math.min(t,2*n/MULN_PARALLEL_THRESHOLD));
+		}
+		if (t<2) return muln(P,k);
+
+		final ECP2[] R=new ECP2[t];
+		CompletableFuture<?>[] part=new CompletableFuture<?>[t];
+		for (int i=0;i<t;i++)
+		{
+			final int j=i;
+			final ECP2[] Pi=Arrays.copyOfRange(P,i*n/t,(i+1)*n/t);
+			final BIG[] ki=Arrays.copyOfRange(k,i*n/t,(i+1)*n/t);
+			part[i]=CompletableFuture.runAsync(new Runnable() {
+				public void run() { R[j]=muln(Pi,ki); }
+			},ex);
+		}
+		CompletableFuture.allOf(part).join();
+		for (int i=1;i<t;i++)
+			R[0].add(R[i]);
+		R[0].affine();
+		return R[0];
+	}
+
+/* Fixed base comb for the generator - W[i][j]=(2j+1).16^i.G for each signed 4-bit window i */
+/* Built on first use. e.G then costs one constant time select and one addition per window, and no doublings */
+	private static final class GTable {
+		static final ECP2[][] W=gtable();
+	}
+
+	private static ECP2[][] gtable()
+	{
+		int i,j;
+		BIG r=new BIG(ROM.CURVE_Order);
+		int nb=1+(r.nbits()+3)/4;
+		ECP2[][] W=new ECP2[nb+1][8];
+		ECP2 B=generator();
+		ECP2 D=new ECP2();
+
+		for (i=0;i<=nb;i++)
+		{
+			D.copy(B); D.dbl();
+			W[i][0]=new ECP2(B);
+			for (j=1;j<8;j++)
+			{
+				W[i][j]=new ECP2(W[i][j-1]);
+				W[i][j].add(D);
+			}
+			B.dbl(); B.dbl(); B.dbl(); B.dbl();
+		}
+		return W;
+	}
+
+/* return e.G for the fixed generator G, in constant time */
+	public static ECP2 mulGenerator(BIG e)
+	{
+		int i,s,ns;
+		ECP2[][] W=GTable.W;
+		int nb=W.length-1;
+		BIG t=new BIG(e);
+		BIG mt=new BIG(0);
+		ECP2 P,C;
+		ECP2 Q=new ECP2();
+		byte[] w=new byte[nb+1];
+
+		t.mod(new BIG(ROM.CURVE_Order));
+
+/* make exponent odd - add 2G if even, G if odd */
+		s=t.parity();
+		t.inc(1); t.norm(); ns=t.parity(); mt.copy(t); mt.inc(1); mt.norm();
+		t.cmove(mt,s);
+		C=new ECP2(W[0][0]); C.dbl();
+		C.cmove(W[0][0],ns);
+
+/* convert exponent to signed 4-bit window - the top digit is always 1 as t<2r */
+		for (i=0;i<nb;i++)
+		{
+			w[i]=(byte)(t.lastbits(5)-16);
+			t.dec(w[i]); t.norm();
+			t.fshr(4);
+		}
+		w[nb]=(byte)t.lastbits(5);
+
+		P=new ECP2(W[nb][(w[nb]-1)/2]);
+		for (i=0;i<nb;i++)
+		{
+			Q.select(W[i],w[i]);
+			P.add(Q);
+		}
+		P.sub(C);
+		P.affine();
+		return P;
+	}
+
 	public static ECP2 generator()
 	{
 		return new ECP2(new FP2(new BIG(ROM.CURVE_Pxa),new BIG(ROM.CURVE_Pxb)),new FP2(new BIG(ROM.CURVE_Pya),new BIG(ROM.CURVE_Pyb)));
@@ -379,19 +379,14 @@ public final class FP {
 		}
 	}
 
-/* this=1/this mod Modulus */
+/* this=1/this mod Modulus, in constant time */
 	public void inverse()
 	{
-/*
+		reduce();
 		BIG r=redc();
-		r.invmodp(p);
+		r.invmodp(new BIG(ROM.Modulus));
 		x.copy(r);
 		nres();
-*/
-		BIG m2=new BIG(ROM.Modulus);
-		m2.dec(2); m2.norm();
-		copy(pow(m2));
-
 	}
 
 /* return TRUE if this==a */
@@ -468,16 +463,47 @@ public final class FP {
 		return r;
 	} */
 
+/* this=this^(2^n), squaring in place */
+	private void nsqr(int n)
+	{
+		for (int i=0;i<n;i++) sqr();
+	}
+
+/* sliding window recoding of (p-3)/4 - table entries a^(2i+1) and the squarings before each multiplication */
+	private static final int[] FPOW_W={4,4,6,4,0,4,6,6,6,4,5,0,1,4,0,4,6,3,0};
+	private static final int[] FPOW_S={0,5,7,4,3,9,33,4,7,7,4,36,6,8,5,47,4,5,52};
+	private static final int FPOW_TAIL=2;
+
+/* return this^((p-3)/4) by a fixed sliding window chain over the 7 odd powers of this */
+	private FP fpow()
+	{
+		FP[] t=new FP[7];
+		FP a2=new FP(this); a2.sqr();
+		t[0]=new FP(this);
+		for (int i=1;i<7;i++)
+		{
+			t[i]=new FP(t[i-1]);
+			t[i].mul(a2);
+		}
+		FP r=new FP(t[FPOW_W[0]]);
+		for (int i=1;i<FPOW_W.length;i++)
+		{
+			r.nsqr(FPOW_S[i]);
+			r.mul(t[FPOW_W[i]]);
+		}
+		r.nsqr(FPOW_TAIL);
+		r.reduce();
+		return r;
+	}
+
 /* return sqrt(this) mod Modulus */
 	public FP sqrt()
 	{
 		reduce();
-		BIG b=new BIG(ROM.Modulus);
 		if (MOD8==5)
 		{
-			b.dec(5); b.norm(); b.shr(3);
 			FP i=new FP(this); i.x.shl(1);
-			FP v=i.pow(b);
+			FP v=i.fpow();
 			i.mul(v); i.mul(v);
 			i.x.dec(1);
 			FP r=new FP(this);
@@ -487,8 +513,10 @@ public final class FP {
 		}
 		else
 		{
-			b.inc(1); b.norm(); b.shr(2);
-			return pow(b);
+			FP r=fpow();
+			r.mul(this);
+			r.reduce();
+			return r;
 		}
 	}
 
@@ -498,6 +526,34 @@ public final class FP {
 		BIG w=redc();
 		return w.jacobi(new BIG(ROM.Modulus));
 	}
+
+/* return 1 if this is a non-zero quadratic residue, else 0 - Euler's criterion, without computing the root */
+	public int qr()
+	{
+		FP r=new FP(this);
+		r.reduce();
+		FP t=r.fpow();
+		if (MOD8==5)
+		{ /* this^((p-1)/2)=t^4.this^2 */
+			t.sqr(); t.sqr();
+			t.mul(r); t.mul(r);
+		}
+		else
+		{ /* this^((p-1)/2)=t^2.this */
+			t.sqr();
+			t.mul(r);
+		}
+		if (t.equals(new FP(1))) return 1;
+		return 0;
+	}
+
+/* return sgn0(this) as defined in RFC 9380 - the parity of the fully reduced value */
+	public int sign()
+	{
+		FP t=new FP(this);
+		t.reduce();
+		return t.redc().parity();
+	}
 /*
 	public static void main(String[] args) {
 		BIG m=new BIG(ROM.Modulus);
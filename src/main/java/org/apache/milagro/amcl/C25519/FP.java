@@ -379,19 +379,14 @@ public final class FP {
 		}
 	}
 
-/* this=1/this mod Modulus */
+/* this=1/this mod Modulus, in constant time */
 	public void inverse()
 	{
-/*
+		reduce();
 		BIG r=redc();
-		r.invmodp(p);
+		r.invmodp(new BIG(ROM.Modulus));
 		x.copy(r);
 		nres();
-*/
-		BIG m2=new BIG(ROM.Modulus);
-		m2.dec(2); m2.norm();
-		copy(pow(m2));
-
 	}
 
 /* return TRUE if this==a */
@@ -468,16 +463,38 @@ public final class FP {
 		return r;
 	} */
 
+/* this=this^(2^n), squaring in place */
+	private void nsqr(int n)
+	{
+		for (int i=0;i<n;i++) sqr();
+	}
+
+/* return this^((p-5)/8) using a fixed addition chain - 251 squarings and 11 multiplications */
+	private FP fpow()
+	{
+		FP x2=new FP(this); x2.sqr(); x2.mul(this);
+		FP x4=new FP(x2); x4.nsqr(2); x4.mul(x2);
+		FP x5=new FP(x4); x5.sqr(); x5.mul(this);
+		FP x10=new FP(x5); x10.nsqr(5); x10.mul(x5);
+		FP x20=new FP(x10); x20.nsqr(10); x20.mul(x10);
+		FP x40=new FP(x20); x40.nsqr(20); x40.mul(x20);
+		FP x50=new FP(x40); x50.nsqr(10); x50.mul(x10);
+		FP x100=new FP(x50); x100.nsqr(50); x100.mul(x50);
+		FP x200=new FP(x100); x200.nsqr(100); x200.mul(x100);
+		FP x250=new FP(x200); x250.nsqr(50); x250.mul(x50);
+		FP r=new FP(x250); r.nsqr(2); r.mul(this);
+		r.reduce();
+		return r;
+	}
+
 /* return sqrt(this) mod Modulus */
 	public FP sqrt()
 	{
 		reduce();
-		BIG b=new BIG(ROM.Modulus);
 		if (MOD8==5)
 		{
-			b.dec(5); b.norm(); b.shr(3);
 			FP i=new FP(this); i.x.shl(1);
-			FP v=i.pow(b);
+			FP v=i.fpow();
 			i.mul(v); i.mul(v);
 			i.x.dec(1);
 			FP r=new FP(this);
@@ -487,8 +504,10 @@ public final class FP {
 		}
 		else
 		{
-			b.inc(1); b.norm(); b.shr(2);
-			return pow(b);
+			FP r=fpow();
+			r.mul(this);
+			r.reduce();
+			return r;
 		}
 	}
 
@@ -498,6 +517,26 @@ public final class FP {
 		BIG w=redc();
 		return w.jacobi(new BIG(ROM.Modulus));
 	}
+
+/* return 1 if this is a non-zero quadratic residue, else 0 - Euler's criterion, without computing the root */
+	public int qr()
+	{
+		FP r=new FP(this);
+		r.reduce();
+		FP t=r.fpow();
+		if (MOD8==5)
+		{ /* this^((p-1)/2)=t^4.this^2 */
+			t.sqr(); t.sqr();
+			t.mul(r); t.mul(r);
+		}
+		else
+		{ /* this^((p-1)/2)=t^2.this */
+			t.sqr();
+			t.mul(r);
+		}
+		if (t.equals(new FP(1))) return 1;
+		return 0;
+	}
 /*
 	public static void main(String[] args) {
 		BIG m=new BIG(ROM.Modulus);
@@ -379,19 +379,14 @@ public final class FP {
 		}
 	}
 
-/* this=1/this mod Modulus */
+/* this=1/this mod Modulus, in constant time */
 	public void inverse()
 	{
-/*
+		reduce();
 		BIG r=redc();
-		r.invmodp(p);
+		r.invmodp(new BIG(ROM.Modulus));
 		x.copy(r);
 		nres();
-*/
-		BIG m2=new BIG(ROM.Modulus);
-		m2.dec(2); m2.norm();
-		copy(pow(m2));
-
 	}
 
 /* return TRUE if this==a */
@@ -468,16 +463,29 @@ public final class FP {
 		return r;
 	} */
 
+/* return this^((p-3)/4), or this^((p-5)/8) if p=5 mod 8 - the exponentiation shared by sqrt and qr */
+	private FP fpow()
+	{
+		BIG b=new BIG(ROM.Modulus);
+		if (MOD8==5)
+		{
+			b.dec(5); b.norm(); b.shr(3);
+		}
+		else
+		{
+			b.dec(3); b.norm(); b.shr(2);
+		}
+		return pow(b);
+	}
+
 /* return sqrt(this) mod Modulus */
 	public FP sqrt()
 	{
 		reduce();
-		BIG b=new BIG(ROM.Modulus);
 		if (MOD8==5)
 		{
-			b.dec(5); b.norm(); b.shr(3);
 			FP i=new FP(this); i.x.shl(1);
-			FP v=i.pow(b);
+			FP v=i.fpow();
 			i.mul(v); i.mul(v);
 			i.x.dec(1);
 			FP r=new FP(this);
@@ -487,8 +495,10 @@ public final class FP {
 		}
 		else
 		{
-			b.inc(1); b.norm(); b.shr(2);
-			return pow(b);
+			FP r=fpow();
+			r.mul(this);
+			r.reduce();
+			return r;
 		}
 	}
 
@@ -498,6 +508,34 @@ public final class FP {
 		BIG w=redc();
 		return w.jacobi(new BIG(ROM.Modulus));
 	}
+
+/* return 1 if this is a non-zero quadratic residue, else 0 - Euler's criterion, without computing the root */
+	public int qr()
+	{
+		FP r=new FP(this);
+		r.reduce();
+		FP t=r.fpow();
+		if (MOD8==5)
+		{ /* this^((p-1)/2)=t^4.this^2 */
+			t.sqr(); t.sqr();
+			t.mul(r); t.mul(r);
+		}
+		else
+		{ /* this^((p-1)/2)=t^2.this */
+			t.sqr();
+			t.mul(r);
+		}
+		if (t.equals(new FP(1))) return 1;
+		return 0;
+	}
+
+/* return sgn0(this) as defined in RFC 9380 - the parity of the fully reduced value */
+	public int sign()
+	{
+		FP t=new FP(this);
+		t.reduce();
+		return t.redc().parity();
+	}
 /*
 	public static void main(String[] args) {
 		BIG m=new BIG(ROM.Modulus);
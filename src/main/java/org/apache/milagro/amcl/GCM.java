@@ -48,8 +48,10 @@ public class GCM {
 	public static final int GCM_ENCRYPTING=0;
 	public static final int GCM_DECRYPTING=1;
 
-	private int[][] table=new int[128][4]; /* 2k bytes */
-	private byte[] stateX=new byte[16];
+	private long[][] HH=new long[4][16];	/* 4-bit Shoup tables of H, H^2, H^3 and H^4 - high and low halves, 1k bytes */
+	private long[][] HL=new long[4][16];
+	private long Xh,Xl;	/* GHASH state */
+	private long Zh,Zl;	/* product accumulator */
 	private byte[]Y_0=new byte[16];
 	private int counter;
 	private int[] lenA=new int[2];
@@ -57,6 +59,11 @@ public class GCM {
 	private int status;
 	private AES a=new AES();
 
+/* reduction of the 4 bits shifted out of the bottom of a product */
+	private static final long[] R4={
+		0x0000L,0x1C20L,0x3840L,0x2460L,0x7080L,0x6CA0L,0x48C0L,0x54E0L,
+		0xE100L,0xFD20L,0xD940L,0xC560L,0x9180L,0x8DA0L,0xA9C0L,0xB5E0L};
+
 	private static int pack(byte[] b)
 	{ /* pack bytes into a 32-bit Word */
 		return ((((int)b[0])&0xff)<<24)|(((int)b[1]&0xff)<<16)|(((int)b[2]&0xff)<<8)|((int)b[3]&0xff);
@@ -72,68 +79,146 @@ public class GCM {
 		return b;
 	}
 
-	private void precompute(byte[] H)
+/* big-endian 64-bit word from 8 bytes of b, starting at off */
+	private static long load(byte[] b,int off)
+	{
+		long r=0;
+		for (int i=0;i<8;i++) r=(r<<8)|(b[off+i]&0xff);
+		return r;
+	}
+
+	private static void store(long w,byte[] b,int off)
+	{
+		for (int i=7;i>=0;i--) {b[off+i]=(byte)w; w>>>=8;}
+	}
+
+/* xor byte v into byte i of the GHASH state */
+	private void xorbyte(int i,int v)
+	{
+		if (i<8) Xh^=(long)(v&0xff)<<(56-8*i);
+		else Xl^=(long)(v&0xff)<<(120-8*i);
+	}
+
+/* add n bytes to the 64-bit length held in L[0],L[1] */
+	private static void addlen(int[] L,int n)
+	{
+		long v=((long)L[0]<<32)+(L[1]&0xffffffffL)+n;
+		L[0]=(int)(v>>>32); L[1]=(int)v;
+	}
+
+/* Shoup's 4-bit table of V, V.x, V.x^2, V.x^3 and their sums, with the leftmost bit of a GHASH block as x^0 */
+	private static void table(long vh,long vl,long[] hh,long[] hl)
 	{
-		int i,j,c;
-		byte[] b=new byte[4];
+		int i,j;
+		long c;
+		hh[0]=hl[0]=0;
+		hh[8]=vh; hl[8]=vl;
+		for (i=4;i>0;i>>=1)
+		{
+			c=-(vl&1)&0xE100000000000000L;	/* irreducible polynomial */
+			vl=(vh<<63)|(vl>>>1);
+			vh=(vh>>>1)^c;
+			hh[i]=vh; hl[i]=vl;
+		}
+		for (i=2;i<16;i<<=1)
+			for (j=1;j<i;j++)
+			{
+				hh[i+j]=hh[i]^hh[j];
+				hl[i+j]=hl[i]^hl[j];
+			}
+	}
 
-		for (i=j=0;i<NB;i++,j+=4) 
+/* Z^=X.H^(k+1), a nibble at a time from the bottom of X. Table lookups depend on X */
+	private void mul(long xh,long xl,int k)
+	{
+		int j,n,rem;
+		long zh=0,zl=0;
+		long[] hh=HH[k],hl=HL[k];
+		for (j=0;j<64;j+=4)
 		{
-			b[0]=H[j]; b[1]=H[j+1]; b[2]=H[j+2]; b[3]=H[j+3];
-			table[0][i]=pack(b);
+			rem=(int)zl&15;
+			zl=(zh<<60)|(zl>>>4); zh=(zh>>>4)^(R4[rem]<<48);
+			n=(int)(xl>>>j)&15;
+			zh^=hh[n]; zl^=hl[n];
 		}
-		for (i=1;i<128;i++)
+		for (j=0;j<64;j+=4)
 		{
-			c=0;
-			for (j=0;j<NB;j++) {table[i][j]=c|(table[i-1][j])>>>1; c=table[i-1][j]<<31;}
-			if (c!=0) table[i][0]^=0xE1000000; /* irreducible polynomial */
+			rem=(int)zl&15;
+			zl=(zh<<60)|(zl>>>4); zh=(zh>>>4)^(R4[rem]<<48);
+			n=(int)(xh>>>j)&15;
+			zh^=hh[n]; zl^=hl[n];
+		}
+		Zh^=zh; Zl^=zl;
+	}
+
+	private void precompute(byte[] H)
+	{
+		int k;
+		table(load(H,0),load(H,8),HH[0],HL[0]);
+		Zh=load(H,0); Zl=load(H,8);
+		for (k=1;k<4;k++)
+		{ /* H^(k+1)=H^k.H */
+			long ph=Zh,pl=Zl;
+			Zh=Zl=0;
+			mul(ph,pl,0);
+			table(Zh,Zl,HH[k],HL[k]);
 		}
 	}
 
 	private void gf2mul()
-	{ /* gf2m mul - Z=H*X mod 2^128 */
-		int i,j,m,k;
-		int[] P=new int[4];
-		int c;
-		byte[] b;//=new byte[4];
+	{ /* gf2m mul - X=H*X mod 2^128 */
+		Zh=Zl=0;
+		mul(Xh,Xl,0);
+		Xh=Zh; Xl=Zl;
+	}
 
-		P[0]=P[1]=P[2]=P[3]=0;
-		j=8; m=0;
-		for (i=0;i<128;i++)
+/* GHASH nb whole blocks of b starting at off. Groups of four share one reduction of the state, */
+/* as X=(X+C1).H^4+C2.H^3+C3.H^2+C4.H, so their products are independent */
+	private void ghash_blocks(byte[] b,int off,int nb)
+	{
+		for (;nb>=4;nb-=4,off+=64)
 		{
-			c=(stateX[m]>>>(--j))&1; c=~c+1;
-			for (k=0;k<NB;k++) P[k]^=(table[i][k]&c);
-			if (j==0)
-			{
-				j=8; m++;
-				if (m==16) break;
-			}
+			Zh=Zl=0;
+			mul(Xh^load(b,off),Xl^load(b,off+8),3);
+			mul(load(b,off+16),load(b,off+24),2);
+			mul(load(b,off+32),load(b,off+40),1);
+			mul(load(b,off+48),load(b,off+56),0);
+			Xh=Zh; Xl=Zl;
 		}
-		for (i=j=0;i<NB;i++,j+=4) 
+		for (;nb>0;nb--,off+=16)
 		{
-			b=unpack(P[i]);
-			stateX[j]=b[0]; stateX[j+1]=b[1]; stateX[j+2]=b[2]; stateX[j+3]=b[3];
+			Xh^=load(b,off); Xl^=load(b,off+8);
+			gf2mul();
 		}
 	}
 
-	private void wrap()
-	{ /* Finish off GHASH */
+/* GHASH len bytes of b, the last block zero padded */
+	private void ghash_bytes(byte[] b,int len)
+	{
 		int i,j;
-		int[] F=new int[4];
-		byte[] L=new byte[16];
-		byte[] b;//=new byte[4];
-
-/* convert lengths from bytes to bits */
-		F[0]=(lenA[0]<<3)|(lenA[1]&0xE0000000)>>>29;
-		F[1]=lenA[1]<<3;
-		F[2]=(lenC[0]<<3)|(lenC[1]&0xE0000000)>>>29;
-		F[3]=lenC[1]<<3;
-		for (i=j=0;i<NB;i++,j+=4)
+		ghash_blocks(b,0,len/16);
+		if (len%16!=0)
 		{
-			b=unpack(F[i]);
-			L[j]=b[0]; L[j+1]=b[1]; L[j+2]=b[2]; L[j+3]=b[3];
+			for (i=0,j=len-len%16;j<len;) xorbyte(i++,b[j++]);
+			gf2mul();
 		}
-		for (i=0;i<16;i++) stateX[i]^=L[i];
+	}
+
+/* increment the counter, and encrypt it into B */
+	private void next_counter(byte[] B)
+	{
+		int i,c=((a.f[12]&0xff)<<24)|((a.f[13]&0xff)<<16)|((a.f[14]&0xff)<<8)|(a.f[15]&0xff);
+		c++;
+		a.f[12]=(byte)(c>>>24); a.f[13]=(byte)(c>>>16); a.f[14]=(byte)(c>>>8); a.f[15]=(byte)c;
+		for (i=0;i<16;i++) B[i]=a.f[i];
+		a.ecb_encrypt(B);
+	}
+
+	private void wrap()
+	{ /* Finish off GHASH */
+/* convert lengths from bytes to bits */
+		Xh^=(((long)lenA[0]<<32)|(lenA[1]&0xffffffffL))<<3;
+		Xl^=(((long)lenC[0]<<32)|(lenC[1]&0xffffffffL))<<3;
 		gf2mul();
 	}
 
@@ -144,7 +229,8 @@ public class GCM {
 		byte[] H=new byte[16];
 		byte[] b;//=new byte[4];
 
-		for (i=0;i<16;i++) {H[i]=0; stateX[i]=0;}
+		for (i=0;i<16;i++) H[i]=0;
+		Xh=Xl=0;
 
 		a.init(AES.ECB,nk,key,iv);
 		a.ecb_encrypt(H);     /* E(K,0) */
@@ -163,7 +249,9 @@ public class GCM {
 			status=GCM_ACCEPTING_CIPHER;
 			ghash(iv,niv); /* GHASH(H,0,IV) */
 			wrap();
-			for (i=0;i<16;i++) {a.f[i]=stateX[i];Y_0[i]=a.f[i];stateX[i]=0;}
+			store(Xh,a.f,0); store(Xl,a.f,8);
+			for (i=0;i<16;i++) Y_0[i]=a.f[i];
+			Xh=Xl=0;
 			lenA[0]=lenC[0]=lenA[1]=lenC[1]=0;
 		}
 		status=GCM_ACCEPTING_HEADER;
@@ -172,41 +260,21 @@ public class GCM {
 /* Add Header data - included but not encrypted */
 	public boolean add_header(byte[] header,int len)
 	{ /* Add some header. Won't be encrypted, but will be authenticated. len is length of header */
-		int i,j=0;
 		if (status!=GCM_ACCEPTING_HEADER) return false;
 
-		while (j<len)
-		{
-			for (i=0;i<16 && j<len;i++)
-			{
-				stateX[i]^=header[j++];
-				lenA[1]++; if (lenA[1]==0) lenA[0]++;
-			}
-			gf2mul();
-		}
+		ghash_bytes(header,len);
+		addlen(lenA,len);
 		if (len%16!=0) status=GCM_ACCEPTING_CIPHER;
 		return true;
 	}
 
 	private boolean ghash(byte[] plain,int len)
 	{
-		int i,j=0;
-		int counter;
-	//	byte[] B=new byte[16];
-	//	byte[] b=new byte[4];
-
 		if (status==GCM_ACCEPTING_HEADER) status=GCM_ACCEPTING_CIPHER;
 		if (status!=GCM_ACCEPTING_CIPHER) return false;
 		
-		while (j<len)
-		{
-			for (i=0;i<16 && j<len;i++)
-			{
-				stateX[i]^=plain[j++];
-				lenC[1]++; if (lenC[1]==0) lenC[0]++;
-			}
-			gf2mul();
-		}
+		ghash_bytes(plain,len);
+		addlen(lenC,len);
 		if (len%16!=0) status=GCM_NOT_ACCEPTING_MORE;
 		return true;
 	}
@@ -215,9 +283,7 @@ public class GCM {
 	public byte[] add_plain(byte[] plain,int len)
 	{
 		int i,j=0;
-		int counter;
 		byte[] B=new byte[16];
-		byte[] b=new byte[4];
 		byte[] cipher=new byte[len];
 
 		if (status==GCM_ACCEPTING_HEADER) status=GCM_ACCEPTING_CIPHER;
@@ -225,23 +291,12 @@ public class GCM {
 		
 		while (j<len)
 		{
-
-			b[0]=a.f[12]; b[1]=a.f[13]; b[2]=a.f[14]; b[3]=a.f[15];
-			counter=pack(b);
-			counter++;
-			b=unpack(counter);
-			a.f[12]=b[0]; a.f[13]=b[1]; a.f[14]=b[2]; a.f[15]=b[3]; /* increment counter */
-			for (i=0;i<16;i++) B[i]=a.f[i];
-			a.ecb_encrypt(B);        /* encrypt it  */
-		
-			for (i=0;i<16 && j<len;i++)
-			{
+			next_counter(B);
+			for (i=0;i<16 && j<len;i++,j++)
 				cipher[j]=(byte)(plain[j]^B[i]);
-				stateX[i]^=cipher[j++];
-				lenC[1]++; if (lenC[1]==0) lenC[0]++;
-			}
-			gf2mul();
 		}
+		ghash_bytes(cipher,len);
+		addlen(lenC,len);
 		if (len%16!=0) status=GCM_NOT_ACCEPTING_MORE;
 		return cipher;
 	}
@@ -250,32 +305,19 @@ public class GCM {
 	public byte[] add_cipher(byte[] cipher,int len)
 	{
 		int i,j=0;
-		int counter;
 		byte[] B=new byte[16];
-		byte[] b=new byte[4];
 		byte[] plain=new byte[len];
 
 		if (status==GCM_ACCEPTING_HEADER) status=GCM_ACCEPTING_CIPHER;
 		if (status!=GCM_ACCEPTING_CIPHER) return new byte[0];
 	
+		ghash_bytes(cipher,len);
+		addlen(lenC,len);
 		while (j<len)
 		{
-
-			b[0]=a.f[12]; b[1]=a.f[13]; b[2]=a.f[14]; b[3]=a.f[15];
-			counter=pack(b);
-			counter++;
-			b=unpack(counter);
-			a.f[12]=b[0]; a.f[13]=b[1]; a.f[14]=b[2]; a.f[15]=b[3]; /* increment counter */
-			for (i=0;i<16;i++) B[i]=a.f[i];
-			a.ecb_encrypt(B);        /* encrypt it  */
-			for (i=0;i<16 && j<len;i++)
-			{
-				byte oc=cipher[j];
+			next_counter(B);
+			for (i=0;i<16 && j<len;i++,j++)
 				plain[j]=(byte)(cipher[j]^B[i]);
-				stateX[i]^=oc; j++;
-				lenC[1]++; if (lenC[1]==0) lenC[0]++;
-			}
-			gf2mul();
 		}
 		if (len%16!=0) status=GCM_NOT_ACCEPTING_MORE;
 		return plain;
@@ -292,8 +334,9 @@ public class GCM {
 		if (extract)
 		{
 			a.ecb_encrypt(Y_0);        /* E(K,Y0) */
-			for (i=0;i<16;i++) Y_0[i]^=stateX[i];
-			for (i=0;i<16;i++) {tag[i]=Y_0[i];Y_0[i]=stateX[i]=0;}
+			store(Xh,tag,0); store(Xl,tag,8);
+			for (i=0;i<16;i++) {tag[i]^=Y_0[i]; Y_0[i]=0;}
+			Xh=Xl=0;
 		}
 		status=GCM_FINISHED;
 		a.end();
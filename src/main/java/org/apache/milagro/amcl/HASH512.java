@@ -29,6 +29,9 @@ under the License.
 
 package org.apache.milagro.amcl;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 public class HASH512 {
 
 	private long[] length=new long[2];
@@ -157,23 +160,74 @@ public class HASH512 {
 		init();
 	}
 
+/* Copy constructor */
+	public HASH512(HASH512 s)
+	{
+		copy(s);
+	}
+
+/* copy the state of s, after which both continue independently */
+	public void copy(HASH512 s)
+	{
+		int i;
+		length[0]=s.length[0]; length[1]=s.length[1];
+		for (i=0;i<8;i++) h[i]=s.h[i];
+		for (i=0;i<16;i++) w[i]=s.w[i];	/* the rest of w is rebuilt by each transform */
+	}
+
 /* process a single byte */
 	public void process(int byt)
 	{ /* process the next message byte */
 		int cnt;
-		cnt=(int)(length[0]/64)%16;
+		cnt=(int)(length[0]>>>6)&15;
     
 		w[cnt]<<=8;
 		w[cnt]|=(byt&0xFF);
 		length[0]+=8;
 		if (length[0]==0L) { length[1]++; length[0]=0L; }
-		if ((length[0]%1024)==0) transform();
+		if ((length[0]&1023)==0) transform();
+	}
+
+/* count a whole block, already loaded into w, and transform it */
+	private void full_block()
+	{
+		length[0]+=1024;
+		if (length[0]==0L) length[1]++;
+		transform();
+	}
+
+/* process n bytes of b, starting at off - whole blocks are read straight into w */
+	public void update(byte[] b,int off,int n)
+	{
+		while (n>0 && (length[0]&1023)!=0) {process(b[off++]); n--;}
+		for (;n>=128;n-=128)
+		{
+			for (int i=0;i<16;i++,off+=8)
+				w[i]=((long)(b[off]&0xff)<<56)|((long)(b[off+1]&0xff)<<48)|((long)(b[off+2]&0xff)<<40)|((long)(b[off+3]&0xff)<<32)|
+					((long)(b[off+4]&0xff)<<24)|((long)(b[off+5]&0xff)<<16)|((long)(b[off+6]&0xff)<<8)|(long)(b[off+7]&0xff);
+			full_block();
+		}
+		while (n>0) {process(b[off++]); n--;}
+	}
+
+/* process the remaining bytes of buf, whatever its byte order, leaving its position at its limit */
+	public void update(ByteBuffer buf)
+	{
+		ByteBuffer d=buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+		while (d.hasRemaining() && (length[0]&1023)!=0) process(d.get());
+		while (d.remaining()>=128)
+		{
+			for (int i=0;i<16;i++) w[i]=d.getLong();
+			full_block();
+		}
+		while (d.hasRemaining()) process(d.get());
+		buf.position(d.position());
 	}
 
 /* process an array of bytes */	
 	public void process_array(byte[] b)
 	{
-		for (int i=0;i<b.length;i++) process((int)b[i]);
+		update(b,0,b.length);
 	}
 
 /* process a 32-bit integer */
@@ -194,7 +248,7 @@ public class HASH512 {
 		len0=length[0];
 		len1=length[1];
 		process(0x80);
-		while ((length[0]%1024)!=896) process(0);
+		while ((length[0]&1023)!=896) process(0);
 		w[14]=len1;
 		w[15]=len0;    
 		transform();
@@ -0,0 +1,388 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/*
+ * Hash based message authentication and key derivation
+ *
+ * HMAC (RFC 2104), PBKDF2 (RFC 8018) and expand_message_xmd from RFC 9380
+ * (Hashing to Elliptic Curves), built on SHA-256, SHA-384 or SHA-512. The
+ * hash is selected by its output length in bytes, as in the HASH_TYPE of
+ * each curve.
+ *
+ * An HMAC object keeps the hash states after absorbing K0^ipad and K0^opad,
+ * so each further message under the same key costs two fewer compressions.
+ * It is not safe to share one object between threads; give each thread a copy.
+ */
+
+package org.apache.milagro.amcl;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+public final class HMAC {
+	public static final int SHA256=32;
+	public static final int SHA384=48;
+	public static final int SHA512=64;
+
+	private int sha;
+	private HASH256 ipad256,opad256,work256;
+	private HASH384 ipad384,opad384,work384;
+	private HASH512 ipad512,opad512,work512;
+
+/* input block size in bytes of the hash */
+	private static int blocksize(int sha)
+	{
+		if (sha==SHA256) return 64;
+		return 128;
+	}
+
+/* hash the concatenation of A, the single byte n (if n>=0) and B */
+	private static byte[] hashit(int sha,byte[] A,int n,byte[] B)
+	{
+		byte[] R=null;
+		if (sha==SHA256)
+		{
+			HASH256 H=new HASH256();
+			H.process_array(A);
+			if (n>=0) H.process(n);
+			if (B!=null) H.process_array(B);
+			R=H.hash();
+		}
+		if (sha==SHA384)
+		{
+			HASH384 H=new HASH384();
+			H.process_array(A);
+			if (n>=0) H.process(n);
+			if (B!=null) H.process_array(B);
+			R=H.hash();
+		}
+		if (sha==SHA512)
+		{
+			HASH512 H=new HASH512();
+			H.process_array(A);
+			if (n>=0) H.process(n);
+			if (B!=null) H.process_array(B);
+			R=H.hash();
+		}
+		return R;
+	}
+
+/* General purpose hash of the concatenation of A, the 4-byte number n (if n>0) and B. A or B may be null. */
+/* If pad>0 output is truncated or left padded with zeros to pad bytes. Returns null if the hash is not supported */
+	public static byte[] GPhashit(int sha,int pad,byte[] A,int n,byte[] B)
+	{
+		byte[] R=null;
+		if (sha==SHA256)
+		{
+			HASH256 H=new HASH256();
+			if (A!=null) H.process_array(A);
+			if (n>0) H.process_num(n);
+			if (B!=null) H.process_array(B);
+			R=H.hash();
+		}
+		if (sha==SHA384)
+		{
+			HASH384 H=new HASH384();
+			if (A!=null) H.process_array(A);
+			if (n>0) H.process_num(n);
+			if (B!=null) H.process_array(B);
+			R=H.hash();
+		}
+		if (sha==SHA512)
+		{
+			HASH512 H=new HASH512();
+			if (A!=null) H.process_array(A);
+			if (n>0) H.process_num(n);
+			if (B!=null) H.process_array(B);
+			R=H.hash();
+		}
+		if (R==null || pad==0) return R;
+		return fit(R,pad);
+	}
+
+/* truncate R, or left pad it with zeros, to pad bytes */
+	private static byte[] fit(byte[] R,int pad)
+	{
+		byte[] W=new byte[pad];
+		if (pad<=R.length)
+			for (int i=0;i<pad;i++) W[i]=R[i];
+		else
+			for (int i=0;i<R.length;i++) W[i+pad-R.length]=R[i];
+		return W;
+	}
+
+/* Set up HMAC with key K, absorbing K0^ipad and K0^opad once */
+	public HMAC(int sha,byte[] K)
+	{
+		int i,b=blocksize(sha);
+		byte[] K0=new byte[b];
+		this.sha=sha;
+		if (sha!=SHA256 && sha!=SHA384 && sha!=SHA512) return;
+
+		if (K.length>b) K=hashit(sha,K,-1,null);
+		for (i=0;i<K.length;i++) K0[i]=K[i];
+
+		for (i=0;i<b;i++) K0[i]^=0x36;
+		prefix(false,K0);
+		for (i=0;i<b;i++) K0[i]^=0x6a;	/* 0x36^0x5c */
+		prefix(true,K0);
+	}
+
+/* Copy constructor - the copy has its own hash states, so it can be used on another thread */
+	public HMAC(HMAC H)
+	{
+		sha=H.sha;
+		if (H.ipad256!=null) {ipad256=new HASH256(H.ipad256); work256=new HASH256();}
+		if (H.opad256!=null) opad256=new HASH256(H.opad256);
+		if (H.ipad384!=null) {ipad384=new HASH384(H.ipad384); work384=new HASH384();}
+		if (H.opad384!=null) opad384=new HASH384(H.opad384);
+		if (H.ipad512!=null) {ipad512=new HASH512(H.ipad512); work512=new HASH512();}
+		if (H.opad512!=null) opad512=new HASH512(H.opad512);
+	}
+
+/* save the hash state after absorbing A as the inner or outer prefix */
+	private void prefix(boolean outer,byte[] A)
+	{
+		if (sha==SHA256)
+		{
+			HASH256 H=new HASH256(); H.process_array(A);
+			if (outer) opad256=H; else ipad256=H;
+			work256=new HASH256();
+		}
+		if (sha==SHA384)
+		{
+			HASH384 H=new HASH384(); H.process_array(A);
+			if (outer) opad384=H; else ipad384=H;
+			work384=new HASH384();
+		}
+		if (sha==SHA512)
+		{
+			HASH512 H=new HASH512(); H.process_array(A);
+			if (outer) opad512=H; else ipad512=H;
+			work512=new HASH512();
+		}
+	}
+
+/* continue the saved inner or outer state with M, and return the digest */
+	private byte[] resume(boolean outer,byte[] M)
+	{
+		if (sha==SHA256)
+		{
+			work256.copy(outer?opad256:ipad256);
+			work256.process_array(M);
+			return work256.hash();
+		}
+		if (sha==SHA384)
+		{
+			work384.copy(outer?opad384:ipad384);
+			work384.process_array(M);
+			return work384.hash();
+		}
+		work512.copy(outer?opad512:ipad512);
+		work512.process_array(M);
+		return work512.hash();
+	}
+
+/* Calculate HMAC of M into tag. A tag longer than the hash is left padded with zeros */
+/* returns 0 if the tag is shorter than 4 bytes or the hash is not supported, else 1 */
+	public int mac(byte[] M,byte[] tag)
+	{
+		int olen=tag.length;
+		if (olen<4 || (sha!=SHA256 && sha!=SHA384 && sha!=SHA512)) return 0;
+		byte[] B=resume(true,resume(false,M));
+		if (olen!=sha) B=fit(B,olen);
+		for (int i=0;i<olen;i++) tag[i]=B[i];
+		return 1;
+	}
+
+/* Block i of the PBKDF2 output, the XOR of rep chained HMACs of Salt|i under H, into K at off */
+	private static void pbkdf2_block(HMAC H,byte[] Salt,int i,int rep,byte[] K,int off)
+	{
+		int j,k,sha=H.sha;
+		byte[] F=new byte[sha];
+		byte[] U=new byte[sha];
+		byte[] S=new byte[Salt.length+4];
+
+		for (j=0;j<Salt.length;j++) S[j]=Salt[j];
+		S[Salt.length]=(byte)(i>>24); S[Salt.length+1]=(byte)(i>>16);
+		S[Salt.length+2]=(byte)(i>>8); S[Salt.length+3]=(byte)i;
+
+		H.mac(S,F);
+		for (j=0;j<sha;j++) U[j]=F[j];
+		for (j=2;j<=rep;j++)
+		{
+			H.mac(U,U);
+			for (k=0;k<sha;k++) F[k]^=U[k];
+		}
+		for (j=0;j<sha;j++) K[off+j]=F[j];
+	}
+
+/* Password based Key Derivation Function */
+/* Input password Pass, salt Salt, and repeat count rep. Output key of length olen, or null if the hash is not supported */
+	public static byte[] PBKDF2(int sha,byte[] Pass,byte[] Salt,int rep,int olen)
+	{
+		int i,d;
+		if (sha!=SHA256 && sha!=SHA384 && sha!=SHA512) return null;
+		d=olen/sha; if (olen%sha!=0) d++;
+		byte[] K=new byte[d*sha];
+		HMAC H=new HMAC(sha,Pass);
+
+		for (i=1;i<=d;i++)
+			pbkdf2_block(H,Salt,i,rep,K,(i-1)*sha);
+		return Arrays.copyOf(K,olen);
+	}
+
+/* PBKDF2 with the output blocks derived in parallel on ex, or on the common ForkJoinPool if ex is null */
+	public static byte[] PBKDF2(final int sha,byte[] Pass,final byte[] Salt,final int rep,int olen,Executor ex)
+	{
+		int i,d;
+		if (sha!=SHA256 && sha!=SHA384 && sha!=SHA512) return null;
+		d=olen/sha; if (olen%sha!=0) d++;
+		if (d<2) return PBKDF2(sha,Pass,Salt,rep,olen);
+		if (ex==null) ex=ForkJoinPool.commonPool();
+
+		final byte[] K=new byte[d*sha];
+		final HMAC H=new HMAC(sha,Pass);
+		CompletableFuture<?>[] part=new CompletableFuture<?>[d];
+		for (i=1;i<=d;i++)
+		{
+			final int n=i;
+			part[i-1]=CompletableFuture.runAsync(new Runnable() {
+				public void run() { pbkdf2_block(new HMAC(H),Salt,n,rep,K,(n-1)*sha); }
+			},ex);
+		}
+		CompletableFuture.allOf(part).join();
+		return Arrays.copyOf(K,olen);
+	}
+
+/* PBKDF2 of each (Pass[i],Salt[i]) pair, spread across ex, or the common ForkJoinPool if ex is null */
+	public static byte[][] PBKDF2(final int sha,final byte[][] Pass,final byte[][] Salt,final int rep,final int olen,Executor ex)
+	{
+		int i,n=Pass.length;
+		if (sha!=SHA256 && sha!=SHA384 && sha!=SHA512) return null;
+		if (ex==null) ex=ForkJoinPool.commonPool();
+
+		final byte[][] K=new byte[n][];
+		CompletableFuture<?>[] part=new CompletableFuture<?>[n];
+		for (i=0;i<n;i++)
+		{
+			final int m=i;
+			part[i]=CompletableFuture.runAsync(new Runnable() {
+				public void run() { K[m]=PBKDF2(sha,Pass[m],Salt[m],rep,olen); }
+			},ex);
+		}
+		CompletableFuture.allOf(part).join();
+		return K;
+	}
+
+/* Key Derivation Function KDF2 (IEEE 1363) - the first olen bytes of H(Z|1|P), H(Z|2|P) ... */
+/* Z is absorbed once and a copy of that hash state resumed for each counter. Returns null if the hash is not supported */
+	public static byte[] KDF2(int sha,byte[] Z,byte[] P,int olen)
+	{
+		int i,k=0,counter;
+		if (sha!=SHA256 && sha!=SHA384 && sha!=SHA512) return null;
+		byte[] K=new byte[olen];
+		byte[] B;
+
+		if (sha==SHA256)
+		{
+			HASH256 H=new HASH256();
+			HASH256 W=new HASH256();
+			H.process_array(Z);
+			for (counter=1;k<olen;counter++)
+			{
+				W.copy(H);
+				W.process_num(counter);
+				if (P!=null) W.process_array(P);
+				B=W.hash();
+				for (i=0;i<sha && k<olen;i++) K[k++]=B[i];
+			}
+		}
+		if (sha==SHA384)
+		{
+			HASH384 H=new HASH384();
+			HASH384 W=new HASH384();
+			H.process_array(Z);
+			for (counter=1;k<olen;counter++)
+			{
+				W.copy(H);
+				W.process_num(counter);
+				if (P!=null) W.process_array(P);
+				B=W.hash();
+				for (i=0;i<sha && k<olen;i++) K[k++]=B[i];
+			}
+		}
+		if (sha==SHA512)
+		{
+			HASH512 H=new HASH512();
+			HASH512 W=new HASH512();
+			H.process_array(Z);
+			for (counter=1;k<olen;counter++)
+			{
+				W.copy(H);
+				W.process_num(counter);
+				if (P!=null) W.process_array(P);
+				B=W.hash();
+				for (i=0;i<sha && k<olen;i++) K[k++]=B[i];
+			}
+		}
+		return K;
+	}
+
+/* expand_message_xmd - expand message M with domain separation tag DST to olen bytes */
+/* returns null if olen is more than 255 hash blocks or the hash is not supported */
+	public static byte[] XMD_Expand(int sha,int olen,byte[] DST,byte[] M)
+	{
+		int i,j,k;
+		if (sha!=SHA256 && sha!=SHA384 && sha!=SHA512) return null;
+		int ell=(olen+sha-1)/sha;
+		if (ell>255 || olen>65535) return null;
+
+		if (DST.length>255)
+			DST=hashit(sha,"H2C-OVERSIZE-DST-".getBytes(),-1,DST);
+
+		byte[] DSTP=new byte[DST.length+1];
+		for (i=0;i<DST.length;i++) DSTP[i]=DST[i];
+		DSTP[DST.length]=(byte)DST.length;
+
+/* b0=H(Z_pad|M|l_i_b_str|0|DST_prime) */
+		int bs=blocksize(sha);
+		byte[] T=new byte[bs+M.length+3];
+		for (i=0;i<M.length;i++) T[bs+i]=M[i];
+		T[bs+M.length]=(byte)(olen>>8);
+		T[bs+M.length+1]=(byte)olen;
+		T[bs+M.length+2]=0;
+		byte[] b0=hashit(sha,T,-1,DSTP);
+
+/* bi=H((b0 xor b(i-1))|i|DST_prime) */
+		byte[] OKM=new byte[olen];
+		byte[] bi=hashit(sha,b0,1,DSTP);
+		k=0;
+		for (i=1;;i++)
+		{
+			for (j=0;j<sha && k<olen;j++) OKM[k++]=bi[j];
+			if (k==olen) break;
+			for (j=0;j<sha;j++) bi[j]^=b0[j];
+			bi=hashit(sha,bi,i+1,DSTP);
+		}
+		return OKM;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/*
+ * Bounded cache of decoded public keys
+ *
+ * Least recently used entries are dropped once the capacity is reached.
+ * Keys are the encoded bytes, values whatever the caller decoded them to -
+ * typically a validated point, or a point prepared for pairing. Values are
+ * shared between threads, so callers must not modify them.
+ *
+ * All methods are synchronized. Decoding is done by the caller outside the
+ * lock, so a key missed by two threads at once may be decoded twice.
+ */
+
+package org.apache.milagro.amcl;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class KEYCACHE<V> {
+	private final LinkedHashMap<ByteBuffer,V> map;
+	private long hits,misses;
+
+/* cache of at most capacity entries */
+	public KEYCACHE(final int capacity)
+	{
+		map=new LinkedHashMap<ByteBuffer,V>(16,0.75f,true) {
+			protected boolean removeEldestEntry(Map.Entry<ByteBuffer,V> e)
+			{
+				return size()>capacity;
+			}
+		};
+	}
+
+/* return the value cached for encoding W, or null */
+	public synchronized V get(byte[] W)
+	{
+		V v=map.get(ByteBuffer.wrap(W));
+		if (v==null) misses++;
+		else hits++;
+		return v;
+	}
+
+/* cache value v for encoding W - W is copied */
+	public synchronized void put(byte[] W,V v)
+	{
+		map.put(ByteBuffer.wrap(W.clone()),v);
+	}
+
+	public synchronized long hits()
+	{
+		return hits;
+	}
+
+	public synchronized long misses()
+	{
+		return misses;
+	}
+
+	public synchronized int size()
+	{
+		return map.size();
+	}
+
+/* drop every entry and reset the counters */
+	public synchronized void clear()
+	{
+		map.clear();
+		hits=misses=0;
+	}
+}
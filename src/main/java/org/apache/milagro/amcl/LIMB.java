@@ -0,0 +1,63 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/*
+ * Limb arithmetic for BIG
+ *
+ * BIG products are all built from these limb products. This version
+ * splits each limb in half and does four 64-bit multiplies per product,
+ * and runs on any JVM. The multi-release jar also carries a Java 9
+ * version, from src/main/java9, which uses Math.multiplyHigh to do one
+ * multiply pair.
+ *
+ * Limbs hold base bits. BIG passes its BASEBITS, which the JIT folds in
+ * once the call is inlined.
+ */
+
+package org.apache.milagro.amcl;
+
+public final class LIMB {
+
+/* return {high,low} of a*b+c+r, split at base bits */
+	public static long[] muladd(long a,long b,long c,long r,int base)
+	{
+		long[] tb=new long[2];
+		tb[1]=r;
+		tb[0]=muladd(a,b,c,tb,1,base);
+		return tb;
+	}
+
+/* r[o]=low part of a*b+c+r[o], and return the high part */
+	public static long muladd(long a,long b,long c,long[] r,int o,int base)
+	{
+		int h=base/2;
+		long hmask=((long)1<<h)-1;
+		long x0=a&hmask;
+		long x1=a>>h;
+		long y0=b&hmask;
+		long y1=b>>h;
+		long bot=x0*y0;
+		long top=x1*y1;
+		long mid=x0*y1+x1*y0;
+		bot+=(mid&hmask)<<h; bot+=c; bot+=r[o];
+		top+=mid>>h;
+		r[o]=bot&(((long)1<<base)-1);
+		return top+(bot>>base);
+	}
+}
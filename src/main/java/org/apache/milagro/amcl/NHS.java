@@ -206,8 +206,7 @@ public final class NHS {
 		byte[] hash=new byte[4*DEGREE];
 		SHA3 sh=new SHA3(SHA3.SHAKE128);
 
-		for (i=0;i<32;i++)
-			sh.process(seed[i]);
+		sh.update(seed,0,32);
 		sh.shake(hash,4*DEGREE);
 
 		for (i=j=0;i<DEGREE;i++)
@@ -459,8 +458,7 @@ public final class NHS {
 		for (i=0;i<32;i++)
 			key[i]=(byte)RNG.getByte();
 
-		for (i=0;i<32;i++)
-			sh.process(key[i]);
+		sh.update(key,0,32);
 		sh.hash(key);
 
 		Encode(key,k);
@@ -477,8 +475,7 @@ public final class NHS {
 		Compress(c,cc);
 
 		sh.init(SHA3.HASH256);
-		for (i=0;i<32;i++)
-			sh.process(key[i]);
+		sh.update(key,0,32);
 		sh.hash(key);
 
 		for (i=0;i<32;i++)
@@ -530,8 +527,7 @@ public final class NHS {
 
 		Decode(k,key);
 
-		for (i=0;i<32;i++)
-			sh.process(key[i]);
+		sh.update(key,0,32);
 		sh.hash(key);
 
 		for (i=0;i<32;i++)
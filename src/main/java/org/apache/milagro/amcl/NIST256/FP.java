@@ -28,10 +28,11 @@ public final class FP {
 	public static final int PSEUDO_MERSENNE=1;
 	public static final int MONTGOMERY_FRIENDLY=2;
 	public static final int GENERALISED_MERSENNE=3;
+	public static final int SPARSE=4;  /* Montgomery, with few non-zero signed bits in the modulus */
 
 	public static final int MODBITS=256; /* Number of bits in Modulus */
 	public static final int MOD8=7;  /* Modulus mod 8 */
-	public static final int MODTYPE=NOT_SPECIAL;
+	public static final int MODTYPE=SPARSE;
 
 	public static final int FEXCESS =((int)1<<24);  // BASEBITS*NLEN-MODBITS or 2^30 max!
 	public static final long OMASK=(long)(-1)<<(MODBITS%BIG.BASEBITS);
@@ -110,6 +111,29 @@ public final class FP {
 			b.norm();
 			return b;		
 		}
+		if (MODTYPE==SPARSE)
+		{ // Montgomery reduction, with m.p added as shifted copies of m - p=2^256-2^224+2^192+2^96-1, and MConst=1
+			BIG b;
+			long m;
+			int i;
+			for (i=0;i<BIG.NLEN;i++)
+			{
+				m=d.w[i]&BIG.BMASK;
+				d.w[i]-=m;
+				d.w[i+1]+=(m<<40)&BIG.BMASK;
+				d.w[i+2]+=m>>16;
+				d.w[i+3]+=(m<<24)&BIG.BMASK;
+				d.w[i+4]+=((m<<32)&BIG.BMASK)+(m>>32)-m;
+				d.w[i+5]+=m>>24;
+				d.w[i+1]+=d.w[i]>>BIG.BASEBITS;
+			}
+
+			b=new BIG(0);
+			for (i=0;i<BIG.NLEN;i++ )
+				b.w[i]=d.w[BIG.NLEN+i];
+			b.norm();
+			return b;
+		}
 		if (MODTYPE==NOT_SPECIAL)
 		{
 			return BIG.monty(new BIG(ROM.Modulus),ROM.MConst,d);
@@ -379,19 +403,14 @@ public final class FP {
 		}
 	}
 
-/* this=1/this mod Modulus */
+/* this=1/this mod Modulus, in constant time */
 	public void inverse()
 	{
-/*
+		reduce();
 		BIG r=redc();
-		r.invmodp(p);
+		r.invmodp(new BIG(ROM.Modulus));
 		x.copy(r);
 		nres();
-*/
-		BIG m2=new BIG(ROM.Modulus);
-		m2.dec(2); m2.norm();
-		copy(pow(m2));
-
 	}
 
 /* return TRUE if this==a */
@@ -468,16 +487,39 @@ public final class FP {
 		return r;
 	} */
 
+/* this=this^(2^n), squaring in place */
+	private void nsqr(int n)
+	{
+		for (int i=0;i<n;i++) sqr();
+	}
+
+/* return this^((p-3)/4) using a fixed addition chain - 253 squarings and 12 multiplications */
+	private FP fpow()
+	{
+		FP x2=new FP(this); x2.sqr(); x2.mul(this);
+		FP x4=new FP(x2); x4.nsqr(2); x4.mul(x2);
+		FP x8=new FP(x4); x8.nsqr(4); x8.mul(x4);
+		FP x16=new FP(x8); x16.nsqr(8); x16.mul(x8);
+		FP x32=new FP(x16); x32.nsqr(16); x32.mul(x16);
+		FP r=new FP(x32); r.nsqr(32); r.mul(this);
+		r.nsqr(128); r.mul(x32);
+		r.nsqr(32); r.mul(x32);
+		r.nsqr(16); r.mul(x16);
+		r.nsqr(8); r.mul(x8);
+		r.nsqr(4); r.mul(x4);
+		r.nsqr(2); r.mul(x2);
+		r.reduce();
+		return r;
+	}
+
 /* return sqrt(this) mod Modulus */
 	public FP sqrt()
 	{
 		reduce();
-		BIG b=new BIG(ROM.Modulus);
 		if (MOD8==5)
 		{
-			b.dec(5); b.norm(); b.shr(3);
 			FP i=new FP(this); i.x.shl(1);
-			FP v=i.pow(b);
+			FP v=i.fpow();
 			i.mul(v); i.mul(v);
 			i.x.dec(1);
 			FP r=new FP(this);
@@ -487,8 +529,10 @@ public final class FP {
 		}
 		else
 		{
-			b.inc(1); b.norm(); b.shr(2);
-			return pow(b);
+			FP r=fpow();
+			r.mul(this);
+			r.reduce();
+			return r;
 		}
 	}
 
@@ -498,6 +542,34 @@ public final class FP {
 		BIG w=redc();
 		return w.jacobi(new BIG(ROM.Modulus));
 	}
+
+/* return 1 if this is a non-zero quadratic residue, else 0 - Euler's criterion, without computing the root */
+	public int qr()
+	{
+		FP r=new FP(this);
+		r.reduce();
+		FP t=r.fpow();
+		if (MOD8==5)
+		{ /* this^((p-1)/2)=t^4.this^2 */
+			t.sqr(); t.sqr();
+			t.mul(r); t.mul(r);
+		}
+		else
+		{ /* this^((p-1)/2)=t^2.this */
+			t.sqr();
+			t.mul(r);
+		}
+		if (t.equals(new FP(1))) return 1;
+		return 0;
+	}
+
+/* return sgn0(this) as defined in RFC 9380 - the parity of the fully reduced value */
+	public int sign()
+	{
+		FP t=new FP(this);
+		t.reduce();
+		return t.redc().parity();
+	}
 /*
 	public static void main(String[] args) {
 		BIG m=new BIG(ROM.Modulus);
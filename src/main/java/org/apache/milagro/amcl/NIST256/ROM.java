@@ -39,5 +39,8 @@ public class ROM
 	public static final long[] CURVE_Gx= {0xA13945D898C296L,0x7D812DEB33A0F4L,0xE563A440F27703L,0xE12C4247F8BCE6L,0x6B17D1F2L};
 	public static final long[] CURVE_Gy= {0xB6406837BF51F5L,0x33576B315ECECBL,0x4A7C0F9E162BCEL,0xFE1A7F9B8EE7EBL,0x4FE342E2L};
 
+	// Hash to curve - simplified SWU constant of RFC 9380
+	public static final int HTC_Z= -10;
+
 }
 
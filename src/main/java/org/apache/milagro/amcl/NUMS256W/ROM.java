@@ -41,5 +41,8 @@ public class ROM
 	public static final long[] CURVE_Gx= {0x52EE1EB21AACB1L,0x9B0903D4C73ABCL,0xA04F42CB098357L,0x5AAADB61297A95L,0xBC9ED6B6L};
 	public static final long[] CURVE_Gy= {0xB5B9CB2184DE9FL,0xC3D115310FBB80L,0xF77E04E035C955L,0x3399B6A673448BL,0xD08FC0F1L};
 
+	// Hash to curve - simplified SWU constant of RFC 9380
+	public static final int HTC_Z= 7;
+
 }
 
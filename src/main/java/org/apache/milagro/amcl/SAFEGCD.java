@@ -0,0 +1,217 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/*
+ * Constant time modular inversion
+ *
+ * Bernstein-Yang "safegcd" divsteps, as in "Fast constant-time gcd
+ * computation and modular inversion" (https://eprint.iacr.org/2019/266),
+ * batched 30 at a time on signed 30-bit limbs so that every product fits
+ * in a long. The number of divsteps depends only on the size of the
+ * modulus, never on the value being inverted.
+ *
+ * Shared by the BIG classes of every curve, which hand over their limbs
+ * together with their BASEBITS.
+ */
+
+package org.apache.milagro.amcl;
+
+public final class SAFEGCD {
+	private static final int M30=0x3FFFFFFF;
+
+/* 30 divsteps on the low bits of f and g, starting from delta */
+/* t receives the transition matrix [u,v;q,r], scaled by 2^30. Returns the new delta */
+	private static int divsteps(int delta,int f,int g,int[] t)
+	{
+		int u=1,v=0,q=0,r=1;
+		int c1,c2,x;
+		for (int i=0;i<30;i++)
+		{
+/* if delta>0 and g odd then delta=-delta, (f,g)=(g,-f) */
+			c1=(-delta>>31)&(-(g&1));
+			x=(f^g)&c1; f^=x; g^=x; g^=c1; g-=c1;
+			x=(u^q)&c1; u^=x; q^=x; q^=c1; q-=c1;
+			x=(v^r)&c1; v^=x; r^=x; r^=c1; r-=c1;
+			delta=(delta^c1)-c1;
+/* g is now made even by adding f if it is odd */
+			c2=-(g&1);
+			g+=f&c2; q+=u&c2; r+=v&c2;
+			delta++;
+			g>>=1; u<<=1; v<<=1;
+		}
+		t[0]=u; t[1]=v; t[2]=q; t[3]=r;
+		return delta;
+	}
+
+/* [f,g]=t.[f,g]/2^30 - exact, as the divsteps cleared the low 30 bits */
+	private static void update_fg(int[] f,int[] g,int[] t)
+	{
+		int n=f.length;
+		long u=t[0],v=t[1],q=t[2],r=t[3];
+		long cf=u*f[0]+v*g[0];
+		long cg=q*f[0]+r*g[0];
+		cf>>=30; cg>>=30;
+		for (int i=1;i<n;i++)
+		{
+			cf+=u*f[i]+v*g[i];
+			cg+=q*f[i]+r*g[i];
+			f[i-1]=(int)cf&M30; cf>>=30;
+			g[i-1]=(int)cg&M30; cg>>=30;
+		}
+		f[n-1]=(int)cf;
+		g[n-1]=(int)cg;
+	}
+
+/* [d,e]=t.[d,e]/2^30 mod p - a multiple of p is added to clear the low 30 bits first */
+/* keeps d and e in the range (-2p,p) */
+	private static void update_de(int[] d,int[] e,int[] t,int[] p,int pinv)
+	{
+		int n=d.length;
+		int u=t[0],v=t[1],q=t[2],r=t[3];
+		int sd=d[n-1]>>31;
+		int se=e[n-1]>>31;
+		int md=(u&sd)+(v&se);
+		int me=(q&sd)+(r&se);
+		long cd=(long)u*d[0]+(long)v*e[0];
+		long ce=(long)q*d[0]+(long)r*e[0];
+		md-=(pinv*(int)cd+md)&M30;
+		me-=(pinv*(int)ce+me)&M30;
+		cd+=(long)p[0]*md;
+		ce+=(long)p[0]*me;
+		cd>>=30; ce>>=30;
+		for (int i=1;i<n;i++)
+		{
+			cd+=(long)u*d[i]+(long)v*e[i]+(long)p[i]*md;
+			ce+=(long)q*d[i]+(long)r*e[i]+(long)p[i]*me;
+			d[i-1]=(int)cd&M30; cd>>=30;
+			e[i-1]=(int)ce&M30; ce>>=30;
+		}
+		d[n-1]=(int)cd;
+		e[n-1]=(int)ce;
+	}
+
+/* propagate carries so that all but the top limb are in [0,2^30) - the sign of r is then that of its top limb */
+	private static void carry(int[] r)
+	{
+		for (int i=0;i<r.length-1;i++)
+		{
+			r[i+1]+=r[i]>>30;
+			r[i]&=M30;
+		}
+	}
+
+/* add p to r if r is negative */
+	private static void cond_add(int[] r,int[] p)
+	{
+		int c=r[r.length-1]>>31;
+		for (int i=0;i<r.length;i++) r[i]+=p[i]&c;
+		carry(r);
+	}
+
+/* bring r from (-2p,p) to [0,p), negating it first if s is negative */
+	private static void normalize(int[] r,int s,int[] p)
+	{
+		cond_add(r,p);
+		int c=s>>31;
+		for (int i=0;i<r.length;i++) r[i]=(r[i]^c)-c;
+		carry(r);
+		cond_add(r,p);
+	}
+
+/* unpack limbs of base bits into n limbs of 30 bits */
+	private static int[] to30(long[] a,int base,int n)
+	{
+		int[] r=new int[n];
+		for (int j=0;j<n;j++)
+		{
+			int pos=30*j;
+			int k=pos/base,o=pos%base;
+			if (k>=a.length) break;
+			long v=a[k]>>>o;
+			if (o+30>base && k+1<a.length) v|=a[k+1]<<(base-o);
+			r[j]=(int)v&M30;
+		}
+		return r;
+	}
+
+/* pack 30 bit limbs back into limbs of base bits */
+	private static void from30(long[] a,int[] r,int base)
+	{
+		long mask=(1L<<base)-1;
+		for (int i=0;i<a.length;i++)
+		{
+			long v=0;
+			int pos=base*i;
+			for (int b=0;b<base;)
+			{
+				int j=(pos+b)/30,o=(pos+b)%30;
+				if (j>=r.length) break;
+				v|=((long)r[j]>>>o)<<b;
+				b+=30-o;
+			}
+			a[i]=v&mask;
+		}
+	}
+
+/* number of bits in a */
+	private static int nbits(long[] a,int base)
+	{
+		int k=a.length-1;
+		while (k>=0 && a[k]==0) k--;
+		if (k<0) return 0;
+		int bts=base*k;
+		long c=a[k];
+		while (c!=0) {c>>=1; bts++;}
+		return bts;
+	}
+
+/* x=1/x mod p, in constant time. x and p are normalised limbs of base bits, 0<=x<p and p odd */
+/* x=0 is returned as 0 */
+	public static void inverse(long[] x,long[] p,int base)
+	{
+		int i,bts=nbits(p,base);
+		int n=(bts+31)/30;
+		int[] P=to30(p,base,n);
+		int[] f=to30(p,base,n);
+		int[] g=to30(x,base,n);
+		int[] d=new int[n];
+		int[] e=new int[n];
+		int[] t=new int[4];
+		e[0]=1;
+
+/* 1/p mod 2^30 by Newton iteration */
+		int pinv=P[0];
+		for (i=0;i<4;i++) pinv*=2-P[0]*pinv;
+		pinv&=M30;
+
+/* divstep bound from Theorem 11.2 of the paper, rounded up */
+		int m=(bts<46)?(49*bts+57+16)/17:(49*bts+80+16)/17;
+		int delta=1;
+		for (i=0;i<(m+29)/30;i++)
+		{
+			delta=divsteps(delta,f[0],g[0],t);
+			update_de(d,e,t,P,pinv);
+			update_fg(f,g,t);
+		}
+
+/* now g=0 and f=+/-1, with d=f/x mod p */
+		normalize(d,f[n-1],P);
+		from30(x,d,base);
+	}
+}
@@ -0,0 +1,153 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/*
+ * Memory hard password based key derivation
+ *
+ * scrypt from RFC 7914, on PBKDF2-HMAC-SHA256 and the Salsa20/8 core.
+ * N (a power of 2) sets the CPU and memory cost, r the block size and p
+ * the number of independent lanes. Each lane needs 128*r*N bytes of
+ * memory, and lanes run at the same time need that much each.
+ */
+
+package org.apache.milagro.amcl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+public final class SCRYPT {
+
+	private static int rotl(int x,int n)
+	{
+		return (x<<n)|(x>>>(32-n));
+	}
+
+/* Salsa20/8 core, in place on the 16 words of B starting at o */
+	private static void salsa8(int[] B,int o)
+	{
+		int x0=B[o],x1=B[o+1],x2=B[o+2],x3=B[o+3],x4=B[o+4],x5=B[o+5],x6=B[o+6],x7=B[o+7];
+		int x8=B[o+8],x9=B[o+9],x10=B[o+10],x11=B[o+11],x12=B[o+12],x13=B[o+13],x14=B[o+14],x15=B[o+15];
+
+		for (int i=0;i<8;i+=2)
+		{
+/* columns */
+			x4^=rotl(x0+x12,7); x8^=rotl(x4+x0,9); x12^=rotl(x8+x4,13); x0^=rotl(x12+x8,18);
+			x9^=rotl(x5+x1,7); x13^=rotl(x9+x5,9); x1^=rotl(x13+x9,13); x5^=rotl(x1+x13,18);
+			x14^=rotl(x10+x6,7); x2^=rotl(x14+x10,9); x6^=rotl(x2+x14,13); x10^=rotl(x6+x2,18);
+			x3^=rotl(x15+x11,7); x7^=rotl(x3+x15,9); x11^=rotl(x7+x3,13); x15^=rotl(x11+x7,18);
+/* rows */
+			x1^=rotl(x0+x3,7); x2^=rotl(x1+x0,9); x3^=rotl(x2+x1,13); x0^=rotl(x3+x2,18);
+			x6^=rotl(x5+x4,7); x7^=rotl(x6+x5,9); x4^=rotl(x7+x6,13); x5^=rotl(x4+x7,18);
+			x11^=rotl(x10+x9,7); x8^=rotl(x11+x10,9); x9^=rotl(x8+x11,13); x10^=rotl(x9+x8,18);
+			x12^=rotl(x15+x14,7); x13^=rotl(x12+x15,9); x14^=rotl(x13+x12,13); x15^=rotl(x14+x13,18);
+		}
+		B[o]+=x0; B[o+1]+=x1; B[o+2]+=x2; B[o+3]+=x3; B[o+4]+=x4; B[o+5]+=x5; B[o+6]+=x6; B[o+7]+=x7;
+		B[o+8]+=x8; B[o+9]+=x9; B[o+10]+=x10; B[o+11]+=x11; B[o+12]+=x12; B[o+13]+=x13; B[o+14]+=x14; B[o+15]+=x15;
+	}
+
+/* scryptBlockMix of the 2r 16-word blocks of B into Y, with the even outputs first. X is 16 words of scratch */
+	private static void blockmix(int[] B,int[] Y,int[] X,int r)
+	{
+		int i,k,o;
+		for (k=0;k<16;k++) X[k]=B[(2*r-1)*16+k];
+		for (i=0;i<2*r;i++)
+		{
+			for (k=0;k<16;k++) X[k]^=B[16*i+k];
+			salsa8(X,0);
+			o=16*((i&1)*r+(i>>1));
+			for (k=0;k<16;k++) Y[o+k]=X[k];
+		}
+	}
+
+/* scryptROMix on the 128r bytes of B starting at off, in place */
+	private static void romix(byte[] B,int off,int r,int N)
+	{
+		int i,j,k,w=32*r;
+		int[] X=new int[w];
+		int[] Y=new int[w];
+		int[] T=new int[16];
+		int[] V=new int[N*w];
+
+		for (k=0;k<w;k++,off+=4)
+			X[k]=(B[off]&0xff)|((B[off+1]&0xff)<<8)|((B[off+2]&0xff)<<16)|(B[off+3]<<24);
+		off-=4*w;
+
+/* N is even, so X and Y can swap roles without copying */
+		for (i=0;i<N;i+=2)
+		{
+			for (k=0;k<w;k++) V[i*w+k]=X[k];
+			blockmix(X,Y,T,r);
+			for (k=0;k<w;k++) V[(i+1)*w+k]=Y[k];
+			blockmix(Y,X,T,r);
+		}
+		for (i=0;i<N;i+=2)
+		{
+			j=X[w-16]&(N-1);
+			for (k=0;k<w;k++) X[k]^=V[j*w+k];
+			blockmix(X,Y,T,r);
+			j=Y[w-16]&(N-1);
+			for (k=0;k<w;k++) Y[k]^=V[j*w+k];
+			blockmix(Y,X,T,r);
+		}
+
+		for (k=0;k<w;k++,off+=4)
+		{
+			B[off]=(byte)X[k]; B[off+1]=(byte)(X[k]>>>8); B[off+2]=(byte)(X[k]>>>16); B[off+3]=(byte)(X[k]>>>24);
+		}
+	}
+
+/* check the cost parameters - N a power of 2 greater than 1, and every array within int range */
+	private static boolean valid(int N,int r,int p)
+	{
+		if (N<2 || (N&(N-1))!=0 || r<1 || p<1) return false;
+		if ((long)r*p>=(1<<30)) return false;
+		return (long)N*32*r<Integer.MAX_VALUE && (long)128*r*p<Integer.MAX_VALUE;
+	}
+
+/* scrypt key of olen bytes from password Pass and salt Salt, with the p lanes run in turn. Returns null for bad parameters */
+	public static byte[] KDF(byte[] Pass,byte[] Salt,int N,int r,int p,int olen)
+	{
+		if (!valid(N,r,p)) return null;
+		byte[] B=HMAC.PBKDF2(HMAC.SHA256,Pass,Salt,1,128*r*p);
+		for (int i=0;i<p;i++)
+			romix(B,128*r*i,r,N);
+		return HMAC.PBKDF2(HMAC.SHA256,Pass,B,1,olen);
+	}
+
+/* scrypt with the p lanes run in parallel on ex, or on the common ForkJoinPool if ex is null */
+	public static byte[] KDF(byte[] Pass,byte[] Salt,final int N,final int r,int p,int olen,Executor ex)
+	{
+		if (!valid(N,r,p)) return null;
+		if (p<2) return KDF(Pass,Salt,N,r,p,olen);
+		if (ex==null) ex=ForkJoinPool.commonPool();
+
+		final byte[] B=HMAC.PBKDF2(HMAC.SHA256,Pass,Salt,1,128*r*p);
+		CompletableFuture<?>[] part=new CompletableFuture<?>[p];
+		for (int i=0;i<p;i++)
+		{
+			final int off=128*r*i;
+			part[i]=CompletableFuture.runAsync(new Runnable() {
+				public void run() { romix(B,off,r,N); }
+			},ex);
+		}
+		CompletableFuture.allOf(part).join();
+		return HMAC.PBKDF2(HMAC.SHA256,Pass,B,1,olen);
+	}
+}
@@ -21,6 +21,12 @@ under the License.
 
 package org.apache.milagro.amcl.SECP256K1;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.milagro.amcl.HMAC;
+
 public final class ECP {
 
 	public static final int WEIERSTRASS=0;
@@ -45,6 +51,8 @@ public final class ECP {
 
 	public static final int HASH_TYPE=32;
 	public static final int AESKEY=16;
+	public static final int MULN_PARALLEL_THRESHOLD=256;  /* multi-scalar multiplications with no more points than this run serially */
+	public static final boolean USE_GLV=true;  /* split scalars in two with the endomorphism (x,y)->(Cru.x,y) */
 
 	private FP x;
 	private FP y;
@@ -255,7 +263,7 @@ public final class ECP {
 
 		if (CURVETYPE==MONTGOMERY)
 		{
-			if (rhs.jacobi()!=1) inf();
+			if (rhs.qr()!=1) inf();
 			//if (rhs.jacobi()==1) INF=false;
 			//else inf();
 		}
@@ -268,15 +276,23 @@ public final class ECP {
 			//else inf();
 		}
 	}
+/* true if ny is a square root of a non-zero rhs - one sqrt checked by squaring is cheaper than a Legendre symbol and then the root */
+	private static boolean isroot(FP ny,FP rhs)
+	{
+		FP t=new FP(ny);
+		t.sqr();
+		return t.equals(rhs) && !rhs.iszilch();
+	}
+
 /* set (x,y) from BIG and a bit */
 	public ECP(BIG ix,int s) {
 		x=new FP(ix);
 		FP rhs=RHS(x);
 		y=new FP(0);
 		z=new FP(1);
-		if (rhs.jacobi()==1)
+		FP ny=rhs.sqrt();
+		if (isroot(ny,rhs))
 		{
-			FP ny=rhs.sqrt();
 			if (ny.redc().parity()!=s) ny.neg();
 			y.copy(ny);
 			//INF=false;
@@ -290,12 +306,16 @@ public final class ECP {
 		FP rhs=RHS(x);
 		y=new FP(0);
 		z=new FP(1);
-		if (rhs.jacobi()==1)
+		if (CURVETYPE==MONTGOMERY)
 		{
-			if (CURVETYPE!=MONTGOMERY) y.copy(rhs.sqrt());
-			//INF=false;
+			if (rhs.qr()!=1) inf();
+		}
+		else
+		{
+			FP ny=rhs.sqrt();
+			if (isroot(ny,rhs)) y.copy(ny);
+			else inf(); //INF=true;
 		}
-		else inf(); //INF=true;
 	}
 
 /* set to affine - from (x,y,z) to (x,y) */
@@ -311,6 +331,44 @@ public final class ECP {
 		}
 		z.copy(one);
 	}
+
+/* convert all of P[] to affine coordinates, with one inversion shared by the whole array */
+/* Montgomery's simultaneous inversion - 3(n-1) extra multiplications. The entries must be distinct objects */
+	public static void affineAll(ECP[] P)
+	{
+		int i,n=P.length;
+		if (n==0) return;
+		FP one=new FP(1);
+		FP[] acc=new FP[n];
+		boolean[] inf=new boolean[n];
+		FP t=new FP(one);
+		FP zi=new FP(0);
+
+		for (i=0;i<n;i++)
+		{
+			inf[i]=P[i].is_infinity();
+			if (!inf[i]) t.mul(P[i].z);
+			acc[i]=new FP(t);
+		}
+		t.inverse();
+
+/* t=1/(z0...zi) - peel off one z at a time from the top */
+		for (i=n-1;i>=0;i--)
+		{
+			if (inf[i]) continue;
+			if (i>0) zi.copy(acc[i-1]);
+			else zi.copy(one);
+			zi.mul(t);
+			t.mul(P[i].z);
+			P[i].x.mul(zi); P[i].x.reduce();
+			if (CURVETYPE!=MONTGOMERY)
+			{
+				P[i].y.mul(zi); P[i].y.reduce();
+			}
+			P[i].z.copy(one);
+		}
+	}
+
 /* extract x as a BIG */
 	public BIG getX()
 	{
@@ -367,7 +425,7 @@ public final class ECP {
 		if (compress)
 		{
 			b[0]=0x02;
-			if (y.redc().parity()==1) b[0]=0x03;
+			if (W.y.redc().parity()==1) b[0]=0x03;
 			return;
 		}
 
@@ -405,6 +463,15 @@ public final class ECP {
 		}
 		return new ECP();
 	}
+
+/* convert from byte array to point as fromBytes, but return the point at infinity unless it is in the prime order subgroup */
+/* use this for points received from outside, such as public keys and signatures */
+	public static ECP fromBytesChecked(byte[] b)
+	{
+		ECP P=fromBytes(b);
+		if (!P.inSubgroup()) P.inf();
+		return P;
+	}
 /* convert to hex string */
 	public String toString() {
 		ECP W=new ECP(this);	
@@ -853,7 +920,24 @@ public final class ECP {
 /* return e.this */
 
 	public ECP mul(BIG e) {
+		ECP P=mulProjective(e);
+		P.affine();
+		return P;
+	}
+
+/* return e.this, leaving the result in projective coordinates */
+
+	public ECP mulProjective(BIG e) {
 		if (e.iszilch() || is_infinity()) return new ECP();
+		if (USE_GLV && CURVETYPE==WEIERSTRASS)
+		{
+			BIG[] u=glv(e);
+			ECP[] P={new ECP(this)};
+			ECP[] Q={endo()};
+			glv_sign(u[0],P[0]);
+			glv_sign(u[1],Q[0]);
+			return jmul(P,new BIG[]{u[0]},Q,new BIG[]{u[1]});
+		}
 		ECP P=new ECP();
 		if (CURVETYPE==MONTGOMERY)
 		{
@@ -939,85 +1023,314 @@ public final class ECP {
 			}
 			P.sub(C); /* apply correction */
 		}
-		P.affine();
 		return P;
 	}
 
 /* Return e.this+f.Q */
 
 	public ECP mul2(BIG e,ECP Q,BIG f) {
-		BIG te=new BIG();
-		BIG tf=new BIG();
+		ECP S=mul2Projective(e,Q,f);
+		S.affine();
+		return S;
+	}
+
+/* Return e.this+f.Q, leaving the result in projective coordinates */
+
+	public ECP mul2Projective(BIG e,ECP Q,BIG f) {
+		if (USE_GLV)
+		{
+			BIG[] u=glv(e);
+			BIG[] v=glv(f);
+			ECP[] P={new ECP(this),new ECP(Q)};
+			ECP[] R={endo(),Q.endo()};
+			glv_sign(u[0],P[0]);
+			glv_sign(u[1],R[0]);
+			glv_sign(v[0],P[1]);
+			glv_sign(v[1],R[1]);
+			return jmul(P,new BIG[]{u[0],v[0]},R,new BIG[]{u[1],v[1]});
+		}
+		return jmul(new ECP[]{this},new BIG[]{e},new ECP[]{Q},new BIG[]{f});
+	}
+
+/* phi(this)=lambda.this, computed as (Cru.x,y) - also valid in projective coordinates */
+	private ECP endo()
+	{
+		ECP P=new ECP(this);
+		P.x.mul(new FP(new BIG(ROM.CURVE_Cru)));
+		return P;
+	}
+
+/* split e into u[0]+lambda.u[1] mod r, where u[0] and u[1] are either small or small negatives mod r */
+	public static BIG[] glv(BIG e)
+	{
+		int i,j;
+		BIG q=new BIG(ROM.CURVE_Order);
+		BIG k=new BIG(e);
+		BIG t;
+		BIG[] u=new BIG[2];
+		BIG[] v=new BIG[2];
+		k.mod(q);
+
+/* v[i] = round(k.GLV_G[i]/2^384) */
+		for (i=0;i<2;i++)
+		{
+			DBIG d=BIG.mul(k,new BIG(ROM.GLV_G[i]));
+			d.shr(383);
+			v[i]=new BIG(d);
+			v[i].inc(1); v[i].norm();
+			v[i].fshr(1);
+			u[i]=new BIG(0);
+		}
+		u[0].copy(k);
+		for (i=0;i<2;i++)
+			for (j=0;j<2;j++)
+			{
+				t=BIG.modmul(v[j],new BIG(ROM.GLV_B[j][i]),q);
+				u[i].add(q);
+				u[i].sub(t);
+				u[i].mod(q);
+			}
+		return u;
+	}
+
+/* if u is a small negative mod r, replace it by -u and P by -P - constant time */
+	private static void glv_sign(BIG u,ECP P)
+	{
+		BIG q=new BIG(ROM.CURVE_Order);
+		BIG t=BIG.modneg(u,q);
+		ECP N=new ECP(P);
+		int s=u.bit(q.nbits()-1);
+		t.norm();
+		N.neg();
+		u.cmove(t,s);
+		P.cmove(N,s);
+	}
+
+/* odd combinations of P and Q for joint signed 2-bit windows */
+	private static ECP[] jtable(ECP P,ECP Q)
+	{
+		ECP S=new ECP(Q);
+		ECP T=new ECP(P);
+		ECP[] W=new ECP[8];
+		S.dbl();
+		T.dbl();
+		W[1]=new ECP(P); W[1].sub(Q);
+		W[2]=new ECP(P); W[2].add(Q);
+		W[0]=new ECP(W[1]); W[0].sub(S);
+		W[3]=new ECP(W[2]); W[3].add(S);
+		W[5]=new ECP(W[1]); W[5].add(T);
+		W[6]=new ECP(W[2]); W[6].add(T);
+		W[4]=new ECP(W[5]); W[4].sub(S);
+		W[7]=new ECP(W[6]); W[7].add(S);
+		return W;
+	}
+
+/* if t is odd add 2, else add 1, and add 2P or P to the correction C */
+	private static void jodd(BIG t,ECP P,ECP C)
+	{
+		BIG mt=new BIG();
+		ECP T=new ECP(P);
+		int s,ns;
+		T.dbl();
+		s=t.parity();
+		t.inc(1); t.norm(); ns=t.parity(); mt.copy(t); mt.inc(1); mt.norm();
+		t.cmove(mt,s);
+		T.cmove(P,ns);
+		C.add(T);
+	}
+
+/* Return the sum of e[j].P[j]+f[j].Q[j] - joint signed 2-bit windows for each pair, sharing the doublings */
+	private static ECP jmul(ECP[] P,BIG[] e,ECP[] Q,BIG[] f)
+	{
+		int i,j,n=P.length,nb=0;
+		BIG[] te=new BIG[n];
+		BIG[] tf=new BIG[n];
+		ECP[][] W=new ECP[n][];
+		byte[][] w=new byte[n][1+(BIG.NLEN*BIG.BASEBITS+1)/2];
 		BIG mt=new BIG();
 		ECP S=new ECP();
 		ECP T=new ECP();
 		ECP C=new ECP();
-		ECP[] W=new ECP[8];
-		byte[] w=new byte[1+(BIG.NLEN*BIG.BASEBITS+1)/2];		
-		int i,s,ns,nb;
 		byte a,b;
 
-		//affine();
-		//Q.affine();
-
-		te.copy(e);
-		tf.copy(f);
+		for (j=0;j<n;j++)
+		{
+			W[j]=jtable(P[j],Q[j]);
+			te[j]=new BIG(e[j]);
+			tf[j]=new BIG(f[j]);
+			jodd(te[j],P[j],C);
+			jodd(tf[j],Q[j],C);
+			mt.copy(te[j]); mt.add(tf[j]); mt.norm();
+			nb=Math.max(nb,1+(mt.nbits()+1)/2);
+		}
 
-// precompute table 
-		W[1]=new ECP(); W[1].copy(this); W[1].sub(Q);
-		W[2]=new ECP(); W[2].copy(this); W[2].add(Q);
-		S.copy(Q); S.dbl();
-		W[0]=new ECP(); W[0].copy(W[1]); W[0].sub(S);
-		W[3]=new ECP(); W[3].copy(W[2]); W[3].add(S);
-		T.copy(this); T.dbl();
-		W[5]=new ECP(); W[5].copy(W[1]); W[5].add(T);
-		W[6]=new ECP(); W[6].copy(W[2]); W[6].add(T);
-		W[4]=new ECP(); W[4].copy(W[5]); W[4].sub(S);
-		W[7]=new ECP(); W[7].copy(W[6]); W[7].add(S);
-
-// if multiplier is odd, add 2, else add 1 to multiplier, and add 2P or P to correction 
-
-		s=te.parity();
-		te.inc(1); te.norm(); ns=te.parity(); mt.copy(te); mt.inc(1); mt.norm();
-		te.cmove(mt,s);
-		T.cmove(this,ns);
-		C.copy(T);
-
-		s=tf.parity();
-		tf.inc(1); tf.norm(); ns=tf.parity(); mt.copy(tf); mt.inc(1); mt.norm();
-		tf.cmove(mt,s);
-		S.cmove(Q,ns);
-		C.add(S);
-
-		mt.copy(te); mt.add(tf); mt.norm();
-		nb=1+(mt.nbits()+1)/2;
-
-// convert exponent to signed 2-bit window 
-		for (i=0;i<nb;i++)
+// convert exponents to signed 2-bit windows 
+		for (j=0;j<n;j++)
 		{
-			a=(byte)(te.lastbits(3)-4);
-			te.dec(a); te.norm(); 
-			te.fshr(2);
-			b=(byte)(tf.lastbits(3)-4);
-			tf.dec(b); tf.norm(); 
-			tf.fshr(2);
-			w[i]=(byte)(4*a+b);
+			for (i=0;i<nb;i++)
+			{
+				a=(byte)(te[j].lastbits(3)-4);
+				te[j].dec(a); te[j].norm(); 
+				te[j].fshr(2);
+				b=(byte)(tf[j].lastbits(3)-4);
+				tf[j].dec(b); tf[j].norm(); 
+				tf[j].fshr(2);
+				w[j][i]=(byte)(4*a+b);
+			}
+			w[j][nb]=(byte)(4*te[j].lastbits(3)+tf[j].lastbits(3));
+			S.add(W[j][(w[j][nb]-1)/2]);
 		}
-		w[nb]=(byte)(4*te.lastbits(3)+tf.lastbits(3));
-		S.copy(W[(w[nb]-1)/2]);  
 
 		for (i=nb-1;i>=0;i--)
 		{
-			T.select(W,w[i]);
 			S.dbl();
 			S.dbl();
-			S.add(T);
+			for (j=0;j<n;j++)
+			{
+				T.select(W[j],w[j][i]);
+				S.add(T);
+			}
 		}
 		S.sub(C); /* apply correction */
-		S.affine();
 		return S;
 	}
 
+/* window width of the variable time multiplications */
+	private static final int VTW=5;
+
+/* width-w NAF of e, least significant digit first - digits are zero or odd and less than 2^(w-1) in size, and any w in a row hold at most one non-zero */
+	private static byte[] wnaf(BIG e,int w)
+	{
+		BIG t=new BIG(e);
+		t.norm();
+		byte[] naf=new byte[t.nbits()+1];
+		int m=1<<w;
+		for (int i=0;!t.iszilch();i++)
+		{
+			if (t.parity()==1)
+			{
+				int d=t.lastbits(w);
+				if (d>=m/2) d-=m;
+				if (d>0) t.dec(d);
+				else t.inc(-d);
+				t.norm();
+				naf[i]=(byte)d;
+			}
+			t.fshr(1);
+		}
+		return naf;
+	}
+
+/* odd multiples P,3P,5P,..,(2^(w-1)-1).P for a width-w NAF */
+	private static ECP[] wnaf_table(ECP P,int w)
+	{
+		ECP[] T=new ECP[1<<(w-2)];
+		ECP P2=new ECP(P);
+		P2.dbl();
+		T[0]=new ECP(P);
+		for (int i=1;i<T.length;i++)
+		{
+			T[i]=new ECP(T[i-1]);
+			T[i].add(P2);
+		}
+		return T;
+	}
+
+/* P+=d.T for a NAF digit d */
+	private static void wnaf_add(ECP P,ECP[] T,int d)
+	{
+		if (d>0) P.add(T[d/2]);
+		if (d<0) P.sub(T[(-d)/2]);
+	}
+
+/* phi of each point of a table, negated if neg */
+	private static ECP[] endo_table(ECP[] T,boolean neg)
+	{
+		ECP[] E=new ECP[T.length];
+		for (int i=0;i<T.length;i++)
+		{
+			E[i]=T[i].endo();
+			if (neg) E[i].neg();
+		}
+		return E;
+	}
+
+/* GLV halves of a public e into u[k],u[k+1], made positive, and NAF tables for this and phi(this) into T[k],T[k+1] */
+	private void glv_tables(BIG e,ECP[][] T,BIG[] u,int k)
+	{
+		BIG q=new BIG(ROM.CURVE_Order);
+		BIG[] g=glv(e);
+		boolean[] neg=new boolean[2];
+		for (int i=0;i<2;i++)
+		{
+			BIG t=BIG.modneg(g[i],q);
+			t.norm();
+			neg[i]=(t.nbits()<g[i].nbits());
+			u[k+i]=neg[i]?t:g[i];
+		}
+		ECP P=new ECP(this);
+		if (neg[0]) P.neg();
+		T[k]=wnaf_table(P,VTW);
+		T[k+1]=endo_table(T[k],neg[0]!=neg[1]);
+	}
+
+/* Return the sum of e[j] times the point tabulated in T[j] - interleaved NAFs, sharing the doublings */
+	private static ECP wnaf_mul(ECP[][] T,BIG[] e)
+	{
+		int i,j,n=T.length,m=0;
+		byte[][] naf=new byte[n][];
+		ECP P=new ECP();
+		for (j=0;j<n;j++)
+		{
+			naf[j]=wnaf(e[j],VTW);
+			i=naf[j].length-1;
+			while (i>=0 && naf[j][i]==0) i--;
+			m=Math.max(m,i+1);
+		}
+		for (i=m-1;i>=0;i--)
+		{
+			for (j=0;j<n;j++)
+				if (i<naf[j].length) wnaf_add(P,T[j],naf[j][i]);
+			if (i>0) P.dbl();
+		}
+		return P;
+	}
+
+/* Return e.this for a public e - width-5 NAF, skipping the zero digits */
+/* NOT constant time - use only when e is public, as when verifying signatures */
+	public ECP mulVartime(BIG e) {
+		if (CURVETYPE==MONTGOMERY) return mul(e);
+		ECP P;
+		if (USE_GLV)
+		{
+			ECP[][] T=new ECP[2][];
+			BIG[] u=new BIG[2];
+			glv_tables(e,T,u,0);
+			P=wnaf_mul(T,u);
+		}
+		else P=wnaf_mul(new ECP[][]{wnaf_table(this,VTW)},new BIG[]{e});
+		P.affine();
+		return P;
+	}
+
+/* Return e.this+f.Q for public e and f - interleaved width-5 NAFs, four ways after the GLV split */
+/* NOT constant time - use only when e and f are public, as when verifying signatures */
+	public ECP mul2Vartime(BIG e,ECP Q,BIG f) {
+		if (CURVETYPE==MONTGOMERY) return mul2(e,Q,f);
+		ECP P;
+		if (USE_GLV)
+		{
+			ECP[][] T=new ECP[4][];
+			BIG[] u=new BIG[4];
+			glv_tables(e,T,u,0);
+			Q.glv_tables(f,T,u,2);
+			P=wnaf_mul(T,u);
+		}
+		else P=wnaf_mul(new ECP[][]{wnaf_table(this,VTW),wnaf_table(Q,VTW)},new BIG[]{e,f});
+		P.affine();
+		return P;
+	}
+
 // multiply a point by the curves cofactor
 	public void cfp()
 	{
@@ -1039,6 +1352,14 @@ public final class ECP {
 		copy(mul(c));
 	}
 
+/* test for membership of the prime order subgroup - every point on a curve of cofactor 1 is in it */
+	public boolean inSubgroup()
+	{
+		if (ROM.CURVE_Cof_I==1 || is_infinity()) return true;
+		BIG r=new BIG(ROM.CURVE_Order);
+		return mul(r).is_infinity();
+	}
+
 /* Map byte string to curve point */
 	public static ECP mapit(byte[] h)
 	{
@@ -1064,6 +1385,379 @@ public final class ECP {
 		return P;
 	}
 
+/* Hash to curve - RFC 9380, with expand_message_xmd and the simplified SWU map */
+/* Unlike mapit every step takes a fixed number of field operations, so the time taken does not depend on the input */
+
+/* sqrt(-Z), a constant of sqrt_ratio */
+	private static final FP HTC_C2=htc_c2();
+
+/* small signed integer as a field element */
+	static FP htc_int(int a)
+	{
+		FP t;
+		if (a<0)
+		{
+			t=new FP(-a);
+			t.neg(); t.norm();
+		}
+		else t=new FP(a);
+		return t;
+	}
+
+	private static FP htc_c2()
+	{
+		FP t=htc_int(-ROM.HTC_Z);
+		return t.sqrt();
+	}
+
+/* reduce the L big-endian bytes of h at offset off mod p */
+	static FP htc_fp(byte[] h,int off,int L)
+	{
+		DBIG d=new DBIG(0);
+		for (int i=0;i<L;i++)
+		{
+			d.shl(8); d.w[0]+=(h[off+i]&0xff);
+		}
+		return new FP(d.mod(new BIG(ROM.Modulus)));
+	}
+
+/* bytes of expanded message per field element, ceil((ceil(log2(p))+k)/8) for k=4*HASH_TYPE bits of security */
+	static int htc_len()
+	{
+		return (FP.MODBITS+4*HASH_TYPE+7)/8;
+	}
+
+/* hash_to_field of RFC 9380 - hash message M with domain separation tag DST to count field elements */
+	public static FP[] hashToField(byte[] DST,byte[] M,int count)
+	{
+		int L=htc_len();
+		byte[] OKM=HMAC.XMD_Expand(HASH_TYPE,L*count,DST,M);
+		FP[] u=new FP[count];
+		for (int i=0;i<count;i++)
+			u[i]=htc_fp(OKM,i*L,L);
+		return u;
+	}
+
+/* sqrt_ratio of RFC 9380 for p=3 mod 4 - set y=sqrt(u/v) and return 1 if u/v is square, else set y=sqrt(Z.u/v) and return 0 */
+	private static int sqrt_ratio(FP u,FP v,FP y)
+	{
+		BIG e=new BIG(ROM.Modulus);
+		e.dec(3); e.norm(); e.shr(2);
+
+		FP tv1=new FP(v); tv1.sqr();
+		FP tv2=new FP(u); tv2.mul(v);
+		tv1.mul(tv2);                         // u.v^3
+		FP y1=tv1.pow(e); y1.mul(tv2);        // u.v.(u.v^3)^((p-3)/4)
+		FP y2=new FP(y1); y2.mul(HTC_C2);
+		FP tv3=new FP(y1); tv3.sqr(); tv3.mul(v);
+
+		int qr=0;
+		if (tv3.equals(u)) qr=1;
+		y2.cmove(y1,qr);
+		y.copy(y2);
+		return qr;
+	}
+
+/* simplified SWU map of u to a point (xn/xd,y) on y^2=x^3+A.x+B, with A.B!=0 - RFC 9380 F.2 */
+/* x is left as a fraction, so the map needs no inversion, only the one exponentiation in sqrt_ratio */
+	private static void sswu(FP u,FP A,FP B,FP xn,FP xd,FP y)
+	{
+		FP Z=htc_int(ROM.HTC_Z);
+		FP tv1=new FP(u); tv1.sqr(); tv1.mul(Z);                     // Z.u^2
+		FP tv2=new FP(tv1); tv2.sqr(); tv2.add(tv1); tv2.norm();     // Z^2.u^4+Z.u^2
+		FP tv3=new FP(tv2); tv3.add(new FP(1)); tv3.norm();
+		tv3.mul(B);                                                 // x1 numerator, B.(tv2+1)
+
+		int d=1;
+		if (tv2.iszilch()) d=0;
+		FP tv4=new FP(Z);
+		tv2.neg(); tv2.norm();
+		tv4.cmove(tv2,d);
+		tv4.mul(A);                                                 // x denominator, A.(Z or -tv2)
+
+		FP tv6=new FP(tv4); tv6.sqr();
+		FP tv5=new FP(tv6); tv5.mul(A);
+		tv2.copy(tv3); tv2.sqr(); tv2.add(tv5); tv2.norm();
+		tv2.mul(tv3);
+		tv6.mul(tv4);                                               // xd^3
+		tv5.copy(tv6); tv5.mul(B);
+		tv2.add(tv5); tv2.norm();                                   // g(x1).xd^3
+
+		FP x=new FP(tv1); x.mul(tv3);                               // x2 numerator, Z.u^2.x1
+		FP y1=new FP(0);
+		int qr=sqrt_ratio(tv2,tv6,y1);
+		FP y2=new FP(tv1); y2.mul(u); y2.mul(y1);                    // sqrt(g(x2))=Z.u^3.sqrt(Z.g(x1))
+
+		x.cmove(tv3,qr);
+		y2.cmove(y1,qr);
+		FP ny=new FP(y2); ny.neg(); ny.norm();
+		y2.cmove(ny,u.sign()^y2.sign());
+
+		xn.copy(x);
+		xd.copy(tv4);
+		y.copy(y2);
+	}
+
+/* evaluate K[0]+K[1].x+..+K[n].x^n at x=xn/xd, scaled by xd^n so that no division is needed. xdp[i]=xd^i */
+	private static FP iso_eval(long[][] K,FP xn,FP[] xdp)
+	{
+		int n=K.length-1;
+		FP r=new FP(new BIG(K[n]));
+		for (int i=n-1;i>=0;i--)
+		{
+			r.mul(xn);
+			FP t=new FP(new BIG(K[i]));
+			t.mul(xdp[n-i]);
+			r.add(t); r.norm();
+		}
+		return r;
+	}
+
+/* map_to_curve of RFC 9380 - map field element u to a point, without clearing the cofactor */
+/* simplified SWU to the isogenous curve y^2=x^3+Ad.x+Bd, then the isogeny map back to this curve */
+	public static ECP map2point(FP u)
+	{
+		FP xn=new FP(0);
+		FP xd=new FP(0);
+		FP y=new FP(0);
+		sswu(u,new FP(new BIG(ROM.HTC_Ad)),new FP(new BIG(ROM.HTC_Bd)),xn,xd,y);
+
+		int n=ROM.HTC_YN.length;
+		FP[] xdp=new FP[n];
+		xdp[0]=new FP(1);
+		for (int i=1;i<n;i++)
+		{
+			xdp[i]=new FP(xdp[i-1]);
+			xdp[i].mul(xd);
+		}
+/* x=xnum/xden, y=y.ynum/yden, where xden has one degree less than xnum and yden the same degree as ynum */
+		FP nx=iso_eval(ROM.HTC_XN,xn,xdp);
+		FP dx=iso_eval(ROM.HTC_XD,xn,xdp);
+		FP ny=iso_eval(ROM.HTC_YN,xn,xdp);
+		FP dy=iso_eval(ROM.HTC_YD,xn,xdp);
+		dx.mul(xd);
+
+		ECP P=new ECP();
+		P.x.copy(nx); P.x.mul(dy);
+		P.y.copy(y); P.y.mul(ny); P.y.mul(dx);
+		P.z.copy(dx); P.z.mul(dy);
+		if (P.z.iszilch()) P.inf();  // exceptional case, the isogeny kernel
+		return P;
+	}
+
+/* hash_to_curve of RFC 9380 - hash message M with domain separation tag DST to a point, usable as a random oracle */
+	public static ECP hashToCurve(byte[] DST,byte[] M)
+	{
+		FP[] u=hashToField(DST,M,2);
+		ECP P=map2point(u[0]);
+		P.add(map2point(u[1]));
+		P.cfp();
+		P.affine();
+		return P;
+	}
+
+/* encode_to_curve of RFC 9380 - cheaper nonuniform encoding using a single map */
+	public static ECP encodeToCurve(byte[] DST,byte[] M)
+	{
+		FP[] u=hashToField(DST,M,1);
+		ECP P=map2point(u[0]);
+		P.cfp();
+		P.affine();
+		return P;
+	}
+
+/* Multi-scalar multiplication - return k[0].P[0]+k[1].P[1]+...+k[n-1].P[n-1] */
+/* Pippenger's bucket method. NOT constant time - use only with public scalars */
+/* Returns null if P and k differ in length, or on a Montgomery curve for more than one point */
+	public static ECP muln(ECP[] P,BIG[] k)
+	{
+		int i,j,w,d,n=P.length;
+		if (k.length!=n) return null;
+/* no general point addition on Montgomery curves, so only a single product can be formed */
+		if (CURVETYPE==MONTGOMERY)
+		{
+			if (n==1) return P[0].mul(k[0]);
+			if (n>1) return null;
+		}
+		ECP R=new ECP();
+		if (n==0) return R;
+
+/* window size grows with the number of points - each window costs n additions and 2^(c+1) to sum the buckets */
+		int c=2;
+		while (c<16 && (1<<(c+c/3+2))<=n) c++;
+		int nb=0;
+		for (i=0;i<n;i++)
+		{
+			j=k[i].nbits();
+			if (j>nb) nb=j;
+		}
+		int nw=(nb+c-1)/c;
+
+/* split scalars into c-bit digits */
+		int[][] dig=new int[n][nw];
+		BIG t=new BIG(0);
+		for (i=0;i<n;i++)
+		{
+			t.copy(k[i]); t.norm();
+			for (w=0;w<nw;w++)
+			{
+				dig[i][w]=t.lastbits(c);
+				t.fshr(c);
+			}
+		}
+
+		int m=(1<<c)-1;
+		ECP[] B=new ECP[m];
+		boolean[] used=new boolean[m];
+		for (j=0;j<m;j++) B[j]=new ECP();
+		ECP S=new ECP();
+		ECP W=new ECP();
+
+		for (w=nw-1;w>=0;w--)
+		{
+			for (j=0;j<c;j++) R.dbl();
+			for (j=0;j<m;j++) used[j]=false;
+
+/* drop each point into the bucket of its digit */
+			for (i=0;i<n;i++)
+			{
+				d=dig[i][w];
+				if (d==0) continue;
+				if (used[d-1]) B[d-1].add(P[i]);
+				else
+				{
+					B[d-1].copy(P[i]);
+					used[d-1]=true;
+				}
+			}
+
+/* sum of j.B[j-1] by running sums, from the top bucket down */
+			S.inf(); W.inf();
+			boolean start=false;
+			for (j=m-1;j>=0;j--)
+			{
+				if (used[j])
+				{
+					S.add(B[j]);
+					start=true;
+				}
+				if (start) W.add(S);
+			}
+			R.add(W);
+		}
+		R.affine();
+		return R;
+	}
+
+/* muln with the points partitioned across the threads of ex, or of the common ForkJoinPool if ex is null */
+	public static ECP muln(ECP[] P,BIG[] k,Executor ex)
+	{
+		int n=P.length;
+		if (k.length!=n) return null;
+		if (CURVETYPE==MONTGOMERY) return muln(P,k);
+		if (ex==null) ex=ForkJoinPool.commonPool();
+		int t=1;
+		if (n>MULN_PARALLEL_THRESHOLD)
+		{
+			if (ex instanceof ForkJoinPool)
+				t=((ForkJoinPool)ex).getParallelism();
+			else
+				t=Runtime.getRuntime().availableProcessors();
+			t=Math.max(1,Math.min(t,2*n/MULN_PARALLEL_THRESHOLD));
+		}
+		if (t<2) return muln(P,k);
+
+		final ECP[] R=new ECP[t];
+		CompletableFuture<?>[] part=new CompletableFuture<?>[t];
+		for (int i=0;i<t;i++)
+		{
+			final int j=i;
+			final ECP[] Pi=Arrays.copyOfRange(P,i*n/t,(i+1)*n/t);
+			final BIG[] ki=Arrays.copyOfRange(k,i*n/t,(i+1)*n/t);
+			part[i]=CompletableFuture.runAsync(new Runnable() {
+				public void run() { R[j]=muln(Pi,ki); }
+			},ex);
+		}
+		CompletableFuture.allOf(part).join();
+		for (int i=1;i<t;i++)
+			R[0].add(R[i]);
+		R[0].affine();
+		return R[0];
+	}
+
+/* Fixed base comb for the generator - W[i][j]=(2j+1).16^i.G for each signed 4-bit window i */
+/* Built on first use. e.G then costs one constant time select and one addition per window, and no doublings */
+	private static final class GTable {
+		static final ECP[][] W=gtable();
+	}
+
+	private static ECP[][] gtable()
+	{
+		int i,j;
+		BIG r=new BIG(ROM.CURVE_Order);
+		int nb=1+(r.nbits()+3)/4;
+		ECP[][] W=new ECP[nb+1][8];
+		ECP B=generator();
+		ECP D=new ECP();
+
+		for (i=0;i<=nb;i++)
+		{
+			D.copy(B); D.dbl();
+			W[i][0]=new ECP(); W[i][0].copy(B);
+			for (j=1;j<8;j++)
+			{
+				W[i][j]=new ECP();
+				W[i][j].copy(W[i][j-1]);
+				W[i][j].add(D);
+			}
+			B.dbl(); B.dbl(); B.dbl(); B.dbl();
+		}
+		return W;
+	}
+
+/* return e.G for the fixed generator G, in constant time */
+	public static ECP mulGenerator(BIG e)
+	{
+		if (CURVETYPE==MONTGOMERY) return generator().mul(e);
+		int i,s,ns;
+		ECP[][] W=GTable.W;
+		int nb=W.length-1;
+		BIG t=new BIG(e);
+		BIG mt=new BIG(0);
+		ECP P=new ECP();
+		ECP Q=new ECP();
+		ECP C=new ECP();
+		byte[] w=new byte[nb+1];
+
+		t.mod(new BIG(ROM.CURVE_Order));
+
+/* make exponent odd - add 2G if even, G if odd */
+		s=t.parity();
+		t.inc(1); t.norm(); ns=t.parity(); mt.copy(t); mt.inc(1); mt.norm();
+		t.cmove(mt,s);
+		C.copy(W[0][0]); C.dbl();
+		C.cmove(W[0][0],ns);
+
+/* convert exponent to signed 4-bit window - the top digit is always 1 as t<2r */
+		for (i=0;i<nb;i++)
+		{
+			w[i]=(byte)(t.lastbits(5)-16);
+			t.dec(w[i]); t.norm();
+			t.fshr(4);
+		}
+		w[nb]=(byte)t.lastbits(5);
+
+		P.copy(W[nb][(w[nb]-1)/2]);
+		for (i=0;i<nb;i++)
+		{
+			Q.select(W[i],w[i]);
+			P.add(Q);
+		}
+		P.sub(C);
+		P.affine();
+		return P;
+	}
+
 	public static ECP generator()
 	{
 		ECP G;
@@ -28,10 +28,11 @@ public final class FP {
 	public static final int PSEUDO_MERSENNE=1;
 	public static final int MONTGOMERY_FRIENDLY=2;
 	public static final int GENERALISED_MERSENNE=3;
+	public static final int SPARSE=4;  /* Montgomery, with few non-zero signed bits in the modulus */
 
 	public static final int MODBITS=256; /* Number of bits in Modulus */
 	public static final int MOD8=7;  /* Modulus mod 8 */
-	public static final int MODTYPE=NOT_SPECIAL;
+	public static final int MODTYPE=SPARSE;
 
 	public static final int FEXCESS =((int)1<<24);  // BASEBITS*NLEN-MODBITS or 2^30 max!
 	public static final long OMASK=(long)(-1)<<(MODBITS%BIG.BASEBITS);
@@ -110,6 +111,29 @@ public final class FP {
 			b.norm();
 			return b;		
 		}
+		if (MODTYPE==SPARSE)
+		{ // Montgomery reduction, with m.p added as shifted copies of m - p=2^256-c, where c=2^32+977 is split across m=mh.2^28+ml to keep the products in range
+			BIG b;
+			long m,lo,hi;
+			int i;
+			for (i=0;i<BIG.NLEN;i++)
+			{
+				m=(ROM.MConst*d.w[i])&BIG.BMASK;
+				lo=(m&0xFFFFFFFL)*0x1000003D1L;
+				hi=(m>>28)*0x1000003D1L;
+				d.w[i]-=(lo&BIG.BMASK)+((hi<<28)&BIG.BMASK);
+				d.w[i+1]-=(lo>>56)+(hi>>28);
+				d.w[i+4]+=(m<<32)&BIG.BMASK;
+				d.w[i+5]+=m>>24;
+				d.w[i+1]+=d.w[i]>>BIG.BASEBITS;
+			}
+
+			b=new BIG(0);
+			for (i=0;i<BIG.NLEN;i++ )
+				b.w[i]=d.w[BIG.NLEN+i];
+			b.norm();
+			return b;
+		}
 		if (MODTYPE==NOT_SPECIAL)
 		{
 			return BIG.monty(new BIG(ROM.Modulus),ROM.MConst,d);
@@ -379,19 +403,14 @@ public final class FP {
 		}
 	}
 
-/* this=1/this mod Modulus */
+/* this=1/this mod Modulus, in constant time */
 	public void inverse()
 	{
-/*
+		reduce();
 		BIG r=redc();
-		r.invmodp(p);
+		r.invmodp(new BIG(ROM.Modulus));
 		x.copy(r);
 		nres();
-*/
-		BIG m2=new BIG(ROM.Modulus);
-		m2.dec(2); m2.norm();
-		copy(pow(m2));
-
 	}
 
 /* return TRUE if this==a */
@@ -468,16 +487,41 @@ public final class FP {
 		return r;
 	} */
 
+/* this=this^(2^n), squaring in place */
+	private void nsqr(int n)
+	{
+		for (int i=0;i<n;i++) sqr();
+	}
+
+/* return this^((p-3)/4) using a fixed addition chain - 253 squarings and 14 multiplications */
+	private FP fpow()
+	{
+		FP x2=new FP(this); x2.sqr(); x2.mul(this);
+		FP x3=new FP(x2); x3.sqr(); x3.mul(this);
+		FP x6=new FP(x3); x6.nsqr(3); x6.mul(x3);
+		FP x9=new FP(x6); x9.nsqr(3); x9.mul(x3);
+		FP x11=new FP(x9); x11.nsqr(2); x11.mul(x2);
+		FP x22=new FP(x11); x22.nsqr(11); x22.mul(x11);
+		FP x44=new FP(x22); x44.nsqr(22); x44.mul(x22);
+		FP x88=new FP(x44); x88.nsqr(44); x88.mul(x44);
+		FP r=new FP(x88); r.nsqr(88); r.mul(x88);
+		r.nsqr(44); r.mul(x44);
+		r.nsqr(3); r.mul(x3);
+		r.nsqr(23); r.mul(x22);
+		r.nsqr(5); r.mul(this);
+		r.nsqr(3); r.mul(x2);
+		r.reduce();
+		return r;
+	}
+
 /* return sqrt(this) mod Modulus */
 	public FP sqrt()
 	{
 		reduce();
-		BIG b=new BIG(ROM.Modulus);
 		if (MOD8==5)
 		{
-			b.dec(5); b.norm(); b.shr(3);
 			FP i=new FP(this); i.x.shl(1);
-			FP v=i.pow(b);
+			FP v=i.fpow();
 			i.mul(v); i.mul(v);
 			i.x.dec(1);
 			FP r=new FP(this);
@@ -487,8 +531,10 @@ public final class FP {
 		}
 		else
 		{
-			b.inc(1); b.norm(); b.shr(2);
-			return pow(b);
+			FP r=fpow();
+			r.mul(this);
+			r.reduce();
+			return r;
 		}
 	}
 
@@ -498,6 +544,34 @@ public final class FP {
 		BIG w=redc();
 		return w.jacobi(new BIG(ROM.Modulus));
 	}
+
+/* return 1 if this is a non-zero quadratic residue, else 0 - Euler's criterion, without computing the root */
+	public int qr()
+	{
+		FP r=new FP(this);
+		r.reduce();
+		FP t=r.fpow();
+		if (MOD8==5)
+		{ /* this^((p-1)/2)=t^4.this^2 */
+			t.sqr(); t.sqr();
+			t.mul(r); t.mul(r);
+		}
+		else
+		{ /* this^((p-1)/2)=t^2.this */
+			t.sqr();
+			t.mul(r);
+		}
+		if (t.equals(new FP(1))) return 1;
+		return 0;
+	}
+
+/* return sgn0(this) as defined in RFC 9380 - the parity of the fully reduced value */
+	public int sign()
+	{
+		FP t=new FP(this);
+		t.reduce();
+		return t.redc().parity();
+	}
 /*
 	public static void main(String[] args) {
 		BIG m=new BIG(ROM.Modulus);
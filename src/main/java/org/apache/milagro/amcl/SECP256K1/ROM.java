@@ -39,5 +39,19 @@ public static final long[] CURVE_Order= {0xD25E8CD0364141L,0xDCE6AF48A03BBFL,0xF
 public static final long[] CURVE_Gx= {0xF2815B16F81798L,0xFCDB2DCE28D959L,0x95CE870B07029BL,0xF9DCBBAC55A062L,0x79BE667EL};
 public static final long[] CURVE_Gy= {0x47D08FFB10D4B8L,0xB448A68554199CL,0xFC0E1108A8FD17L,0x26A3C4655DA4FBL,0x483ADA77L};
 
+// GLV endomorphism (Cru.x,y)=lambda.(x,y) - rounded 2^384.b2/r and -2^384.b1/r, and the short basis (a1,b1),(a2,b2) of the lattice a+b.lambda=0 mod r
+public static final long[] CURVE_Cru= {0x396C28719501EEL,0x497512F58995C1L,0x9EAC3434E99CF0L,0x657C07106E6447L,0x7AE96A2BL};
+public static final long[][] GLV_G= {{0x93209A45DBB031L,0x8A1471E8CA7FE8L,0xE49284EB153DAAL,0xA7D46BCDE86C90L,0x3086D221L},{0x71B4AE8AC47F71L,0x8AC9DF506C615L,0xA90ABFE4C42212L,0x10E88286F547FL,0xE4437ED6L}};
+public static final long[][][] GLV_B= {{{0x6C90E49284EB15L,0xD221A7D46BCDE8L,0x3086L,0x0L,0x0L},{0x7DDEE3C5765C7EL,0x5E10AE3A181350L,0xFFFFFFFFFDD66BL,0xFFFFFFFFFFFFFFL,0xFFFFFFFFL}},{{0xC1108D9D44CFD8L,0x50F7A8E2F3F657L,0x114CAL,0x0L,0x0L},{0x6C90E49284EB15L,0xD221A7D46BCDE8L,0x3086L,0x0L,0x0L}}};
+
+// Hash to curve - simplified SWU to the 3-isogenous curve y^2=x^3+Ad.x+Bd and its isogeny map, RFC 9380
+public static final int HTC_Z= -11;
+public static final long[] HTC_Ad= {0x5447C01A444533L,0xD363CB6F0E5D40L,0x58F0F5D272E953L,0xDD661ADCA08A55L,0x3F8731ABL};
+public static final long[] HTC_Bd= {0x6EBL,0x0L,0x0L,0x0L,0x0L};
+public static final long[][] HTC_XN= {{0x38E38DAAAAA8C7L,0x8E38E38E38E38EL,0xE38E38E38E38E3L,0x38E38E38E38E38L,0x8E38E38EL},{0xFF1044F17C6581L,0xD2FC0BF63B92DFL,0xCEA7FD44C5D595L,0xBC321D5B9F315L,0x7D3D4C8L},{0xCBD0B53D9DD262L,0x6144037C40314EL,0xDECA25CAECE450L,0x23F234E6E2A413L,0x534C328DL},{0x38E38DAAAAA88CL,0x8E38E38E38E38EL,0xE38E38E38E38E3L,0x38E38E38E38E38L,0x8E38E38EL}};
+public static final long[][] HTC_XD= {{0xE6B745781EB49BL,0x409542F8487D9FL,0xCBB7B640DD86CDL,0x3D94918A9CA34CL,0xD3577119L},{0x2A56612A8C6D14L,0x6B641F5E41BBC5L,0xD51B54225406D3L,0x4383DC1DF7C4B2L,0xEDADC6F6L},{0x1L,0x0L,0x0L,0x0L,0x0L}};
+public static final long[][] HTC_YN= {{0x2F684B8E38E23CL,0x4BDA12F684BDA1L,0x12F684BDA12F68L,0x84BDA12F684BDAL,0x4BDA12F6L},{0xFC90FC201D71A3L,0xB046D686DA6FDFL,0x4B12A0A6D5647AL,0xD5CB7C0FA9D0A5L,0xC75E0C32L},{0x65E85A9ECEE931L,0x30A201BE2018A7L,0xEF6512E5767228L,0x91F91A73715209L,0x29A61946L},{0xBDA12F38E38D84L,0x2F684BDA12F684L,0x4BDA12F684BDA1L,0x12F684BDA12F68L,0x2F684BDAL}};
+public static final long[][] HTC_YD= {{0xFFFFFEFFFFF93BL,0xFFFFFFFFFFFFFFL,0xFFFFFFFFFFFFFFL,0xFFFFFFFFFFFFFFL,0xFFFFFFFFL},{0xB425D2685C2573L,0xC1BFC8E8D978DFL,0x632722C2989467L,0xB8BDB49FD5E9E6L,0x7A06534BL},{0xBF8192BFD2A76FL,0x21162F0D6299A7L,0x3FA8FE337E0A3DL,0x6545CA2CF3A70CL,0x6484AA71L},{0x1L,0x0L,0x0L,0x0L,0x0L}};
+
 }
 
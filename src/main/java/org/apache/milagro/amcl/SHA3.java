@@ -32,7 +32,7 @@ package org.apache.milagro.amcl;
 public class SHA3 {
 	private long length;
 	private int rate,len;
-	private long[][] S=new long[5][5];
+	private long[] S=new long[25];
 
 /* Constructor */
 	public SHA3(int olen)
@@ -65,66 +65,49 @@ public class SHA3 {
 	}
 
 	private void transform()
-	{ /* basic transformation step */
-		int i,j,k;
-		long[] C=new long[5];
-		long[] D=new long[5];
-		long[][] B=new long[5][5];
+	{ /* basic transformation step - lane x+5y of the state is S[x+5*y] */
+		int k;
+		long a0=S[0],a1=S[1],a2=S[2],a3=S[3],a4=S[4],a5=S[5],a6=S[6],a7=S[7],a8=S[8],a9=S[9],a10=S[10],a11=S[11],a12=S[12];
+		long a13=S[13],a14=S[14],a15=S[15],a16=S[16],a17=S[17],a18=S[18],a19=S[19],a20=S[20],a21=S[21],a22=S[22],a23=S[23],a24=S[24];
+		long c0,c1,c2,c3,c4,d0,d1,d2,d3,d4;
+		long b0,b1,b2,b3,b4,b5,b6,b7,b8,b9,b10,b11,b12,b13,b14,b15,b16,b17,b18,b19,b20,b21,b22,b23,b24;
 
 		for (k=0;k<ROUNDS;k++)
 		{
-			C[0]=S[0][0]^S[0][1]^S[0][2]^S[0][3]^S[0][4];
-			C[1]=S[1][0]^S[1][1]^S[1][2]^S[1][3]^S[1][4];
-			C[2]=S[2][0]^S[2][1]^S[2][2]^S[2][3]^S[2][4];
-			C[3]=S[3][0]^S[3][1]^S[3][2]^S[3][3]^S[3][4];
-			C[4]=S[4][0]^S[4][1]^S[4][2]^S[4][3]^S[4][4];
-
-			D[0]=C[4]^rotl(C[1],1);
-			D[1]=C[0]^rotl(C[2],1);
-			D[2]=C[1]^rotl(C[3],1);
-			D[3]=C[2]^rotl(C[4],1);
-			D[4]=C[3]^rotl(C[0],1);
-
-			for (i=0;i<5;i++)
-				for (j=0;j<5;j++)
-					S[i][j]^=D[i];  
-
-			B[0][0]=S[0][0];
-			B[1][3]=rotl(S[0][1],36);
-			B[2][1]=rotl(S[0][2],3);
-			B[3][4]=rotl(S[0][3],41);
-			B[4][2]=rotl(S[0][4],18);
-
-			B[0][2]=rotl(S[1][0],1);
-			B[1][0]=rotl(S[1][1],44);
-			B[2][3]=rotl(S[1][2],10);
-			B[3][1]=rotl(S[1][3],45);
-			B[4][4]=rotl(S[1][4],2);
-
-			B[0][4]=rotl(S[2][0],62);
-			B[1][2]=rotl(S[2][1],6);
-			B[2][0]=rotl(S[2][2],43);
-			B[3][3]=rotl(S[2][3],15);
-			B[4][1]=rotl(S[2][4],61);
-
-			B[0][1]=rotl(S[3][0],28);
-			B[1][4]=rotl(S[3][1],55);
-			B[2][2]=rotl(S[3][2],25);
-			B[3][0]=rotl(S[3][3],21);
-			B[4][3]=rotl(S[3][4],56);
-
-			B[0][3]=rotl(S[4][0],27);
-			B[1][1]=rotl(S[4][1],20);
-			B[2][4]=rotl(S[4][2],39);
-			B[3][2]=rotl(S[4][3],8);
-			B[4][0]=rotl(S[4][4],14);
-
-			for (i=0;i<5;i++)
-				for (j=0;j<5;j++)
-					S[i][j]=B[i][j]^(~B[(i+1)%5][j]&B[(i+2)%5][j]);
-
-			S[0][0]^=RC[k];
+			c0=a0^a5^a10^a15^a20;
+			c1=a1^a6^a11^a16^a21;
+			c2=a2^a7^a12^a17^a22;
+			c3=a3^a8^a13^a18^a23;
+			c4=a4^a9^a14^a19^a24;
+
+			d0=c4^rotl(c1,1);
+			d1=c0^rotl(c2,1);
+			d2=c1^rotl(c3,1);
+			d3=c2^rotl(c4,1);
+			d4=c3^rotl(c0,1);
+
+			a0^=d0; a5^=d0; a10^=d0; a15^=d0; a20^=d0;
+			a1^=d1; a6^=d1; a11^=d1; a16^=d1; a21^=d1;
+			a2^=d2; a7^=d2; a12^=d2; a17^=d2; a22^=d2;
+			a3^=d3; a8^=d3; a13^=d3; a18^=d3; a23^=d3;
+			a4^=d4; a9^=d4; a14^=d4; a19^=d4; a24^=d4;
+
+			b0=a0; b16=rotl(a5,36); b7=rotl(a10,3); b23=rotl(a15,41); b14=rotl(a20,18);
+			b10=rotl(a1,1); b1=rotl(a6,44); b17=rotl(a11,10); b8=rotl(a16,45); b24=rotl(a21,2);
+			b20=rotl(a2,62); b11=rotl(a7,6); b2=rotl(a12,43); b18=rotl(a17,15); b9=rotl(a22,61);
+			b5=rotl(a3,28); b21=rotl(a8,55); b12=rotl(a13,25); b3=rotl(a18,21); b19=rotl(a23,56);
+			b15=rotl(a4,27); b6=rotl(a9,20); b22=rotl(a14,39); b13=rotl(a19,8); b4=rotl(a24,14);
+
+			a0=b0^(~b1&b2); a1=b1^(~b2&b3); a2=b2^(~b3&b4); a3=b3^(~b4&b0); a4=b4^(~b0&b1);
+			a5=b5^(~b6&b7); a6=b6^(~b7&b8); a7=b7^(~b8&b9); a8=b8^(~b9&b5); a9=b9^(~b5&b6);
+			a10=b10^(~b11&b12); a11=b11^(~b12&b13); a12=b12^(~b13&b14); a13=b13^(~b14&b10); a14=b14^(~b10&b11);
+			a15=b15^(~b16&b17); a16=b16^(~b17&b18); a17=b17^(~b18&b19); a18=b18^(~b19&b15); a19=b19^(~b15&b16);
+			a20=b20^(~b21&b22); a21=b21^(~b22&b23); a22=b22^(~b23&b24); a23=b23^(~b24&b20); a24=b24^(~b20&b21);
+
+			a0^=RC[k];
 		}
+		S[0]=a0; S[1]=a1; S[2]=a2; S[3]=a3; S[4]=a4; S[5]=a5; S[6]=a6; S[7]=a7; S[8]=a8; S[9]=a9; S[10]=a10; S[11]=a11; S[12]=a12;
+		S[13]=a13; S[14]=a14; S[15]=a15; S[16]=a16; S[17]=a17; S[18]=a18; S[19]=a19; S[20]=a20; S[21]=a21; S[22]=a22; S[23]=a23; S[24]=a24;
 	} 
 
 /* Re-Initialize. olen is output length in bytes - 
@@ -134,10 +117,8 @@ public class SHA3 {
 /* Initialise Hash function */
 	public void init(int olen)
 	{ /* initialise */
-		int i,j;
-		for (i=0;i<5;i++) 
-			for (j=0;j<5;j++)
-				S[i][j]=0;    /* 5x5x8 bytes = 200 bytes of state */
+		for (int i=0;i<25;i++)
+			S[i]=0;    /* 5x5x8 bytes = 200 bytes of state */
 		length=0;
 		len=olen;
 		rate=200-2*olen; /* number of bytes consumed in one gulp. Note that some bytes in the 
@@ -148,72 +129,98 @@ public class SHA3 {
 /* process a single byte */
 	public void process(int byt)
 	{ /* process the next message byte */
-		int i,j,b,cnt;
-		cnt=(int)(length%rate);
-		b=cnt%8;
-		cnt/=8;
-		i=cnt%5; j=cnt/5;  /* process by columns! */
-		S[i][j]^=((long)(byt&0xff)<<(8*b));
+		int cnt=(int)(length%rate);
+		S[cnt>>3]^=((long)(byt&0xff)<<((cnt&7)<<3));  /* lanes are filled by columns, little-endian */
 		length++;
-		if ((length%rate)==0) transform();
+		if (cnt+1==rate) transform();
 	}
 
-/* squeeze the sponge */
-	public byte[] squeeze(byte[] buff,int olen)
+/* process n bytes of b, starting at off - aligned runs are XORed in a whole lane at a time */
+	public void update(byte[] b,int off,int n)
+	{
+		int cnt=(int)(length%rate);
+		length+=n;
+		while (n>0 && (cnt&7)!=0)
+		{
+			S[cnt>>3]^=((long)(b[off++]&0xff)<<((cnt&7)<<3));
+			n--; cnt++;
+		}
+		if (cnt==rate) {transform(); cnt=0;}
+		for (;n>=8;n-=8,off+=8)
+		{
+			S[cnt>>3]^=(long)(b[off]&0xff)|((long)(b[off+1]&0xff)<<8)|((long)(b[off+2]&0xff)<<16)|((long)(b[off+3]&0xff)<<24)|
+				((long)(b[off+4]&0xff)<<32)|((long)(b[off+5]&0xff)<<40)|((long)(b[off+6]&0xff)<<48)|((long)(b[off+7]&0xff)<<56);
+			cnt+=8;
+			if (cnt==rate) {transform(); cnt=0;}
+		}
+		for (;n>0;n--,cnt++)
+			S[cnt>>3]^=((long)(b[off++]&0xff)<<((cnt&7)<<3));
+	}
+
+/* squeeze olen bytes out of the sponge into buff, starting at off */
+	public byte[] squeeze(byte[] buff,int off,int olen)
 	{
-		boolean done;
-		int i,j,k,m=0;
+		int cnt=0;
 		long el;
-/* extract by columns */
-		done=false;
-		for (;;)
+		while (olen>=8)
 		{
-			for (j=0;j<5;j++)
-			{
-				for (i=0;i<5;i++)
-				{
-					el=S[i][j];
-					for (k=0;k<8;k++)
-					{
-						buff[m++]=(byte)(el&0xff);
-						if (m>=olen || (m%rate)==0) {done=true; break;} 
-						el>>>=8;
-					}
-					if (done) break;
-				}
-				if (done) break;
-			}
-			if (m>=olen) break;
-			done=false;
-			transform();
+			el=S[cnt>>3];
+			buff[off]=(byte)el; buff[off+1]=(byte)(el>>>8); buff[off+2]=(byte)(el>>>16); buff[off+3]=(byte)(el>>>24);
+			buff[off+4]=(byte)(el>>>32); buff[off+5]=(byte)(el>>>40); buff[off+6]=(byte)(el>>>48); buff[off+7]=(byte)(el>>>56);
+			off+=8; olen-=8; cnt+=8;
+			if (cnt==rate && olen>0) {transform(); cnt=0;}
 		}
+		for (el=S[cnt>>3];olen>0;olen--,el>>>=8)
+			buff[off++]=(byte)el;
 		return buff;
 	}
 
+/* squeeze the sponge */
+	public byte[] squeeze(byte[] buff,int olen)
+	{
+		return squeeze(buff,0,olen);
+	}
+
+/* append the domain byte and the final bit of the padding, and absorb the last block */
+	private void pad(int dom)
+	{
+		int cnt=(int)(length%rate);
+		S[cnt>>3]^=((long)dom<<((cnt&7)<<3));
+		S[(rate-1)>>3]^=0x80L<<56;
+		transform();
+	}
+
 	public void hash(byte[] digest)
 	{ /* generate a SHA3 hash of appropriate size */
-		int q=rate-(int)(length%rate);
-		if (q==1) process(0x86); 
-		else
-		{
-			process(0x06);   /* 0x06 for SHA-3 */
-			while (length%rate!=rate-1) process(0x00);
-			process(0x80); /* this will force a final transform */
-		}
+		pad(0x06);   /* 0x06 for SHA-3 */
 		squeeze(digest,len);
 	}
 
 	public void shake(byte[] digest,int olen)
 	{ /* SHAKE out a buffer of variable length olen */
-		int q=rate-(int)(length%rate);
-		if (q==1) process(0x9f); 
-		else
+		pad(0x1f);
+		squeeze(digest,olen);
+	}
+
+/* SHAKE out olen bytes from each of several independent instances, a block at a time from each in turn */
+	public static void shake(SHA3[] sh,byte[][] digest,int olen)
+	{
+		int i,m,o;
+		boolean done=false;
+		for (i=0;i<sh.length;i++)
+			sh[i].pad(0x1f);
+		for (m=0;!done;m++)
 		{
-			process(0x1f);   // 0x06 for SHA-3 !!!!
-			while (length%rate!=rate-1) process(0x00);
-			process(0x80); /* this will force a final transform */
+			done=true;
+			for (i=0;i<sh.length;i++)
+			{
+				o=m*sh[i].rate;
+				if (o>=olen) continue;
+				if (m>0) sh[i].transform();
+				sh[i].squeeze(digest[i],o,Math.min(sh[i].rate,olen-o));
+				done=false;
+			}
 		}
-		squeeze(digest,olen);
 	}
 
 /* test program: should produce digests */
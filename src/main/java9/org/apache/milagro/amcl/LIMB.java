@@ -0,0 +1,51 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/*
+ * Limb arithmetic for BIG - Java 9 version
+ *
+ * Math.multiplyHigh gives the top half of the 128-bit product in one
+ * instruction on the usual 64-bit JVMs, so each limb product takes one
+ * multiply pair. The signed form is used because limbs may be negative
+ * between normalisations.
+ */
+
+package org.apache.milagro.amcl;
+
+public final class LIMB {
+
+/* return {high,low} of a*b+c+r, split at base bits */
+	public static long[] muladd(long a,long b,long c,long r,int base)
+	{
+		long[] tb=new long[2];
+		tb[1]=r;
+		tb[0]=muladd(a,b,c,tb,1,base);
+		return tb;
+	}
+
+/* r[o]=low part of a*b+c+r[o], and return the high part */
+	public static long muladd(long a,long b,long c,long[] r,int o,int base)
+	{
+		long mask=((long)1<<base)-1;
+		long lo=a*b;
+		long bot=(lo&mask)+c+r[o];
+		r[o]=bot&mask;
+		return (Math.multiplyHigh(a,b)<<(64-base))+(lo>>>base)+(bot>>base);
+	}
+}
@@ -0,0 +1,482 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* test driver and function exerciser for BLS Signature API Functions */
+
+package org.apache.milagro.amcl.BLS381;  //
+
+import junit.framework.TestCase;       //
+import java.util.concurrent.ForkJoinPool;
+import org.apache.milagro.amcl.RAND;
+
+public class TestBLS extends TestCase   //
+{
+	private static void printBinary(byte[] array)
+	{
+		int i;
+		for (i=0;i<array.length;i++)
+		{
+			System.out.printf("%02x", array[i]);
+		}
+		System.out.println();
+	}
+
+	public static void testBLS()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		int i,res;
+		int n=4;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i);
+		rng.seed(100,RAW);
+
+		byte[][] S=new byte[n][BLS.BGS];
+		byte[][] W=new byte[n][BLS.G2S];
+		byte[][] SIG=new byte[n][BLS.G1S];
+		byte[][] M=new byte[n][];
+		byte[] ASIG=new byte[BLS.G1S];
+
+		System.out.println("Testing BLS code");
+
+		for (i=0;i<n;i++)
+		{
+			BLS.KEY_PAIR_GENERATE(rng,S[i],W[i]);
+			M[i]=("test message "+i).getBytes();
+		}
+		System.out.print("Private key= 0x"); printBinary(S[0]);
+		System.out.print("Public key= 0x"); printBinary(W[0]);
+
+		BLS.SIGN(SIG[0],M[0],S[0]);
+		System.out.print("Signature= 0x"); printBinary(SIG[0]);
+
+		res=BLS.VERIFY(SIG[0],M[0],W[0]);
+		if (res!=BLS.BLS_OK)
+			fail("FAILURE: VERIFY rtn: " + res);
+
+		res=BLS.VERIFY(SIG[0],M[1],W[0]);
+		if (res==BLS.BLS_OK)
+			fail("FAILURE: VERIFY accepted the wrong message");
+
+		res=BLS.VERIFY(SIG[0],M[0],W[1]);
+		if (res==BLS.BLS_OK)
+			fail("FAILURE: VERIFY accepted the wrong public key");
+
+/* Prepared public key must agree with a plain pairing */
+		PreparedG2 PK=BLS.PREPARE_PK(W[0]);
+		res=BLS.VERIFY(SIG[0],M[0],PK);
+		if (res!=BLS.BLS_OK)
+			fail("FAILURE: VERIFY with prepared key rtn: " + res);
+
+		ECP HM=BLS.bls_hashit(M[0]);
+		ECP2 G=ECP2.fromBytesZcash(W[0]);
+		if (!PAIR.fexp(PAIR.ate(PK,HM)).equals(PAIR.fexp(PAIR.ate(G,HM))))
+			fail("FAILURE: prepared pairing differs from ate");
+
+/* Cached prepared keys must verify the same way */
+		BLS.KEY_CACHE(16);
+		for (i=0;i<3;i++)
+		{
+			if (BLS.VERIFY(SIG[0],M[0],W[0])!=BLS.BLS_OK)
+				fail("FAILURE: VERIFY with cached key");
+			if (BLS.VERIFY(SIG[0],M[0],W[1])==BLS.BLS_OK)
+				fail("FAILURE: VERIFY with cached key accepted the wrong public key");
+		}
+		if (BLS.KEY_CACHE().hits()!=4 || BLS.KEY_CACHE().misses()!=2 || BLS.PREPARE_PK(W[0])!=BLS.PREPARE_PK(W[0]))
+			fail("FAILURE: prepared key cache");
+		BLS.KEY_CACHE(0);
+
+/* Everyone signs the same message */
+		for (i=0;i<n;i++)
+			BLS.SIGN(SIG[i],M[0],S[i]);
+		BLS.AGGREGATE_SIG(ASIG,SIG);
+
+		res=BLS.FAST_AGGREGATE_VERIFY(ASIG,M[0],W);
+		if (res!=BLS.BLS_OK)
+			fail("FAILURE: FAST_AGGREGATE_VERIFY rtn: " + res);
+
+		res=BLS.FAST_AGGREGATE_VERIFY(ASIG,M[1],W);
+		if (res==BLS.BLS_OK)
+			fail("FAILURE: FAST_AGGREGATE_VERIFY accepted the wrong message");
+
+/* Everyone signs a different message */
+		for (i=0;i<n;i++)
+			BLS.SIGN(SIG[i],M[i],S[i]);
+		BLS.AGGREGATE_SIG(ASIG,SIG);
+
+		res=BLS.AGGREGATE_VERIFY(ASIG,M,W);
+		if (res!=BLS.BLS_OK)
+			fail("FAILURE: AGGREGATE_VERIFY rtn: " + res);
+
+		byte[][] MS=new byte[n][];
+		for (i=0;i<n;i++) MS[i]=M[(i+1)%n];
+		res=BLS.AGGREGATE_VERIFY(ASIG,MS,W);
+		if (res==BLS.BLS_OK)
+			fail("FAILURE: AGGREGATE_VERIFY accepted mismatched messages");
+
+/* Batch verification of independent signatures, with one forgery */
+		boolean[] OK=new boolean[n];
+		res=BLS.BATCH_VERIFY(rng,SIG,M,W,OK);
+		if (res!=BLS.BLS_OK)
+			fail("FAILURE: BATCH_VERIFY rtn: " + res);
+
+		BLS.SIGN(SIG[2],M[1],S[2]);
+		res=BLS.BATCH_VERIFY(rng,SIG,M,W,OK);
+		if (res==BLS.BLS_OK)
+			fail("FAILURE: BATCH_VERIFY accepted a bad signature");
+		for (i=0;i<n;i++)
+			if (OK[i]!=(i!=2))
+				fail("FAILURE: BATCH_VERIFY misidentified entry " + i);
+
+/* Parallel multi-pairing must agree with the serial one */
+		int np=2*PAIR.PARALLEL_THRESHOLD+3;
+		ECP2[] P=new ECP2[np];
+		PreparedG2[] R=new PreparedG2[np];
+		ECP[] Q=new ECP[np];
+		for (i=0;i<np;i++)
+		{
+			P[i]=ECP2.fromBytesZcash(W[i%n]);
+			R[i]=BLS.PREPARE_PK(W[i%n]);
+			Q[i]=BLS.bls_hashit(("pair "+i).getBytes());
+		}
+		ForkJoinPool pool=new ForkJoinPool(4);
+		FP12 v=PAIR.fexp(PAIR.multiAte(P,Q));
+		if (!PAIR.fexp(PAIR.multiAte(P,Q,pool)).equals(v))
+			fail("FAILURE: parallel multiAte differs from serial");
+		if (!PAIR.fexp(PAIR.multiAte(R,Q,pool)).equals(v))
+			fail("FAILURE: parallel prepared multiAte differs from serial");
+		ECP[] Q1=java.util.Arrays.copyOf(Q,np-1);
+		ECP2[] P1=java.util.Arrays.copyOf(P,np-1);
+		PreparedG2[] R1=java.util.Arrays.copyOf(R,np-1);
+		if (PAIR.multiAte(P,Q1)!=null || PAIR.multiAte(P1,Q)!=null || PAIR.multiAte(R,Q1)!=null || PAIR.multiAte(R1,Q)!=null)
+			fail("FAILURE: multiAte accepted arrays of different lengths");
+		if (PAIR.multiAte(P,Q1,pool)!=null || PAIR.multiAte(R1,Q,pool)!=null)
+			fail("FAILURE: parallel multiAte accepted arrays of different lengths");
+		pool.shutdown();
+
+		System.out.println("BLS signatures OK");
+	}
+
+/* hash_to_curve test vectors from RFC 9380 */
+	public static void testHashToCurve()
+	{
+		String[] MSG={"","abc"};
+		byte[] DST1="QUUX-V01-CS02-with-BLS12381G1_XMD:SHA-256_SSWU_RO_".getBytes();
+		String[] PX={
+			"052926add2207b76ca4fa57a8734416c8dc95e24501772c814278700eed6d1e4e8cf62d9c09db0fac349612b759e79a1",
+			"03567bc5ef9c690c2ab2ecdf6a96ef1c139cc0b2f284dca0a9a7943388a49a3aee664ba5379a7655d3c68900be2f6903"};
+		String[] PY={
+			"08ba738453bfed09cb546dbb0783dbb3a5f1f566ed67bb6be0e8c67e2e81a4cc68ee29813bb7994998f3eae0c9c6a265",
+			"0b9c15f3fe6e5cf4211f346271d7b01c8f3b28be689c8429c85b67af215533311f0b8dfaaa154fa6b88176c229f2885d"};
+		byte[] DST2="QUUX-V01-CS02-with-BLS12381G2_XMD:SHA-256_SSWU_RO_".getBytes();
+		String[] QX={
+			"0141ebfbdca40eb85b87142e130ab689c673cf60f1a3e98d69335266f30d9b8d4ac44c1038e9dcdd5393faf5c41fb78a",
+			"05cb8437535e20ecffaef7752baddf98034139c38452458baeefab379ba13dff5bf5dd71b72418717047f5b0f37da03d",
+			"02c2d18e033b960562aae3cab37a27ce00d80ccd5ba4b7fe0e7a210245129dbec7780ccc7954725f4168aff2787776e6",
+			"139cddbccdc5e91b9623efd38c49f81a6f83f175e80b06fc374de9eb4b41dfe4ca3a230ed250fbe3a2acf73a41177fd8"};
+		String[] QY={
+			"0503921d7f6a12805e72940b963c0cf3471c7b2a524950ca195d11062ee75ec076daf2d4bc358c4b190c0c98064fdd92",
+			"12424ac32561493f3fe3c260708a12b7c620e7be00099a974e259ddc7d1f6395c3c811cdd19f1e8dbf3e9ecfdcbab8d6",
+			"1787327b68159716a37440985269cf584bcb1e621d3a7202be6ea05c4cfe244aeb197642555a0645fb87bf7466b2ba48",
+			"00aa65dae3c8d732d10ecd2c50f8a1baf3001578f71c694e03866e9f3d49ac1e1ce70dd94a733534f106d4cec0eddd16"};
+
+		for (int i=0;i<MSG.length;i++)
+		{
+			ECP P=ECP.hashToCurve(DST1,MSG[i].getBytes());
+			if (!P.getX().toString().equals(PX[i]) || !P.getY().toString().equals(PY[i]))
+				fail("FAILURE: G1 hashToCurve of \""+MSG[i]+"\" gave "+P.toString());
+
+			ECP2 Q=ECP2.hashToCurve(DST2,MSG[i].getBytes());
+			String qx="["+QX[2*i]+","+QX[2*i+1]+"]";
+			String qy="["+QY[2*i]+","+QY[2*i+1]+"]";
+			if (!Q.getX().toString().equals(qx) || !Q.getY().toString().equals(qy))
+				fail("FAILURE: G2 hashToCurve of \""+MSG[i]+"\" gave "+Q.toString());
+		}
+		System.out.println("Hash to curve OK");
+	}
+
+/* Fixed base generator multiplication must agree with variable base multiplication */
+	public static void testMulGenerator()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+1);
+		rng.seed(100,RAW);
+
+		BIG[] E=new BIG[8];
+		E[0]=new BIG(0);
+		E[1]=new BIG(1);
+		E[2]=new BIG(r); E[2].dec(1); E[2].norm();
+		E[3]=new BIG(r); E[3].dec(2); E[3].norm();
+		for (int i=4;i<8;i++) E[i]=BIG.randomnum(r,rng);
+
+		for (int i=0;i<E.length;i++)
+		{
+			if (!ECP.mulGenerator(E[i]).equals(G.mul(E[i])))
+				fail("FAILURE: mulGenerator differs from mul for e="+E[i].toString());
+			if (!ECP2.mulGenerator(E[i]).equals(ECP2.generator().mul(E[i])))
+				fail("FAILURE: ECP2 mulGenerator differs from mul for e="+E[i].toString());
+		}
+		System.out.println("Generator multiplication OK");
+	}
+
+/* Multi-scalar multiplication must agree with the sum of single multiplications */
+	public static void testMuln()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		int i,n=300;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+2);
+		rng.seed(100,RAW);
+
+		ECP[] P=new ECP[n];
+		BIG[] k=new BIG[n];
+		for (i=0;i<n;i++)
+		{
+			P[i]=ECP.mulGenerator(BIG.randomnum(r,rng));
+			k[i]=BIG.randomnum(r,rng);
+		}
+		k[1].zero(); k[2].one();
+
+		for (int m : new int[] {1,2,5,n})
+		{
+			ECP S=new ECP();
+			for (i=0;i<m;i++) S.add(P[i].mul(k[i]));
+			ECP[] Pm=java.util.Arrays.copyOf(P,m);
+			BIG[] km=java.util.Arrays.copyOf(k,m);
+			if (!ECP.muln(Pm,km).equals(S))
+				fail("FAILURE: muln differs from mul for "+m+" points");
+			if (!ECP.muln(Pm,km,null).equals(S))
+				fail("FAILURE: parallel muln differs from mul for "+m+" points");
+		}
+
+		ECP2[] Q=new ECP2[n];
+		ECP2 T=new ECP2();
+		for (i=0;i<n;i++)
+		{
+			Q[i]=ECP2.mulGenerator(BIG.randomnum(r,rng));
+			T.add(Q[i].mul(k[i]));
+		}
+		if (!ECP2.muln(Q,k).equals(T))
+			fail("FAILURE: ECP2 muln differs from mul");
+		if (!ECP2.muln(Q,k,null).equals(T))
+			fail("FAILURE: parallel ECP2 muln differs from mul");
+		System.out.println("Multi-scalar multiplication OK");
+	}
+
+/* Batch normalisation must agree with normalising each point on its own */
+	public static void testAffineAll()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+		int i,n=10;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+3);
+		rng.seed(100,RAW);
+
+		ECP[] P=new ECP[n];
+		ECP[] A=new ECP[n];
+		for (i=0;i<n;i++)
+		{
+			P[i]=G.mulProjective(BIG.randomnum(r,rng));
+			A[i]=new ECP(); A[i].copy(P[i]);
+			A[i].affine();
+		}
+		P[3]=new ECP();
+		A[3]=new ECP();
+		ECP.affineAll(P);
+		for (i=0;i<n;i++)
+		{
+			if (!P[i].getx().equals(A[i].getx()) || !P[i].gety().equals(A[i].gety()) || !P[i].getz().equals(A[i].getz()))
+				fail("FAILURE: affineAll differs from affine at "+i);
+		}
+
+		ECP2[] Q=new ECP2[n];
+		ECP2[] B=new ECP2[n];
+		for (i=0;i<n;i++)
+		{
+			Q[i]=ECP2.generator().mulProjective(BIG.randomnum(r,rng));
+			B[i]=new ECP2(Q[i]);
+			B[i].affine();
+		}
+		Q[5]=new ECP2();
+		B[5]=new ECP2();
+		ECP2.affineAll(Q);
+		for (i=0;i<n;i++)
+		{
+			if (!Q[i].getx().equals(B[i].getx()) || !Q[i].gety().equals(B[i].gety()) || !Q[i].getz().equals(B[i].getz()))
+				fail("FAILURE: ECP2 affineAll differs from affine at "+i);
+		}
+		System.out.println("Batch affine OK");
+	}
+
+/* Subgroup checks must agree with multiplication by the group order, and points outside G1 must not verify */
+	public static void testSubgroup()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+		BIG r=new BIG(ROM.CURVE_Order);
+		int i;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+9);
+		rng.seed(100,RAW);
+
+		for (i=0;i<10;i++)
+		{
+			ECP P=new ECP(BIG.randomnum(p,rng),0);
+			if (P.is_infinity()) continue;
+			ECP T=P.mul(r);
+			if (P.inSubgroup()!=T.is_infinity() || !T.is_infinity() && T.inSubgroup())
+				fail("FAILURE: G1 subgroup check of "+P.toString());
+			P.cfp();
+			if (!P.inSubgroup())
+				fail("FAILURE: G1 subgroup check rejects "+P.toString());
+
+			ECP2 Q=new ECP2(new FP2(BIG.randomnum(p,rng),BIG.randomnum(p,rng)));
+			if (Q.is_infinity()) continue;
+			ECP2 U=Q.mul(r);
+			if (Q.inSubgroup()!=U.is_infinity() || !U.is_infinity() && U.inSubgroup())
+				fail("FAILURE: G2 subgroup check of "+Q.toString());
+			Q.cfp();
+			if (!Q.inSubgroup())
+				fail("FAILURE: G2 subgroup check rejects "+Q.toString());
+		}
+
+		byte[] S=new byte[BLS.BGS];
+		byte[] W=new byte[BLS.G2S];
+		byte[] SIG=new byte[BLS.G1S];
+		byte[] M="test message".getBytes();
+		BLS.KEY_PAIR_GENERATE(rng,S,W);
+		ECP D;
+		do D=new ECP(BIG.randomnum(p,rng),0); while (D.is_infinity() || D.inSubgroup());
+		D.toBytesZcash(SIG,true);
+		if (BLS.VERIFY(SIG,M,W)!=BLS.INVALID_POINT)
+			fail("FAILURE: signature outside G1 accepted");
+		System.out.println("Subgroup checks OK");
+	}
+
+/* ZCash encodings of the generators, and round trips of every encoding */
+	public static void testEncoding()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		int i,j;
+		String G1C="97f1d3a73197d7942695638c4fa9ac0fc3688c4f9774b905a14e3a3f171bac586c55e83ff97a1aeffb3af00adb22c6bb";
+		String G2C="93e02b6052719f607dacd3a088274f65596bd0d09920b61ab5da61bbdc7f5049334cf11213945d57e5ac7d055d042b7e024aa2b2f08f0a91260805272dc51051c6e47ad4fa403b02b4510b647ae3d1770bac0326a805bbefd48056c8c121bdb8";
+
+		byte[] C1=new byte[BIG.MODBYTES];
+		byte[] U1=new byte[2*BIG.MODBYTES];
+		byte[] C2=new byte[2*BIG.MODBYTES];
+		byte[] U2=new byte[4*BIG.MODBYTES];
+		byte[] A2=new byte[2*BIG.MODBYTES+1];
+
+		ECP.generator().toBytesZcash(C1,true);
+		ECP2.generator().toBytesZcash(C2,true);
+		if (!toHex(C1).equals(G1C))
+			fail("FAILURE: ZCash encoding of the G1 generator "+toHex(C1));
+		if (!toHex(C2).equals(G2C))
+			fail("FAILURE: ZCash encoding of the G2 generator "+toHex(C2));
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+11);
+		rng.seed(100,RAW);
+
+		for (i=0;i<10;i++)
+		{
+			ECP P=ECP.generator().mul(BIG.randomnum(r,rng));
+			ECP2 Q=ECP2.generator().mul(BIG.randomnum(r,rng));
+			if (i==0) {P.neg(); Q.neg();}
+			P.toBytesZcash(C1,true);
+			P.toBytesZcash(U1,false);
+			Q.toBytesZcash(C2,true);
+			Q.toBytesZcash(U2,false);
+			Q.toBytes(A2,true);
+			if (!ECP.fromBytesZcash(C1).equals(P) || !ECP.fromBytesZcash(U1).equals(P))
+				fail("FAILURE: G1 ZCash round trip of "+P.toString());
+			if (!ECP2.fromBytesZcash(C2).equals(Q) || !ECP2.fromBytesZcash(U2).equals(Q))
+				fail("FAILURE: G2 ZCash round trip of "+Q.toString());
+			if (!ECP2.fromBytes(A2).equals(Q))
+				fail("FAILURE: G2 compressed round trip of "+Q.toString());
+		}
+
+		new ECP().toBytesZcash(C1,true);
+		new ECP2().toBytesZcash(C2,true);
+		if ((C1[0]&0xff)!=0xc0 || (C2[0]&0xff)!=0xc0)
+			fail("FAILURE: ZCash encoding of infinity");
+		C1[0]=(byte)0xa0;
+		for (j=1;j<C1.length;j++) C1[j]=(byte)0xff;
+		if (!ECP.fromBytesZcash(C1).is_infinity())
+			fail("FAILURE: out of range x accepted");
+
+/* lengths that disagree with the compressed flag, and infinity with stray bits, are malformed */
+		byte[] S=new byte[BLS.BGS];
+		byte[] W=new byte[2*BIG.MODBYTES];
+		byte[] SIG=new byte[BIG.MODBYTES];
+		byte[] M="malformed".getBytes();
+		BLS.KEY_PAIR_GENERATE(rng,S,W);
+		BLS.SIGN(SIG,M,S);
+		if (BLS.VERIFY(SIG,M,W)!=BLS.BLS_OK)
+			fail("FAILURE: good signature rejected");
+		byte[] Z=new byte[BLS.BGS];
+		byte[] R=new byte[BLS.BGS];
+		new BIG(ROM.CURVE_Order).toBytes(R);
+		if (BLS.KEY_PAIR_GENERATE(null,Z,W)!=BLS.BLS_FAIL || BLS.KEY_PAIR_GENERATE(null,R,W)!=BLS.BLS_FAIL)
+			fail("FAILURE: zero private key accepted");
+		if (BLS.KEY_PAIR_GENERATE(null,S,W)!=BLS.BLS_OK || BLS.VERIFY(SIG,M,W)!=BLS.BLS_OK)
+			fail("FAILURE: given private key rejected");
+		byte[] SU=java.util.Arrays.copyOf(SIG,SIG.length); SU[0]&=0x7f;
+		byte[] WU=java.util.Arrays.copyOf(W,W.length); WU[0]&=0x7f;
+		byte[][] bad={SU,java.util.Arrays.copyOf(SIG,SIG.length-1),java.util.Arrays.copyOf(SIG,2*SIG.length),new byte[0]};
+		for (j=0;j<bad.length;j++)
+			if (BLS.VERIFY(bad[j],M,W)!=BLS.INVALID_POINT)
+				fail("FAILURE: malformed signature "+j+" not reported invalid");
+		byte[][] badW={WU,java.util.Arrays.copyOf(W,W.length-1),java.util.Arrays.copyOf(W,2*W.length),new byte[0]};
+		for (j=0;j<badW.length;j++)
+			if (BLS.VERIFY(SIG,M,badW[j])!=BLS.INVALID_POINT)
+				fail("FAILURE: malformed public key "+j+" not reported invalid");
+		new ECP().toBytesZcash(C1,true);
+		if (!ECP.zc_wellformed(C1,BIG.MODBYTES))
+			fail("FAILURE: ZCash infinity reported malformed");
+		C1[C1.length-1]=1;
+		if (ECP.zc_wellformed(C1,BIG.MODBYTES))
+			fail("FAILURE: ZCash infinity with stray bits accepted");
+		System.out.println("Encodings OK");
+	}
+
+	private static String toHex(byte[] b)
+	{
+		StringBuilder s=new StringBuilder();
+		for (int i=0;i<b.length;i++) s.append(String.format("%02x",b[i]));
+		return s.toString();
+	}
+}
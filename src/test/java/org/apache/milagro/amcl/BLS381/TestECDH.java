@@ -175,6 +175,24 @@ public class TestECDH extends TestCase   //
 		}
 	}
 
+/* Multiplication by a zero element, on either side, must give zero */
+	public static void testMulZero()
+	{
+		FP a=new FP(12345);
+		FP z=new FP(0);
+		FP b=new FP(a);
+		b.mul(z);
+		if (!b.iszilch())
+			fail("FAILURE: FP times zero is not zero");
+		b.copy(z);
+		b.mul(a);
+		if (!b.iszilch())
+			fail("FAILURE: zero times FP is not zero");
+		if (!new ECP().equals(new ECP()))
+			fail("FAILURE: points at infinity compare unequal");
+		System.out.println("Multiplication by zero OK");
+	}
+
 /*
 	public static void main(String[] args) 
 	{
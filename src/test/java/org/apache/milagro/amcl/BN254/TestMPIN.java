@@ -294,4 +294,31 @@ If Time permits are ON, AND pin error detection is NOT required, set xID=null, H
 		mpin(rng);
 
 	} */
+
+/* G2 subgroup check must accept multiples of the generator and reject other points on the twist */
+	public static void testSubgroup()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+		BIG r=new BIG(ROM.CURVE_Order);
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+9);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<10;i++)
+		{
+			ECP2 Q=ECP2.generator().mul(BIG.randomnum(r,rng));
+			if (!Q.inSubgroup())
+				fail("FAILURE: G2 subgroup check rejects "+Q.toString());
+
+			ECP2 P=new ECP2(new FP2(BIG.randomnum(p,rng),BIG.randomnum(p,rng)));
+			if (P.is_infinity()) continue;
+			ECP2 U=P.mul(r);
+			if (P.inSubgroup()!=U.is_infinity() || !U.is_infinity() && U.inSubgroup())
+				fail("FAILURE: G2 subgroup check of "+P.toString());
+		}
+		System.out.println("Subgroup checks OK");
+	}
 }
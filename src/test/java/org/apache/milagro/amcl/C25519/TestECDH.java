@@ -175,6 +175,65 @@ public class TestECDH extends TestCase   //
 		}
 	}
 
+/* Montgomery curves have no general point addition, so muln forms a single product and rejects more */
+	public static void testMuln()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+2);
+		rng.seed(100,RAW);
+
+		ECP[] P={ECP.mulGenerator(BIG.randomnum(r,rng)),ECP.generator()};
+		BIG[] k={BIG.randomnum(r,rng),BIG.randomnum(r,rng)};
+		ECP[] P1={P[0]};
+		BIG[] k1={k[0]};
+		ECP S=P[0].mul(k[0]);
+		if (S.is_infinity() || !ECP.muln(P1,k1).equals(S) || !ECP.muln(P1,k1,null).equals(S))
+			fail("FAILURE: muln of one point differs from mul");
+		if (!ECP.muln(new ECP[0],new BIG[0]).is_infinity())
+			fail("FAILURE: muln of no points is not infinity");
+		if (ECP.muln(P,k)!=null || ECP.muln(P,k,null)!=null)
+			fail("FAILURE: muln of two points on a Montgomery curve");
+		if (ECP.muln(P1,k)!=null)
+			fail("FAILURE: muln accepted arrays of different lengths");
+		System.out.println("Multi-scalar multiplication OK");
+	}
+
+/* Batch normalisation must agree with normalising each point on its own */
+	public static void testAffineAll()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+		int i,n=10;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+3);
+		rng.seed(100,RAW);
+
+		ECP[] P=new ECP[n];
+		ECP[] A=new ECP[n];
+		for (i=0;i<n;i++)
+		{
+			P[i]=G.mulProjective(BIG.randomnum(r,rng));
+			A[i]=new ECP(); A[i].copy(P[i]);
+			A[i].affine();
+		}
+		P[3]=new ECP();
+		A[3]=new ECP();
+		ECP.affineAll(P);
+		for (i=0;i<n;i++)
+		{
+			if (!P[i].getx().equals(A[i].getx()) || !P[i].getz().equals(A[i].getz()))
+				fail("FAILURE: affineAll differs from affine at "+i);
+		}
+		System.out.println("Batch affine OK");
+	}
+
 /*
 	public static void main(String[] args) 
 	{
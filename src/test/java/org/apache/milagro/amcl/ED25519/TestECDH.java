@@ -175,6 +175,130 @@ public class TestECDH extends TestCase   //
 		}
 	}
 
+/* Fixed base generator multiplication must agree with variable base multiplication */
+	public static void testMulGenerator()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+1);
+		rng.seed(100,RAW);
+
+		BIG[] E=new BIG[8];
+		E[0]=new BIG(0);
+		E[1]=new BIG(1);
+		E[2]=new BIG(r); E[2].dec(1); E[2].norm();
+		E[3]=new BIG(r); E[3].dec(2); E[3].norm();
+		for (int i=4;i<8;i++) E[i]=BIG.randomnum(r,rng);
+
+		for (int i=0;i<E.length;i++)
+		{
+			if (!ECP.mulGenerator(E[i]).equals(G.mul(E[i])))
+				fail("FAILURE: mulGenerator differs from mul for e="+E[i].toString());
+		}
+		System.out.println("Generator multiplication OK");
+	}
+
+/* Multi-scalar multiplication must agree with the sum of single multiplications */
+	public static void testMuln()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		int i,n=300;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+2);
+		rng.seed(100,RAW);
+
+		ECP[] P=new ECP[n];
+		BIG[] k=new BIG[n];
+		for (i=0;i<n;i++)
+		{
+			P[i]=ECP.mulGenerator(BIG.randomnum(r,rng));
+			k[i]=BIG.randomnum(r,rng);
+		}
+		k[1].zero(); k[2].one();
+
+		for (int m : new int[] {1,2,5,n})
+		{
+			ECP S=new ECP();
+			for (i=0;i<m;i++) S.add(P[i].mul(k[i]));
+			ECP[] Pm=java.util.Arrays.copyOf(P,m);
+			BIG[] km=java.util.Arrays.copyOf(k,m);
+			if (!ECP.muln(Pm,km).equals(S))
+				fail("FAILURE: muln differs from mul for "+m+" points");
+			if (!ECP.muln(Pm,km,null).equals(S))
+				fail("FAILURE: parallel muln differs from mul for "+m+" points");
+		}
+		System.out.println("Multi-scalar multiplication OK");
+	}
+
+/* Square roots and quadratic residuosity from the fixed addition chain */
+	public static void testSqrt()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+		int n=0;
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+5);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<100;i++)
+		{
+			FP x=new FP(BIG.randomnum(p,rng));
+			int q=x.qr();
+			if (q!=(x.jacobi()==1?1:0))
+				fail("FAILURE: qr disagrees with the Jacobi symbol for "+x.toString());
+			if (q==0) continue;
+			n++;
+			FP y=x.sqrt();
+			y.sqr();
+			if (!y.equals(x))
+				fail("FAILURE: sqrt of "+x.toString());
+		}
+		if (n==0 || n==100)
+			fail("FAILURE: no residues or no non-residues found");
+		if (new FP(0).qr()!=0)
+			fail("FAILURE: zero is reported as a quadratic residue");
+		System.out.println("Square root OK");
+	}
+
+/* Variable time multiplications must agree with the constant time ones */
+	public static void testVartime()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+7);
+		rng.seed(100,RAW);
+
+		ECP Q=G.mul(BIG.randomnum(r,rng));
+		for (int i=0;i<20;i++)
+		{
+			BIG e,f;
+			if (i==0) {e=new BIG(0); f=new BIG(0);}
+			else if (i==1) {e=new BIG(1); f=new BIG(0);}
+			else if (i==2) {e=new BIG(0); f=new BIG(31);}
+			else if (i==3) {e=new BIG(r); e.dec(1); e.norm(); f=new BIG(r); f.dec(1); f.norm();}
+			else {e=BIG.randomnum(r,rng); f=BIG.randomnum(r,rng);}
+
+			if (!G.mulVartime(e).equals(G.mul(e)))
+				fail("FAILURE: mulVartime by "+e.toString());
+			if (!G.mul2Vartime(e,Q,f).equals(G.mul2(e,Q,f)))
+				fail("FAILURE: mul2Vartime by "+e.toString()+" and "+f.toString());
+		}
+		System.out.println("Variable time multiplication OK");
+	}
+
 /*
 	public static void main(String[] args) 
 	{
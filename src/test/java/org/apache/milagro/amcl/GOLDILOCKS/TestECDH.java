@@ -175,6 +175,32 @@ public class TestECDH extends TestCase   //
 		}
 	}
 
+/* Inverses modulo the 446 bit group order, which needs the divstep bound rounded up */
+	public static void testInverse()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		BIG one=new BIG(1);
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+12);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<200;i++)
+		{
+			BIG u=BIG.randomnum(r,rng);
+			if (i==0) u.one();
+			if (i==1) {u.copy(r); u.dec(1); u.norm();}
+			if (i==2) {u.one(); u.shl(445); u.mod(r);}
+			BIG w=new BIG(u);
+			w.invmodp(r);
+			if (BIG.comp(BIG.modmul(u,w,r),one)!=0)
+				fail("FAILURE: invmodp of "+u.toString());
+		}
+		System.out.println("Inversion OK");
+	}
+
 /*
 	public static void main(String[] args) 
 	{
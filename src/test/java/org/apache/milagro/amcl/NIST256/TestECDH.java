@@ -21,10 +21,12 @@ under the License.
 
 package org.apache.milagro.amcl.NIST256;  //
 
+import java.util.Random;
 import java.util.Scanner;
 import junit.framework.TestCase;       //
 import org.apache.milagro.amcl.RAND;
 import org.apache.milagro.amcl.AES;
+import org.apache.milagro.amcl.KEYCACHE;
 
 public class TestECDH extends TestCase   //
 {
@@ -175,6 +177,307 @@ public class TestECDH extends TestCase   //
 		}
 	}
 
+/* Constant time field and scalar inversion */
+	public static void testInverse()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+		BIG r=new BIG(ROM.CURVE_Order);
+		BIG one=new BIG(1);
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+4);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<100;i++)
+		{
+			BIG v=BIG.randomnum(p,rng);
+			if (i==0) v.one();
+			if (i==1) {v.copy(p); v.dec(1); v.norm();}
+			FP x=new FP(v);
+			FP y=new FP(x);
+			y.inverse();
+			y.mul(x);
+			if (!y.redc().isunity())
+				fail("FAILURE: FP inverse of "+v.toString());
+
+			BIG u=BIG.randomnum(r,rng);
+			BIG w=new BIG(u);
+			w.invmodp(r);
+			if (BIG.comp(BIG.modmul(u,w,r),one)!=0)
+				fail("FAILURE: invmodp of "+u.toString());
+		}
+		FP z=new FP(0);
+		z.inverse();
+		if (!z.iszilch())
+			fail("FAILURE: inverse of zero is not zero");
+		System.out.println("Inversion OK");
+	}
+
+/* Square roots and quadratic residuosity from the fixed addition chain */
+	public static void testSqrt()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+		int n=0;
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+5);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<100;i++)
+		{
+			FP x=new FP(BIG.randomnum(p,rng));
+			int q=x.qr();
+			if (q!=(x.jacobi()==1?1:0))
+				fail("FAILURE: qr disagrees with the Jacobi symbol for "+x.toString());
+			if (q==0) continue;
+			n++;
+			FP y=x.sqrt();
+			y.sqr();
+			if (!y.equals(x))
+				fail("FAILURE: sqrt of "+x.toString());
+		}
+		if (n==0 || n==100)
+			fail("FAILURE: no residues or no non-residues found");
+		if (new FP(0).qr()!=0)
+			fail("FAILURE: zero is reported as a quadratic residue");
+		System.out.println("Square root OK");
+	}
+
+/* Cached keys must give the same results, with hits counted and the size bounded */
+	public static void testKeyCache()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		int i,n=4;
+		int sha=ECP.HASH_TYPE;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+6);
+		rng.seed(100,RAW);
+
+		byte[][] S=new byte[n][ECDH.EGS];
+		byte[][] W=new byte[n][2*ECDH.EFS+1];
+		byte[] Z0=new byte[ECDH.EFS];
+		byte[] Z1=new byte[ECDH.EFS];
+		byte[] CS=new byte[ECDH.EGS];
+		byte[] DS=new byte[ECDH.EGS];
+		byte[] M="cached key".getBytes();
+		for (i=0;i<n;i++) ECDH.KEY_PAIR_GENERATE(rng,S[i],W[i]);
+		ECDH.SP_DSA(sha,rng,S[0],M,CS,DS);
+
+		ECDH.KEY_CACHE(2);
+		KEYCACHE<ECP> C=ECDH.KEY_CACHE();
+		for (int k=0;k<3;k++)
+		{
+			if (ECDH.VP_DSA(sha,W[0],M,CS,DS)!=0)
+				fail("FAILURE: VP_DSA with cached key");
+			ECDH.SVDP_DH(S[0],W[1],Z0);
+			ECDH.SVDP_DH(S[1],W[0],Z1);
+			for (i=0;i<ECDH.EFS;i++)
+				if (Z0[i]!=Z1[i]) fail("FAILURE: SVDP_DH with cached key");
+		}
+		if (C.misses()!=2 || C.hits()!=7)
+			fail("FAILURE: key cache hits "+C.hits()+" misses "+C.misses());
+		for (i=0;i<n;i++) ECDH.PUBLIC_KEY_VALIDATE(W[i]);
+		if (C.size()!=2)
+			fail("FAILURE: key cache holds "+C.size()+" keys");
+
+		byte[] BAD=W[3].clone();
+		BAD[1]^=1;
+		long h=C.hits(),m=C.misses();
+		for (int k=0;k<2;k++)
+			if (ECDH.PUBLIC_KEY_VALIDATE(BAD)==0)
+				fail("FAILURE: PUBLIC_KEY_VALIDATE accepted an off curve key");
+		if (ECDH.PUBLIC_KEY_VALIDATE(W[2])!=0 || ECDH.PUBLIC_KEY_VALIDATE(W[3])!=0)
+			fail("FAILURE: PUBLIC_KEY_VALIDATE with cached key");
+		if (C.size()!=2 || C.misses()!=m+2 || C.hits()!=h+2)
+			fail("FAILURE: invalid key was cached");
+		ECDH.KEY_CACHE(0);
+		if (ECDH.KEY_CACHE()!=null)
+			fail("FAILURE: key cache not disabled");
+		System.out.println("Key cache OK");
+	}
+
+/* Variable time multiplications must agree with the constant time ones */
+	public static void testVartime()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+7);
+		rng.seed(100,RAW);
+
+		ECP Q=G.mul(BIG.randomnum(r,rng));
+		for (int i=0;i<20;i++)
+		{
+			BIG e,f;
+			if (i==0) {e=new BIG(0); f=new BIG(0);}
+			else if (i==1) {e=new BIG(1); f=new BIG(0);}
+			else if (i==2) {e=new BIG(0); f=new BIG(31);}
+			else if (i==3) {e=new BIG(r); e.dec(1); e.norm(); f=new BIG(r); f.dec(1); f.norm();}
+			else {e=BIG.randomnum(r,rng); f=BIG.randomnum(r,rng);}
+
+			if (!G.mulVartime(e).equals(G.mul(e)))
+				fail("FAILURE: mulVartime by "+e.toString());
+			if (!G.mul2Vartime(e,Q,f).equals(G.mul2(e,Q,f)))
+				fail("FAILURE: mul2Vartime by "+e.toString()+" and "+f.toString());
+		}
+		System.out.println("Variable time multiplication OK");
+	}
+
+/* SPARSE reduction of the modulus must agree with the generic Montgomery reduction */
+	public static void testReduction()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+9);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<1000;i++)
+		{
+			BIG a,b;
+			if (i==0) {a=new BIG(0); b=new BIG(p);}
+			else if (i==1) {a=new BIG(p); a.dec(1); a.norm(); b=new BIG(a);}
+			else {a=BIG.randomnum(p,rng); b=BIG.randomnum(p,rng);}
+/* unreduced inputs, up to FEXCESS.p^2 */
+			if (i%2==1) {a.fshl(12); b.fshl(12);}
+
+			DBIG d=BIG.mul(a,b);
+			BIG m=BIG.monty(p,ROM.MConst,new DBIG(d));
+			BIG s=FP.mod(d);
+			if (BIG.comp(m,s)!=0)
+				fail("FAILURE: reduction of "+a.toString()+"*"+b.toString());
+		}
+		System.out.println("Reduction OK");
+	}
+
+/* hash_to_curve test vectors from RFC 9380 */
+	public static void testHashToCurve()
+	{
+		byte[] DST="QUUX-V01-CS02-with-P256_XMD:SHA-256_SSWU_RO_".getBytes();
+		String[] MSG={"","abc"};
+		String[] PX={
+			"2c15230b26dbc6fc9a37051158c95b79656e17a1a920b11394ca91c44247d3e4",
+			"0bb8b87485551aa43ed54f009230450b492fead5f1cc91658775dac4a3388a0f"};
+		String[] PY={
+			"8a7a74985cc5c776cdfe4b1f19884970453912e9d31528c060be9ab5c43e8415",
+			"5c41b3d0731a27a7b14bc0bf0ccded2d8751f83493404c84a88e71ffd424212e"};
+
+		for (int i=0;i<MSG.length;i++)
+		{
+			ECP P=ECP.hashToCurve(DST,MSG[i].getBytes());
+			if (!P.getX().toString().equals(PX[i]) || !P.getY().toString().equals(PY[i]))
+				fail("FAILURE: hashToCurve of \""+MSG[i]+"\" gave "+P.toString());
+		}
+		System.out.println("Hash to curve OK");
+	}
+
+/* Fixed base generator multiplication must agree with variable base multiplication */
+	public static void testMulGenerator()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+1);
+		rng.seed(100,RAW);
+
+		BIG[] E=new BIG[8];
+		E[0]=new BIG(0);
+		E[1]=new BIG(1);
+		E[2]=new BIG(r); E[2].dec(1); E[2].norm();
+		E[3]=new BIG(r); E[3].dec(2); E[3].norm();
+		for (int i=4;i<8;i++) E[i]=BIG.randomnum(r,rng);
+
+		for (int i=0;i<E.length;i++)
+		{
+			if (!ECP.mulGenerator(E[i]).equals(G.mul(E[i])))
+				fail("FAILURE: mulGenerator differs from mul for e="+E[i].toString());
+		}
+		System.out.println("Generator multiplication OK");
+	}
+
+/* Multi-scalar multiplication must agree with the sum of single multiplications */
+	public static void testMuln()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		int i,n=300;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+2);
+		rng.seed(100,RAW);
+
+		ECP[] P=new ECP[n];
+		BIG[] k=new BIG[n];
+		for (i=0;i<n;i++)
+		{
+			P[i]=ECP.mulGenerator(BIG.randomnum(r,rng));
+			k[i]=BIG.randomnum(r,rng);
+		}
+		k[1].zero(); k[2].one();
+
+		for (int m : new int[] {1,2,5,n})
+		{
+			ECP S=new ECP();
+			for (i=0;i<m;i++) S.add(P[i].mul(k[i]));
+			ECP[] Pm=java.util.Arrays.copyOf(P,m);
+			BIG[] km=java.util.Arrays.copyOf(k,m);
+			if (!ECP.muln(Pm,km).equals(S))
+				fail("FAILURE: muln differs from mul for "+m+" points");
+			if (!ECP.muln(Pm,km,null).equals(S))
+				fail("FAILURE: parallel muln differs from mul for "+m+" points");
+		}
+		if (ECP.muln(P,java.util.Arrays.copyOf(k,n-1))!=null || ECP.muln(P,java.util.Arrays.copyOf(k,n-1),null)!=null)
+			fail("FAILURE: muln accepted arrays of different lengths");
+		System.out.println("Multi-scalar multiplication OK");
+	}
+
+/* Batch normalisation must agree with normalising each point on its own */
+	public static void testAffineAll()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+		int i,n=10;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i+3);
+		rng.seed(100,RAW);
+
+		ECP[] P=new ECP[n];
+		ECP[] A=new ECP[n];
+		for (i=0;i<n;i++)
+		{
+			P[i]=G.mulProjective(BIG.randomnum(r,rng));
+			A[i]=new ECP(); A[i].copy(P[i]);
+			A[i].affine();
+		}
+		P[3]=new ECP();
+		A[3]=new ECP();
+		ECP.affineAll(P);
+		for (i=0;i<n;i++)
+		{
+			if (!P[i].getx().equals(A[i].getx()) || !P[i].gety().equals(A[i].gety()) || !P[i].getz().equals(A[i].getz()))
+				fail("FAILURE: affineAll differs from affine at "+i);
+		}
+		System.out.println("Batch affine OK");
+	}
+
 /*
 	public static void main(String[] args) 
 	{
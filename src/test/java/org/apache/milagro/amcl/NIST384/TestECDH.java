@@ -175,6 +175,56 @@ public class TestECDH extends TestCase   //
 		}
 	}
 
+/* SPARSE reduction of the modulus must agree with the generic Montgomery reduction */
+	public static void testReduction()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+9);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<1000;i++)
+		{
+			BIG a,b;
+			if (i==0) {a=new BIG(0); b=new BIG(p);}
+			else if (i==1) {a=new BIG(p); a.dec(1); a.norm(); b=new BIG(a);}
+			else {a=BIG.randomnum(p,rng); b=BIG.randomnum(p,rng);}
+/* unreduced inputs, up to FEXCESS.p^2 */
+			if (i%2==1) {a.fshl(12); b.fshl(12);}
+
+			DBIG d=BIG.mul(a,b);
+			BIG m=BIG.monty(p,ROM.MConst,new DBIG(d));
+			BIG s=FP.mod(d);
+			if (BIG.comp(m,s)!=0)
+				fail("FAILURE: reduction of "+a.toString()+"*"+b.toString());
+		}
+		System.out.println("Reduction OK");
+	}
+
+/* hash_to_curve test vectors from RFC 9380 */
+	public static void testHashToCurve()
+	{
+		byte[] DST="QUUX-V01-CS02-with-P384_XMD:SHA-384_SSWU_RO_".getBytes();
+		String[] MSG={"","abc"};
+		String[] PX={
+			"eb9fe1b4f4e14e7140803c1d99d0a93cd823d2b024040f9c067a8eca1f5a2eeac9ad604973527a356f3fa3aeff0e4d83",
+			"e02fc1a5f44a7519419dd314e29863f30df55a514da2d655775a81d413003c4d4e7fd59af0826dfaad4200ac6f60abe1"};
+		String[] PY={
+			"0c21708cff382b7f4643c07b105c2eaec2cead93a917d825601e63c8f21f6abd9abc22c93c2bed6f235954b25048bb1a",
+			"01f638d04d98677d65bef99aef1a12a70a4cbb9270ec55248c04530d8bc1f8f90f8a6a859a7c1f1ddccedf8f96d675f6"};
+
+		for (int i=0;i<MSG.length;i++)
+		{
+			ECP P=ECP.hashToCurve(DST,MSG[i].getBytes());
+			if (!P.getX().toString().equals(PX[i]) || !P.getY().toString().equals(PY[i]))
+				fail("FAILURE: hashToCurve of \""+MSG[i]+"\" gave "+P.toString());
+		}
+		System.out.println("Hash to curve OK");
+	}
+
 /*
 	public static void main(String[] args) 
 	{
@@ -175,6 +175,65 @@ public class TestECDH extends TestCase   //
 		}
 	}
 
+/* Constant time field and scalar inversion */
+	public static void testInverse()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+		BIG r=new BIG(ROM.CURVE_Order);
+		BIG one=new BIG(1);
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+4);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<100;i++)
+		{
+			BIG v=BIG.randomnum(p,rng);
+			if (i==0) v.one();
+			if (i==1) {v.copy(p); v.dec(1); v.norm();}
+			FP x=new FP(v);
+			FP y=new FP(x);
+			y.inverse();
+			y.mul(x);
+			if (!y.redc().isunity())
+				fail("FAILURE: FP inverse of "+v.toString());
+
+			BIG u=BIG.randomnum(r,rng);
+			BIG w=new BIG(u);
+			w.invmodp(r);
+			if (BIG.comp(BIG.modmul(u,w,r),one)!=0)
+				fail("FAILURE: invmodp of "+u.toString());
+		}
+		FP z=new FP(0);
+		z.inverse();
+		if (!z.iszilch())
+			fail("FAILURE: inverse of zero is not zero");
+		System.out.println("Inversion OK");
+	}
+
+/* hash_to_curve test vectors from RFC 9380 */
+	public static void testHashToCurve()
+	{
+		byte[] DST="QUUX-V01-CS02-with-P521_XMD:SHA-512_SSWU_RO_".getBytes();
+		String[] MSG={"","abc"};
+		String[] PX={
+			"00fd767cebb2452030358d0e9cf907f525f50920c8f607889a6a35680727f64f4d66b161fafeb2654bea0d35086bec0a10b30b14adef3556ed9f7f1bc23cecc9c088",
+			"002f89a1677b28054b50d15e1f81ed6669b5a2158211118ebdef8a6efc77f8ccaa528f698214e4340155abc1fa08f8f613ef14a043717503d57e267d57155cf784a4"};
+		String[] PY={
+			"0169ba78d8d851e930680322596e39c78f4fe31b97e57629ef6460ddd68f8763fd7bd767a4e94a80d3d21a3c2ee98347e024fc73ee1c27166dc3fe5eeef782be411d",
+			"010e0be5dc8e753da8ce51091908b72396d3deed14ae166f66d8ebf0a4e7059ead169ea4bead0232e9b700dd380b316e9361cfdba55a08c73545563a80966ecbb86d"};
+
+		for (int i=0;i<MSG.length;i++)
+		{
+			ECP P=ECP.hashToCurve(DST,MSG[i].getBytes());
+			if (!P.getX().toString().equals(PX[i]) || !P.getY().toString().equals(PY[i]))
+				fail("FAILURE: hashToCurve of \""+MSG[i]+"\" gave "+P.toString());
+		}
+		System.out.println("Hash to curve OK");
+	}
+
 /*
 	public static void main(String[] args) 
 	{
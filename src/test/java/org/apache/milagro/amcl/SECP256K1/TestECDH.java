@@ -175,6 +175,128 @@ public class TestECDH extends TestCase   //
 		}
 	}
 
+/* Square roots and quadratic residuosity from the fixed addition chain */
+	public static void testSqrt()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+		int n=0;
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+5);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<100;i++)
+		{
+			FP x=new FP(BIG.randomnum(p,rng));
+			int q=x.qr();
+			if (q!=(x.jacobi()==1?1:0))
+				fail("FAILURE: qr disagrees with the Jacobi symbol for "+x.toString());
+			if (q==0) continue;
+			n++;
+			FP y=x.sqrt();
+			y.sqr();
+			if (!y.equals(x))
+				fail("FAILURE: sqrt of "+x.toString());
+		}
+		if (n==0 || n==100)
+			fail("FAILURE: no residues or no non-residues found");
+		if (new FP(0).qr()!=0)
+			fail("FAILURE: zero is reported as a quadratic residue");
+		System.out.println("Square root OK");
+	}
+
+/* GLV split and the multiplications built on it, against the fixed base comb of mulGenerator */
+	public static void testGLV()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG r=new BIG(ROM.CURVE_Order);
+		ECP G=ECP.generator();
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+8);
+		rng.seed(100,RAW);
+
+/* phi(G)=(Cru.x,y) */
+		FP cx=new FP(G.getX());
+		cx.mul(new FP(new BIG(ROM.CURVE_Cru)));
+		for (int i=0;i<20;i++)
+		{
+			BIG e;
+			if (i==0) e=new BIG(0);
+			else if (i==1) {e=new BIG(r); e.dec(1); e.norm();}
+			else e=BIG.randomnum(r,rng);
+
+			BIG[] u=ECP.glv(e);
+			ECP P=ECP.generator().mul2(u[0],new ECP(cx.redc(),G.getY()),u[1]);
+			if (!P.equals(ECP.mulGenerator(e)))
+				fail("FAILURE: GLV split of "+e.toString());
+
+			BIG f=BIG.randomnum(r,rng);
+			ECP Q=ECP.mulGenerator(f);
+			ECP R=ECP.mulGenerator(BIG.modmul(e,f,r));
+			if (!Q.mul(e).equals(R) || !Q.mulVartime(e).equals(R))
+				fail("FAILURE: GLV multiplication by "+e.toString());
+			R=ECP.mulGenerator(e);
+			R.add(ECP.mulGenerator(BIG.modmul(f,f,r)));
+			if (!G.mul2(e,Q,f).equals(R) || !G.mul2Vartime(e,Q,f).equals(R))
+				fail("FAILURE: GLV double multiplication by "+e.toString());
+		}
+		System.out.println("GLV OK");
+	}
+
+/* SPARSE reduction of the modulus must agree with the generic Montgomery reduction */
+	public static void testReduction()
+	{
+		byte[] RAW=new byte[100];
+		RAND rng=new RAND();
+		BIG p=new BIG(ROM.Modulus);
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i+9);
+		rng.seed(100,RAW);
+
+		for (int i=0;i<1000;i++)
+		{
+			BIG a,b;
+			if (i==0) {a=new BIG(0); b=new BIG(p);}
+			else if (i==1) {a=new BIG(p); a.dec(1); a.norm(); b=new BIG(a);}
+			else {a=BIG.randomnum(p,rng); b=BIG.randomnum(p,rng);}
+/* unreduced inputs, up to FEXCESS.p^2 */
+			if (i%2==1) {a.fshl(12); b.fshl(12);}
+
+			DBIG d=BIG.mul(a,b);
+			BIG m=BIG.monty(p,ROM.MConst,new DBIG(d));
+			BIG s=FP.mod(d);
+			if (BIG.comp(m,s)!=0)
+				fail("FAILURE: reduction of "+a.toString()+"*"+b.toString());
+		}
+		System.out.println("Reduction OK");
+	}
+
+/* hash_to_curve test vectors from RFC 9380 */
+	public static void testHashToCurve()
+	{
+		byte[] DST="QUUX-V01-CS02-with-secp256k1_XMD:SHA-256_SSWU_RO_".getBytes();
+		String[] MSG={"","abc"};
+		String[] PX={
+			"c1cae290e291aee617ebaef1be6d73861479c48b841eaba9b7b5852ddfeb1346",
+			"3377e01eab42db296b512293120c6cee72b6ecf9f9205760bd9ff11fb3cb2c4b"};
+		String[] PY={
+			"64fa678e07ae116126f08b022a94af6de15985c996c3a91b64c406a960e51067",
+			"7f95890f33efebd1044d382a01b1bee0900fb6116f94688d487c6c7b9c8371f6"};
+
+		for (int i=0;i<MSG.length;i++)
+		{
+			ECP P=ECP.hashToCurve(DST,MSG[i].getBytes());
+			if (!P.getX().toString().equals(PX[i]) || !P.getY().toString().equals(PY[i]))
+				fail("FAILURE: hashToCurve of \""+MSG[i]+"\" gave "+P.toString());
+		}
+		System.out.println("Hash to curve OK");
+	}
+
 /*
 	public static void main(String[] args) 
 	{
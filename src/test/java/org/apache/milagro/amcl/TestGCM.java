@@ -0,0 +1,64 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* test driver for AES-GCM */
+
+package org.apache.milagro.amcl;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class TestGCM extends TestCase
+{
+/* Table driven GHASH against the GCM specification test vectors, and decryption of long messages */
+	public static void testGCM()
+	{
+		byte[] K=GCM.hex2bytes("feffe9928665731c6d6a8f9467308308");
+		byte[] H=GCM.hex2bytes("feedfacedeadbeeffeedfacedeadbeefabaddad2");
+		byte[] M=GCM.hex2bytes("d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a721c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b39");
+		String[] N={"cafebabefacedbaddecaf888","9313225df88406e555909c5aff5269aa6a7a9538534f7da1e4c303d2a318a728c3c0c95156809539fcf0e2429a6b525416aedbf5a0de6a57a637b39b"};
+		String[] T={"5bc94fbc3221a5db94fae95ae7121a47","619cc5aefffe0bfa462af43c1699d050"};
+		GCM g=new GCM();
+		for (int i=0;i<2;i++)
+		{
+			byte[] IV=GCM.hex2bytes(N[i]);
+			g.init(16,K,IV.length,IV);
+			g.add_header(H,H.length);
+			g.add_plain(M,M.length);
+			if (!new BigInteger(1,g.finish(true)).toString(16).equals(T[i]))
+				fail("FAILURE: GCM tag for test vector "+i);
+		}
+
+		byte[] P=new byte[1000];
+		byte[] K2=new byte[32];
+		Random rnd=new Random(25);
+		rnd.nextBytes(P); rnd.nextBytes(K2);
+		byte[] IV=GCM.hex2bytes(N[0]);
+		g.init(32,K2,12,IV);
+		byte[] C=g.add_plain(P,P.length);
+		byte[] T1=g.finish(true);
+		g.init(32,K2,12,IV);
+		byte[] D=g.add_cipher(C,C.length);
+		if (!Arrays.equals(D,P) || !Arrays.equals(T1,g.finish(true)))
+			fail("FAILURE: GCM decryption");
+		System.out.println("GCM OK");
+	}
+}
@@ -0,0 +1,72 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* test driver for the SHA2 hashes */
+
+package org.apache.milagro.amcl;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class TestHASH extends TestCase
+{
+/* Block wise hash updates must agree with byte at a time processing */
+	public static void testHashUpdate()
+	{
+		byte[] M=new byte[1000];
+		Random rnd=new Random(21);
+		rnd.nextBytes(M);
+
+		HASH256 sh=new HASH256();
+		sh.update("abc".getBytes(),0,3);
+		if (!new BigInteger(1,sh.hash()).toString(16).equals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"))
+			fail("FAILURE: SHA256 of abc");
+
+		for (int n : new int[] {0,1,55,63,64,65,127,128,129,300,999})
+		{
+			for (int off : new int[] {0,1,37})
+			{
+				if (off+n>M.length) continue;
+				HASH256 a=new HASH256(); HASH256 b=new HASH256(); HASH256 c=new HASH256();
+				HASH512 d=new HASH512(); HASH512 e=new HASH512(); HASH512 g=new HASH512();
+				for (int i=0;i<n;i++) {a.process(M[off+i]); d.process(M[off+i]);}
+				int k=n/3;
+				b.update(M,off,k); b.update(M,off+k,n-k);
+				e.update(M,off,k); e.update(M,off+k,n-k);
+				ByteBuffer bb=ByteBuffer.allocateDirect(n).order(ByteOrder.LITTLE_ENDIAN);
+				bb.put(M,off,n); bb.flip();
+				c.update(bb);
+				bb.rewind();
+				g.update(bb);
+				if (bb.hasRemaining())
+					fail("FAILURE: update did not consume the buffer");
+				byte[] H=a.hash(); byte[] L=d.hash();
+				if (!Arrays.equals(H,b.hash()) || !Arrays.equals(L,e.hash()))
+					fail("FAILURE: array update differs for "+n+" bytes at "+off);
+				if (!Arrays.equals(H,c.hash()) || !Arrays.equals(L,g.hash()))
+					fail("FAILURE: buffer update differs for "+n+" bytes at "+off);
+			}
+		}
+		System.out.println("Hash update OK");
+	}
+}
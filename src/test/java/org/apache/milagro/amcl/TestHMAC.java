@@ -0,0 +1,67 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* test driver for HMAC and PBKDF2 */
+
+package org.apache.milagro.amcl;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.apache.milagro.amcl.NIST256.ECDH;
+import org.apache.milagro.amcl.NIST256.ECP;
+
+public class TestHMAC extends TestCase
+{
+/* HMAC with saved pad states, and PBKDF2 built on it, against RFC 4231 and published PBKDF2-HMAC-SHA256 vectors */
+	public static void testHMAC()
+	{
+		byte[] K=new byte[20];
+		byte[] T=new byte[32];
+		for (int i=0;i<20;i++) K[i]=0x0b;
+		HMAC H=new HMAC(HMAC.SHA256,K);
+		for (int i=0;i<2;i++)
+		{
+			if (H.mac("Hi There".getBytes(),T)!=1 || !new BigInteger(1,T).toString(16).equals("b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7"))
+				fail("FAILURE: HMAC-SHA256 test vector");
+		}
+		if (H.mac(new byte[1],new byte[3])!=0)
+			fail("FAILURE: HMAC accepted a short tag");
+
+		byte[] dk=HMAC.PBKDF2(HMAC.SHA256,"password".getBytes(),"salt".getBytes(),2,32);
+		if (!new BigInteger(1,dk).toString(16).equals("ae4d0c95af6b46d32d0adff928f06dd02a303f8ef3c251dfd6e2d85a95474c43"))
+			fail("FAILURE: PBKDF2-HMAC-SHA256 test vector");
+		if (!Arrays.equals(dk,ECDH.PBKDF2(ECP.SHA256,"password".getBytes(),"salt".getBytes(),2,32)))
+			fail("FAILURE: ECDH.PBKDF2 differs");
+
+		byte[] Z="shared secret".getBytes();
+		byte[] P="parameter".getBytes();
+		for (int sha : new int[] {HMAC.SHA256,HMAC.SHA384,HMAC.SHA512})
+		{
+			byte[] K2=HMAC.KDF2(sha,Z,P,2*sha+5);
+			for (int c=1;c<=3;c++)
+			{
+				byte[] B=HMAC.GPhashit(sha,0,Z,c,P);
+				for (int i=0;i<sha && (c-1)*sha+i<K2.length;i++)
+					if (K2[(c-1)*sha+i]!=B[i]) fail("FAILURE: KDF2 block "+c+" for hash "+sha);
+			}
+		}
+		System.out.println("HMAC OK");
+	}
+}
@@ -0,0 +1,57 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* test driver for the limb arithmetic */
+
+package org.apache.milagro.amcl;
+
+import java.math.BigInteger;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class TestLIMB extends TestCase
+{
+/* Limb products against BigInteger, including negative limbs, for each base the curves use */
+	public static void testMuladd()
+	{
+		Random rnd=new Random(10);
+		for (int base : new int[] {56,58,60})
+		{
+			long mask=((long)1<<base)-1;
+			BigInteger B=BigInteger.ONE.shiftLeft(base);
+			for (int i=0;i<10000;i++)
+			{
+				long a=rnd.nextLong()>>(64-base-2);
+				long b=rnd.nextLong()>>(64-base-2);
+				long c=rnd.nextLong()>>(64-base);
+				long r=rnd.nextLong()>>(64-base);
+				if (i==0) a=b=c=r=mask;
+				long[] cr=LIMB.muladd(a,b,c,r,base);
+				BigInteger s=BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).add(BigInteger.valueOf(c)).add(BigInteger.valueOf(r));
+				BigInteger t=BigInteger.valueOf(cr[0]).multiply(B).add(BigInteger.valueOf(cr[1]));
+				if (!s.equals(t) || cr[1]<0 || cr[1]>mask)
+					fail("FAILURE: muladd of "+a+" and "+b+" at base "+base);
+				long[] w={r};
+				if (LIMB.muladd(a,b,c,w,0,base)!=cr[0] || w[0]!=cr[1])
+					fail("FAILURE: in place muladd of "+a+" and "+b+" at base "+base);
+			}
+		}
+		System.out.println("Limb products OK");
+	}
+}
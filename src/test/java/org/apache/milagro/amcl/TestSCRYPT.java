@@ -0,0 +1,58 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* test driver for parallel PBKDF2 and scrypt */
+
+package org.apache.milagro.amcl;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.apache.milagro.amcl.NIST256.ECDH;
+import org.apache.milagro.amcl.NIST256.ECP;
+
+public class TestSCRYPT extends TestCase
+{
+/* Parallel and bulk PBKDF2 against the RFC 7914 vector, and scrypt against RFC 7914 */
+	public static void testSCRYPT()
+	{
+		String dk64="55ac046e56e3089fec1691c22544b605f94185216dde0465e68b9d57c20dacbc49ca9cccf179b645991664b39d77ef317c71b845b1e30bd509112041d3a19783";
+		byte[] P="passwd".getBytes();
+		byte[] S="salt".getBytes();
+		if (!new BigInteger(1,HMAC.PBKDF2(HMAC.SHA256,P,S,1,64)).toString(16).equals(dk64))
+			fail("FAILURE: PBKDF2-HMAC-SHA256 multi-block test vector");
+		if (!new BigInteger(1,HMAC.PBKDF2(HMAC.SHA256,P,S,1,64,null)).toString(16).equals(dk64))
+			fail("FAILURE: parallel PBKDF2 differs");
+		byte[][] DK=HMAC.PBKDF2(HMAC.SHA512,new byte[][] {P,S,P},new byte[][] {S,P,P},100,70,null);
+		if (!Arrays.equals(DK[1],HMAC.PBKDF2(HMAC.SHA512,S,P,100,70)) || !Arrays.equals(DK[2],ECDH.PBKDF2(ECP.SHA512,P,P,100,70,null)))
+			fail("FAILURE: bulk PBKDF2 differs");
+
+		byte[] K=SCRYPT.KDF(new byte[0],new byte[0],16,1,1,64);
+		if (!new BigInteger(1,K).toString(16).equals("77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906"))
+			fail("FAILURE: scrypt test vector 1");
+		String v2="fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b3731622eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640";
+		if (!new BigInteger(1,SCRYPT.KDF("password".getBytes(),"NaCl".getBytes(),1024,8,16,64)).toString(16).equals(v2))
+			fail("FAILURE: scrypt test vector 2");
+		if (!new BigInteger(1,SCRYPT.KDF("password".getBytes(),"NaCl".getBytes(),1024,8,16,64,null)).toString(16).equals(v2))
+			fail("FAILURE: parallel scrypt differs");
+		if (SCRYPT.KDF(P,S,1000,8,1,64)!=null)
+			fail("FAILURE: scrypt accepted N not a power of 2");
+		System.out.println("scrypt OK");
+	}
+}
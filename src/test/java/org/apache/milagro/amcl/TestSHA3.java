@@ -0,0 +1,74 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+/* test driver for SHA3 and SHAKE */
+
+package org.apache.milagro.amcl;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class TestSHA3 extends TestCase
+{
+/* Lane wise SHA3 absorption and squeezing must agree with the test vectors and with byte at a time processing */
+	public static void testSHA3()
+	{
+		byte[] test="abcdefghbcdefghicdefghijdefghijkefghijklfghijklmghijklmnhijklmnoijklmnopjklmnopqklmnopqrlmnopqrsmnopqrstnopqrstu".getBytes();
+		byte[] digest=new byte[72];
+		SHA3 sh=new SHA3(SHA3.HASH256);
+		sh.update(test,0,test.length); sh.hash(digest);
+		if (!new BigInteger(1,Arrays.copyOf(digest,32)).toString(16).equals("916f6061fe879741ca6469b43971dfdb28b1a32dc36cb3254e812be27aad1d18"))
+			fail("FAILURE: SHA3-256 test vector");
+		sh=new SHA3(SHA3.SHAKE256);
+		sh.update(test,0,test.length); sh.shake(digest,72);
+		if (!new BigInteger(1,digest).toString(16).equals("98be04516c04cc73593fef3ed0352ea9f6443942d6950e29a372a681c3deaf4535423709b02843948684e029010badcc0acd8303fc85fdad3eabf4f78cae165635f57afd28810fc2"))
+			fail("FAILURE: SHAKE256 test vector");
+
+		byte[] M=new byte[700];
+		new Random(22).nextBytes(M);
+		int[] types={SHA3.HASH224,SHA3.HASH256,SHA3.HASH384,SHA3.HASH512,SHA3.SHAKE128,SHA3.SHAKE256};
+		for (int n : new int[] {0,1,7,71,72,73,135,136,137,168,500})
+		{
+			SHA3[] mb=new SHA3[types.length];
+			byte[][] out=new byte[types.length][];
+			for (int t=0;t<types.length;t++)
+			{
+				SHA3 a=new SHA3(types[t]); SHA3 b=new SHA3(types[t]);
+				for (int i=0;i<n;i++) a.process(M[3+i]);
+				b.update(M,3,n/2); b.update(M,3+n/2,n-n/2);
+				mb[t]=new SHA3(types[t]); mb[t].update(M,3,n);
+				byte[] A=new byte[600]; byte[] B=new byte[600];
+				a.shake(A,n+1); b.shake(B,n+1);
+				if (!Arrays.equals(A,B))
+					fail("FAILURE: SHA3 update differs for "+n+" bytes and type "+types[t]);
+				out[t]=A;
+			}
+			byte[][] D=new byte[types.length][600];
+			SHA3.shake(mb,D,n+1);
+			for (int t=0;t<types.length;t++)
+			{
+				if (!Arrays.equals(out[t],D[t]))
+					fail("FAILURE: multi-buffer SHAKE differs for "+n+" bytes and type "+types[t]);
+			}
+		}
+		System.out.println("SHA3 OK");
+	}
+}